@@ -0,0 +1,120 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Throughput of optimistic product writes against the number of concurrent writers.
+ *
+ * Each write reads a product's version, spends a simulated DynamoDB round trip, and applies only
+ * if the version is unchanged, which is how {@link ProductRepository} writes stock and PATCHes.
+ * Losers retry up to {@link ProductRepository#MAX_WRITE_ATTEMPTS} times, either with the
+ * {@link WriteContention} backoff or immediately. The primary score counts every write, including
+ * the ones that gave up; {@code writes} is the rate of successful writes across all writers, and
+ * {@code conflicts} and {@code exhausted} count lost attempts and writes that gave up.
+ * {@code products=1} is a single hot SKU, larger values spread the writers out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ContentionBenchmark {
+
+    @Param({ "1", "16" })
+    int products;
+
+    @Param({ "jittered", "immediate" })
+    String retry;
+
+    @Param({ "2000" })
+    long roundTripMicros;
+
+    private WriteContention contention;
+
+    private AtomicLongArray versions;
+
+    private List<List<UUID>> ids;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long writes;
+        public long conflicts;
+        public long exhausted;
+    }
+
+    @Setup
+    public void setup() {
+        contention = new WriteContention(new SimpleMeterRegistry(), Duration.ofMillis(5), Duration.ofMillis(200), 1000);
+        versions = new AtomicLongArray(products);
+        ids = Stream.generate(() -> List.of(UUID.randomUUID())).limit(products).toList();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean writers01(Outcomes outcomes) {
+        return write(outcomes);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean writers04(Outcomes outcomes) {
+        return write(outcomes);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean writers16(Outcomes outcomes) {
+        return write(outcomes);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean writers64(Outcomes outcomes) {
+        return write(outcomes);
+    }
+
+    private boolean write(Outcomes outcomes) {
+        int product = ThreadLocalRandom.current().nextInt(products);
+        for (int attempt = 1; ; attempt++) {
+            long version = versions.get(product);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+            if (versions.compareAndSet(product, version, version + 1)) {
+                outcomes.writes++;
+                return true;
+            }
+            outcomes.conflicts++;
+            if (attempt == ProductRepository.MAX_WRITE_ATTEMPTS) {
+                outcomes.exhausted++;
+                return false;
+            }
+            if ("jittered".equals(retry)) {
+                WriteContention.pause(contention.conflicted(ids.get(product), WriteContention.STOCK, attempt));
+            }
+        }
+    }
+}
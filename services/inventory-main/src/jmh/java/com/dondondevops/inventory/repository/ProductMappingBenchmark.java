@@ -0,0 +1,101 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dondondevops.inventory.model.Product;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Cost of mapping one {@link Product} to and from a DynamoDB item, with the schema derived from
+ * the bean annotations ({@code bean*}) against the hand-written {@link ProductTableSchema}
+ * ({@code static*}) writing in each {@link ProductFormat}. Every product read, scanned or written
+ * pays one of these per item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductMappingBenchmark {
+
+    @Param({ "LEGACY", "COMPACT" })
+    private ProductFormat format;
+
+    private TableSchema<Product> beanSchema;
+
+    private TableSchema<Product> staticSchema;
+
+    private Product product;
+
+    private Map<String, AttributeValue> item;
+
+    private Map<String, AttributeValue> staticItem;
+
+    @Setup
+    public void setup() {
+        beanSchema = TableSchema.fromBean(Product.class);
+        staticSchema = ProductTableSchema.create(format);
+
+        product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setName("Paracetamol 500mg");
+        product.setCategory("Medicine");
+        product.setBrand("Panadol");
+        product.setStock(7);
+        product.setPriceInSGD(4.95);
+        product.setExpiryDate(Instant.parse("2026-03-04T10:15:30Z"));
+        product.setCreatedAt(Instant.parse("2025-01-01T00:00:00Z"));
+        product.setUpdatedAt(Instant.parse("2025-02-01T00:00:00Z"));
+        product.setVersion(3L);
+        item = beanSchema.itemToMap(product, true);
+        staticItem = staticSchema.itemToMap(product, true);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> beanItemToMap() {
+        return beanSchema.itemToMap(product, true);
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> staticItemToMap() {
+        return staticSchema.itemToMap(product, true);
+    }
+
+    @Benchmark
+    public Product beanMapToItem() {
+        return beanSchema.mapToItem(item);
+    }
+
+    @Benchmark
+    public Product staticMapToItem() {
+        return staticSchema.mapToItem(staticItem);
+    }
+
+    /** Building the schema itself, which the repositories do once at startup. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public TableSchema<Product> staticCreate() {
+        return ProductTableSchema.create(format);
+    }
+}
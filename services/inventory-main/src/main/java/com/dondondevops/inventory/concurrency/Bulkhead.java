@@ -0,0 +1,89 @@
+package com.dondondevops.inventory.concurrency;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Permits for one {@link ConcurrencyLimited} name. Waiting blocks the calling thread, which is
+ * cheap because the limited endpoints run on virtual threads.
+ *
+ * Metrics, tagged {@code endpoint}: {@code inventory.http.in_flight} and
+ * {@code inventory.http.queued} gauges, the {@code inventory.http.queue_wait} timer and the
+ * {@code inventory.http.rejected} counter.
+ */
+class Bulkhead {
+
+    private final ConcurrencyLimitConfiguration configuration;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer queueWait;
+
+    private final Counter rejected;
+
+    Bulkhead(ConcurrencyLimitConfiguration configuration, MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+        this.permits = new Semaphore(configuration.getMaxConcurrent(), true);
+
+        String endpoint = configuration.getName();
+        Gauge.builder("inventory.http.in_flight", permits,
+                p -> configuration.getMaxConcurrent() - p.availablePermits())
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        Gauge.builder("inventory.http.queued", queued, AtomicInteger::get)
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        this.queueWait = Timer.builder("inventory.http.queue_wait")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        this.rejected = Counter.builder("inventory.http.rejected")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+    }
+
+    String getName() {
+        return configuration.getName();
+    }
+
+    /**
+     * Takes a permit, queueing for up to {@code max-wait} when none is free.
+     *
+     * @return false if the call must be shed
+     */
+    boolean acquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            queueWait.record(0, TimeUnit.NANOSECONDS);
+            return true;
+        }
+
+        if (queued.incrementAndGet() > configuration.getMaxQueued()) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(configuration.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+            queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                rejected.increment();
+            }
+            return acquired;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+}
@@ -0,0 +1,54 @@
+package com.dondondevops.inventory.concurrency;
+
+import java.time.Duration;
+
+import io.micronaut.context.annotation.EachProperty;
+import io.micronaut.context.annotation.Parameter;
+
+/**
+ * Limits of one {@link ConcurrencyLimited} name, e.g.
+ * {@code inventory.concurrency.reduce-stock.max-concurrent}.
+ */
+@EachProperty("inventory.concurrency")
+public class ConcurrencyLimitConfiguration {
+
+    private final String name;
+
+    private int maxConcurrent = 64;
+
+    private int maxQueued = 128;
+
+    private Duration maxWait = Duration.ofSeconds(2);
+
+    public ConcurrencyLimitConfiguration(@Parameter String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+}
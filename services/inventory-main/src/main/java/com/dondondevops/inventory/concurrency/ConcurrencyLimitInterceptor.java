@@ -0,0 +1,92 @@
+package com.dondondevops.inventory.concurrency;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dondondevops.inventory.exception.ServiceOverloadedException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.aop.InterceptorBean;
+import io.micronaut.aop.MethodInterceptor;
+import io.micronaut.aop.MethodInvocationContext;
+import io.micronaut.context.BeanContext;
+import io.micronaut.http.MutableHttpResponse;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies {@link ConcurrencyLimited}. For endpoints returning a publisher, or a response whose
+ * body is a publisher, the permit is held until the publisher terminates, not just until the
+ * method returns.
+ */
+@Singleton
+@InterceptorBean(ConcurrencyLimited.class)
+public class ConcurrencyLimitInterceptor implements MethodInterceptor<Object, Object> {
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Inject
+    private BeanContext beanContext;
+
+    @Inject
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public Object intercept(MethodInvocationContext<Object, Object> context) {
+        String name = context.stringValue(ConcurrencyLimited.class).orElse(context.getMethodName());
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(name, this::createBulkhead);
+
+        try {
+            if (!bulkhead.acquire()) {
+                throw new ServiceOverloadedException(name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException(name);
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        };
+
+        try {
+            return releasing(context.proceed(), release);
+        } catch (RuntimeException | Error e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    private static Object releasing(Object result, Runnable release) {
+        if (result instanceof Mono<?> mono) {
+            return mono.doFinally(signal -> release.run());
+        }
+        if (result instanceof Publisher<?> publisher) {
+            return Flux.from(publisher).doFinally(signal -> release.run());
+        }
+        if (result instanceof MutableHttpResponse<?> response
+                && response.body() instanceof Publisher<?> body) {
+            // A streamed body, such as the catalog export, is written after the method returns
+            @SuppressWarnings("unchecked")
+            MutableHttpResponse<Object> streaming = (MutableHttpResponse<Object>) response;
+            return streaming.body(releasing(body, release));
+        }
+        release.run();
+        return result;
+    }
+
+    private Bulkhead createBulkhead(String name) {
+        ConcurrencyLimitConfiguration configuration = beanContext
+            .findBean(ConcurrencyLimitConfiguration.class, Qualifiers.byName(name))
+            .orElseGet(() -> new ConcurrencyLimitConfiguration(name));
+        return new Bulkhead(configuration, meterRegistry);
+    }
+}
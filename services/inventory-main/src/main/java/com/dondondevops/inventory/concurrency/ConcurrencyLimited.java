@@ -0,0 +1,27 @@
+package com.dondondevops.inventory.concurrency;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import io.micronaut.aop.Around;
+
+/**
+ * Bounds how many calls of the annotated endpoints run at once. Calls over the limit wait in a
+ * bounded queue and are shed with a 503 when the queue is full or the wait runs out.
+ * Endpoints sharing a name share a limit, configured under {@code inventory.concurrency.<name>}.
+ */
+@Documented
+@Retention(RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Around
+public @interface ConcurrencyLimited {
+
+    /**
+     * @return name of the limit
+     */
+    String value();
+}
@@ -8,9 +8,12 @@ import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
 
 @Requires(env = { "dev" })
 @Requires(bean = IDynamoDBConfig.class)
@@ -33,4 +36,34 @@ public class DevConfig {
     public DynamoDbEnhancedClient createEnhancedClient(DynamoDbClient client) {
         return DynamoDbEnhancedClient.builder().dynamoDbClient(client).build();
     }
+
+    @Inject
+    @Singleton
+    public DynamoDbStreamsClient createStreamsClient(IDynamoDBConfig config) {
+        return DynamoDbStreamsClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("localstack", "localstack")))
+                .region(Region.AP_SOUTHEAST_1)
+                .endpointOverride(URI.create("http://" + config.getDynamodbHost() + ":" + config.getDynamodbPort()))
+                .build();
+    }
+
+    @Requires(property = "inventory.dynamodb.async", value = "true")
+    @Inject
+    @Singleton
+    public DynamoDbAsyncClient createAsyncClient(IDynamoDBConfig config) {
+        return DynamoDbAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("localstack", "localstack")))
+                .region(Region.AP_SOUTHEAST_1)
+                .endpointOverride(URI.create("http://" + config.getDynamodbHost() + ":" + config.getDynamodbPort()))
+                .build();
+    }
+
+    @Requires(property = "inventory.dynamodb.async", value = "true")
+    @Inject
+    @Singleton
+    public DynamoDbEnhancedAsyncClient createEnhancedAsyncClient(DynamoDbAsyncClient client) {
+        return DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).build();
+    }
 }
@@ -5,9 +5,12 @@ import io.micronaut.context.annotation.Requires;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
 
 @Requires(env = { "prod" })
 @Factory
@@ -27,4 +30,30 @@ public class ProdConfig {
     public DynamoDbEnhancedClient createEnhancedClient(DynamoDbClient client) {
         return DynamoDbEnhancedClient.builder().dynamoDbClient(client).build();
     }
+
+    @Singleton
+    public DynamoDbStreamsClient createStreamsClient() {
+        return DynamoDbStreamsClient
+                .builder()
+                .credentialsProvider(ContainerCredentialsProvider.create())
+                .region(Region.AP_SOUTHEAST_1)
+                .build();
+    }
+
+    @Requires(property = "inventory.dynamodb.async", value = "true")
+    @Singleton
+    public DynamoDbAsyncClient createAsyncClient() {
+        return DynamoDbAsyncClient
+                .builder()
+                .credentialsProvider(ContainerCredentialsProvider.create())
+                .region(Region.AP_SOUTHEAST_1)
+                .build();
+    }
+
+    @Requires(property = "inventory.dynamodb.async", value = "true")
+    @Inject
+    @Singleton
+    public DynamoDbEnhancedAsyncClient createEnhancedAsyncClient(DynamoDbAsyncClient client) {
+        return DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(client).build();
+    }
 }
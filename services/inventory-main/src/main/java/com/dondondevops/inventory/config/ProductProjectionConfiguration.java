@@ -0,0 +1,34 @@
+package com.dondondevops.inventory.config;
+
+import java.util.List;
+
+import io.micronaut.context.annotation.EachProperty;
+import io.micronaut.context.annotation.Parameter;
+
+/**
+ * A named set of product fields that product reads accept in place of the field list in
+ * {@code fields}, e.g. {@code inventory.products.projections.tile.fields}.
+ */
+@EachProperty("inventory.products.projections")
+public class ProductProjectionConfiguration {
+
+    private final String name;
+
+    private List<String> fields = List.of();
+
+    public ProductProjectionConfiguration(@Parameter String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+}
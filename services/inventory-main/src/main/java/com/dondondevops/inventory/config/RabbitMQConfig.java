@@ -9,6 +9,7 @@ import com.rabbitmq.client.BuiltinExchangeType;
 import com.rabbitmq.client.Channel;
 
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.rabbitmq.connect.ChannelInitializer;
 import jakarta.inject.Singleton;
 
@@ -21,6 +22,9 @@ public class RabbitMQConfig extends ChannelInitializer {
 
     private static final Logger LOG = LoggerFactory.getLogger(RabbitMQConfig.class);
 
+    @Value("${inventory.cache.queue}")
+    private String cacheQueue;
+
     @Override
     public void initialize(Channel channel, String name) throws IOException {
         // Declare inventory.events exchange (topic, durable)
@@ -31,5 +35,9 @@ public class RabbitMQConfig extends ChannelInitializer {
         );
 
         LOG.info("RabbitMQ exchange 'inventory.events' declared successfully");
+
+        // Declare this instance's cache invalidation queue (non-durable, deleted with the instance)
+        channel.queueDeclare(cacheQueue, false, false, true, null);
+        channel.queueBind(cacheQueue, "inventory.events", "inventory.product_changed");
     }
 }
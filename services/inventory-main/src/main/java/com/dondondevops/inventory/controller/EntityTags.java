@@ -0,0 +1,68 @@
+package com.dondondevops.inventory.controller;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.dondondevops.inventory.model.Product;
+
+/**
+ * Strong entity tags for product responses and {@code If-None-Match} matching.
+ */
+final class EntityTags {
+
+    private EntityTags() {}
+
+    /**
+     * Tag of a product's representation. The version moves on with every write of the product
+     * item, but a write of a stock shard alone changes the stock read back without it, so the
+     * stock and held units are part of the tag as well.
+     */
+    static String of(Product product) {
+        Long version = product.getVersion();
+        return quote((version == null ? 0 : version) + "." + product.getStock() + "." + product.getHeld());
+    }
+
+    /**
+     * Tag of a catalog read as of {@code catalogVersion}, or null when there is none. Reads of
+     * the same catalog that send different representations, such as another page, projection
+     * or filter, get different tags: a hash of their query follows the version.
+     *
+     * @param query the parameters that select the representation, normalized and always in the
+     *              same order, with null for those not sent
+     */
+    static String ofCatalog(String catalogVersion, Object... query) {
+        if (catalogVersion == null) {
+            return null;
+        }
+        if (Arrays.stream(query).allMatch(Objects::isNull)) {
+            return quote(catalogVersion);
+        }
+        // String hash codes are specified, so every instance tags a query alike
+        return quote(catalogVersion + "-" + Integer.toHexString(Arrays.asList(query).toString().hashCode()));
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header lists {@code tag}, comparing weakly as RFC 9110
+     * requires for that header.
+     */
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || stripWeak(trimmed).equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -1,41 +1,135 @@
 package com.dondondevops.inventory.controller;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
+import com.dondondevops.inventory.concurrency.ConcurrencyLimited;
+import com.dondondevops.inventory.model.BatchReduceStockRequest;
+import com.dondondevops.inventory.model.BatchReduceStockResponse;
+import com.dondondevops.inventory.model.BulkRestockRequest;
 import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
 import com.dondondevops.inventory.model.ReduceStockRequest;
+import com.dondondevops.inventory.model.Reservation;
+import com.dondondevops.inventory.model.ReserveStockRequest;
 import com.dondondevops.inventory.model.RestockRequest;
+import com.dondondevops.inventory.model.RestockResult;
+import com.dondondevops.inventory.service.IdempotencyService;
 import com.dondondevops.inventory.service.InventoryService;
-import com.dondondevops.inventory.service.ProductService;
 
 import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
 import io.micronaut.http.annotation.PathVariable;
 import io.micronaut.http.annotation.Post;
+import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import jakarta.inject.Inject;
+import reactor.core.publisher.Mono;
 
+/**
+ * Stock endpoints. Every write accepts an optional {@value IdempotencyService#HEADER} header;
+ * repeating a write with the same key returns the first response without changing stock again.
+ */
+@ExecuteOn(TaskExecutors.VIRTUAL)
 @Controller("/api/inventory")
 public class InventoryController {
 
     @Inject
     private InventoryService inventoryService;
 
-    @Inject
-    private ProductService productService;
-    
+    /**
+     * Lists the products below the low-stock threshold a page at a time. The cursor for the
+     * following page is sent in the {@value ProductController#NEXT_CURSOR_HEADER} header.
+     */
+    @ConcurrencyLimited("inventory-report")
+    @Get("/low-stock")
+    public HttpResponse<List<Product>> lowStock(@QueryValue @Nullable Integer limit,
+            @QueryValue @Nullable String cursor) {
+        ProductPage page = inventoryService.getLowStock(limit, cursor);
+        MutableHttpResponse<List<Product>> response = HttpResponse.ok(page.getItems());
+        if (page.getNextCursor() != null) {
+            response.header(ProductController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response;
+    }
+
+    /**
+     * Lists the products expiring between {@code from} and {@code to} a page at a time, soonest
+     * first, with the cursor for the following page in the
+     * {@value ProductController#NEXT_CURSOR_HEADER} header.
+     */
+    @ConcurrencyLimited("inventory-report")
+    @Get("/expiring")
+    public HttpResponse<List<Product>> expiring(@QueryValue @Nullable Instant from, @QueryValue @Nullable Instant to,
+            @QueryValue @Nullable Integer limit, @QueryValue @Nullable String cursor) {
+        ProductPage page = inventoryService.getExpiring(from, to, limit, cursor);
+        MutableHttpResponse<List<Product>> response = HttpResponse.ok(page.getItems());
+        if (page.getNextCursor() != null) {
+            response.header(ProductController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response;
+    }
 
+    @ConcurrencyLimited("restock")
     @Post("/restock")
-    public HttpResponse<Product> restock(@Body RestockRequest request) {
-        Product updatedProducts = inventoryService.restock(request);
-        return HttpResponse.ok().body(updatedProducts);
+    public Mono<HttpResponse<Product>> restock(@Body RestockRequest request,
+            @Header(IdempotencyService.HEADER) @Nullable String idempotencyKey) {
+        return inventoryService.restockAsync(request, idempotencyKey).map(updatedProduct -> HttpResponse.ok().body(updatedProduct));
     }
 
+    @ConcurrencyLimited("restock")
+    @Post("/restock/bulk")
+    public HttpResponse<List<RestockResult>> restockBulk(@Body BulkRestockRequest request,
+            @Header(IdempotencyService.HEADER) @Nullable String idempotencyKey) {
+        List<RestockResult> results = inventoryService.restockBulk(request, idempotencyKey);
+        return HttpResponse.ok().body(results);
+    }
+
+    @ConcurrencyLimited("reduce-stock")
     @Post("/reduce-stock/{id}")
-    public HttpResponse<Product> reduceStock(@PathVariable @NonNull UUID id, @Body ReduceStockRequest request) {
-        Product targetProduct = productService.get(id);
-        Product updatedProduct = inventoryService.reduce(targetProduct, request);
-        return HttpResponse.ok().body(updatedProduct);
+    public Mono<HttpResponse<Product>> reduceStock(@PathVariable @NonNull UUID id, @Body ReduceStockRequest request,
+            @Header(IdempotencyService.HEADER) @Nullable String idempotencyKey) {
+        return inventoryService.reduceAsync(id, request, idempotencyKey).map(updatedProduct -> HttpResponse.ok().body(updatedProduct));
+    }
+
+    @ConcurrencyLimited("reduce-stock")
+    @Post("/reduce-stock")
+    public HttpResponse<BatchReduceStockResponse> reduceStockBatch(@Body BatchReduceStockRequest request,
+            @Header(IdempotencyService.HEADER) @Nullable String idempotencyKey) {
+        BatchReduceStockResponse response = inventoryService.reduceBatch(request, idempotencyKey);
+        if (!response.isCommitted()) {
+            return HttpResponse.status(HttpStatus.CONFLICT).body(response);
+        }
+        return HttpResponse.ok().body(response);
+    }
+
+    /**
+     * Holds stock for a pending checkout until it is committed, released or the hold lapses.
+     */
+    @ConcurrencyLimited("reservation")
+    @Post("/reservations")
+    public HttpResponse<Reservation> reserve(@Body ReserveStockRequest request) {
+        return HttpResponse.created(inventoryService.reserve(request));
+    }
+
+    @ConcurrencyLimited("reservation")
+    @Post("/reservations/{id}/commit")
+    public HttpResponse<Product> commitReservation(@PathVariable @NonNull UUID id) {
+        return HttpResponse.ok().body(inventoryService.commitReservation(id));
+    }
+
+    @ConcurrencyLimited("reservation")
+    @Post("/reservations/{id}/release")
+    public HttpResponse<Reservation> releaseReservation(@PathVariable @NonNull UUID id) {
+        return HttpResponse.ok().body(inventoryService.releaseReservation(id));
     }
 }
@@ -1,55 +1,160 @@
 package com.dondondevops.inventory.controller;
 
 import java.util.List;
+import java.util.TreeSet;
 import java.util.UUID;
 
+import com.dondondevops.inventory.exception.InvalidRequestException;
+import com.dondondevops.inventory.concurrency.ConcurrencyLimited;
 import com.dondondevops.inventory.model.CreateProductRequest;
 import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.model.ProductProjection;
 import com.dondondevops.inventory.model.UpdateProductRequest;
+import com.dondondevops.inventory.repository.ProductJsonCache;
+import com.dondondevops.inventory.service.CatalogExportService;
 import com.dondondevops.inventory.service.ProductService;
 
 import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Delete;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
 import io.micronaut.http.annotation.Patch;
 import io.micronaut.http.annotation.PathVariable;
 import io.micronaut.http.annotation.Post;
+import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import jakarta.inject.Inject;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
 
+@ExecuteOn(TaskExecutors.VIRTUAL)
 @Controller("/api/product")
 public class ProductController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Inject
     private ProductService service;
 
+    @Inject
+    private CatalogExportService exportService;
+
+    @Inject
+    private ProductJsonCache jsonCache;
+
+    /**
+     * Without query parameters the whole catalog is returned. With {@code limit}, {@code cursor}
+     * or {@code fields} a single page is returned and the cursor for the following page is sent
+     * in the {@value #NEXT_CURSOR_HEADER} header; the header is absent on the last page.
+     * With {@code category} or {@code brand} the matching products are paged by name.
+     * With {@code fields}, a list of product fields and named projections such as {@code tile},
+     * only those fields are read and returned.
+     *
+     * The ETag follows the catalog version and the query, so a poll with a current
+     * {@code If-None-Match} gets 304 Not Modified without reading DynamoDB.
+     */
+    @ConcurrencyLimited("product-read")
     @Get()
-    public HttpResponse<List<Product>> get() {
-        return HttpResponse.ok(service.getAll());
+    public HttpResponse<List<?>> get(@QueryValue @Nullable Integer limit, @QueryValue @Nullable String cursor,
+            @QueryValue @Nullable String fields, @QueryValue @Nullable String category,
+            @QueryValue @Nullable String brand, @Header(HttpHeaders.IF_NONE_MATCH) @Nullable String ifNoneMatch) {
+        if (category != null && brand != null) {
+            throw new InvalidRequestException("Filter by either category or brand, not both.");
+        }
+
+        ProductProjection projection = service.projection(fields);
+        String etag = EntityTags.ofCatalog(service.catalogVersion(), limit, cursor,
+            projection == null ? null : new TreeSet<>(projection.getFields()), category, brand);
+        if (EntityTags.matches(ifNoneMatch, etag)) {
+            return HttpResponse.<List<?>>notModified().header(HttpHeaders.ETAG, etag);
+        }
+
+        ProductPage page;
+        if (category != null) {
+            page = service.getPageByCategory(category, limit, cursor, projection);
+        } else if (brand != null) {
+            page = service.getPageByBrand(brand, limit, cursor, projection);
+        } else if (limit == null && cursor == null && projection == null) {
+            return withEntityTag(HttpResponse.<List<?>>ok(service.getAll()), etag);
+        } else {
+            page = service.getPage(limit, cursor, projection);
+        }
+
+        MutableHttpResponse<List<?>> response = HttpResponse.ok(
+            projection == null ? page.getItems() : projection.apply(page.getItems()));
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return withEntityTag(response, etag);
+    }
+
+    /**
+     * Streams every product as newline-delimited JSON, gzip-compressed when {@code gzip=true}.
+     */
+    @ConcurrencyLimited("product-read")
+    @Get(value = "/export", produces = CatalogExportService.NDJSON)
+    public HttpResponse<Publisher<byte[]>> export(@QueryValue(defaultValue = "false") boolean gzip) {
+        MutableHttpResponse<Publisher<byte[]>> response = HttpResponse.ok(exportService.exportNdjson(gzip));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response;
     }
 
+    /**
+     * With {@code fields} only those fields are returned. The product is still read whole, so
+     * that the read can be served from the product cache. A current {@code If-None-Match} gets
+     * 304 Not Modified. Whole products are sent as JSON encoded once per entity tag.
+     */
+    @ConcurrencyLimited("product-read")
     @Get("{id}")
-    public HttpResponse<Product> get(@PathVariable @NonNull UUID id) {
-        return HttpResponse.ok(service.get(id));
+    public Mono<HttpResponse<?>> get(@PathVariable @NonNull UUID id, @QueryValue @Nullable String fields,
+            @Header(HttpHeaders.IF_NONE_MATCH) @Nullable String ifNoneMatch) {
+        ProductProjection projection = service.projection(fields);
+        return service.getAsync(id).<HttpResponse<?>>map(product -> {
+            String etag = EntityTags.of(product);
+            if (EntityTags.matches(ifNoneMatch, etag)) {
+                return HttpResponse.notModified().header(HttpHeaders.ETAG, etag);
+            }
+            if (projection != null) {
+                return HttpResponse.ok(projection.apply(product)).header(HttpHeaders.ETAG, etag);
+            }
+            return HttpResponse.ok(jsonCache.encoded(product, etag))
+                .contentType(MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.ETAG, etag);
+        });
+    }
+
+    private static <T> MutableHttpResponse<T> withEntityTag(MutableHttpResponse<T> response, String etag) {
+        return etag == null ? response : response.header(HttpHeaders.ETAG, etag);
     }
 
+    @ConcurrencyLimited("product-write")
     @Post()
     public HttpResponse<Product> post(@Body CreateProductRequest request) {
         return HttpResponse.created(service.createProduct(request));
     }
 
+    @ConcurrencyLimited("product-write")
     @Delete("{id}")
     public HttpResponse<?> delete(@PathVariable @NonNull UUID id) {
         service.delete(id);
         return HttpResponse.noContent();
     }
 
+    @ConcurrencyLimited("product-write")
     @Patch("{id}")
     public HttpResponse<Product> update(@PathVariable @NonNull UUID id, @Body UpdateProductRequest request) {
-        Product targetProduct = service.get(id);
-        Product updatedProduct = service.update(targetProduct, request);
+        Product updatedProduct = service.update(id, request);
         return HttpResponse.ok().body(updatedProduct);
     }
 }
@@ -0,0 +1,88 @@
+package com.dondondevops.inventory.event.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Event published whenever products are written or deleted.
+ * Consumed by every inventory instance to evict the products from its local cache and move
+ * on to the catalog version the changes took the catalog to.
+ */
+@Serdeable
+public class ProductChangedEvent {
+
+    private String eventType = "inventory.product_changed";
+    private String origin;
+    private List<UUID> productIds;
+    private Long catalogVersion;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private Instant occurredAt;
+
+    public ProductChangedEvent() {
+        this.occurredAt = Instant.now();
+    }
+
+    public ProductChangedEvent(String origin, List<UUID> productIds, Long catalogVersion) {
+        this.origin = origin;
+        this.productIds = productIds;
+        this.catalogVersion = catalogVersion;
+        this.occurredAt = Instant.now();
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public List<UUID> getProductIds() {
+        return productIds;
+    }
+
+    public void setProductIds(List<UUID> productIds) {
+        this.productIds = productIds;
+    }
+
+    public Long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public void setCatalogVersion(Long catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public Instant getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(Instant occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductChangedEvent{" +
+                "eventType='" + eventType + '\'' +
+                ", origin='" + origin + '\'' +
+                ", productIds=" + productIds +
+                ", catalogVersion=" + catalogVersion +
+                ", occurredAt=" + occurredAt +
+                '}';
+    }
+}
@@ -1,7 +1,7 @@
 package com.dondondevops.inventory.event.dto;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 
@@ -10,12 +10,15 @@ import io.micronaut.serde.annotation.Serdeable;
 /**
  * Event published when products are restocked.
  * Consumed by Promotions service to cancel low-stock flash sale promotions.
+ * A bulk restock publishes one event carrying every restocked product in {@code items};
+ * {@code item} mirrors the first entry for consumers that predate {@code items}.
  */
 @Serdeable
 public class RestockedEvent {
 
     private String eventType = "inventory.restocked";
     private RestockedItem item;
+    private List<RestockedItem> items;
 
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
     private Instant occurredAt;
@@ -26,6 +29,13 @@ public class RestockedEvent {
 
     public RestockedEvent(RestockedItem item) {
         this.item = item;
+        this.items = List.of(item);
+        this.occurredAt = Instant.now();
+    }
+
+    public RestockedEvent(List<RestockedItem> items) {
+        this.item = items.isEmpty() ? null : items.get(0);
+        this.items = items;
         this.occurredAt = Instant.now();
     }
 
@@ -45,6 +55,14 @@ public class RestockedEvent {
         this.item = item;
     }
 
+    public List<RestockedItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<RestockedItem> items) {
+        this.items = items;
+    }
+
     public Instant getOccurredAt() {
         return occurredAt;
     }
@@ -55,6 +73,6 @@ public class RestockedEvent {
 
     @Override
     public String toString() {
-        return "RestockedEvent [eventType=" + eventType + ", item=" + item + ", occurredAt=" + occurredAt + "]";
+        return "RestockedEvent [eventType=" + eventType + ", item=" + item + ", items=" + items + ", occurredAt=" + occurredAt + "]";
     }
 }
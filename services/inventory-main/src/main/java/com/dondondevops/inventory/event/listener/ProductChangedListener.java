@@ -0,0 +1,41 @@
+package com.dondondevops.inventory.event.listener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.event.dto.ProductChangedEvent;
+import com.dondondevops.inventory.repository.ProductCache;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.env.Environment;
+import io.micronaut.rabbitmq.annotation.Queue;
+import io.micronaut.rabbitmq.annotation.RabbitListener;
+import jakarta.inject.Inject;
+
+/**
+ * Evicts changed products from this instance's cache. The changes are read from the product
+ * stream, so they include this instance's own writes; the next read of such a product loads it
+ * again. Each instance consumes its own queue, so every instance sees every change.
+ */
+@Requires(notEnv = Environment.TEST)
+@RabbitListener
+public class ProductChangedListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductChangedListener.class);
+
+    @Inject
+    private ProductCache cache;
+
+    @Queue("${inventory.cache.queue}")
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getProductIds() == null) {
+            return;
+        }
+        LOG.debug("Evicting {} products changed, announced by {}", event.getProductIds().size(), event.getOrigin());
+        cache.evict(event.getProductIds());
+        if (event.getCatalogVersion() != null) {
+            // After the eviction, so a read under the new version cannot serve an evicted copy
+            cache.advanceCatalogVersion(event.getCatalogVersion());
+        }
+    }
+}
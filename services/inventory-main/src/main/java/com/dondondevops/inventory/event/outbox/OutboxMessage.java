@@ -0,0 +1,37 @@
+package com.dondondevops.inventory.event.outbox;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+
+/**
+ * One serialized event waiting in the outbox, with the routing key it is published under on
+ * the {@code inventory.events} exchange.
+ */
+@DynamoDbBean
+public class OutboxMessage {
+
+    private String routingKey;
+    private String payload;
+
+    public OutboxMessage() {}
+
+    public OutboxMessage(String routingKey, String payload) {
+        this.routingKey = routingKey;
+        this.payload = payload;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    public void setRoutingKey(String routingKey) {
+        this.routingKey = routingKey;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+}
@@ -0,0 +1,44 @@
+package com.dondondevops.inventory.event.outbox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.dondondevops.inventory.event.dto.LowStockEvent;
+import com.dondondevops.inventory.event.dto.ProductChangedEvent;
+import com.dondondevops.inventory.event.dto.RestockedEvent;
+import com.dondondevops.inventory.event.publisher.InventoryEventPublisher;
+
+import io.micronaut.serde.ObjectMapper;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Serializes inventory events into outbox messages, in the same JSON the
+ * {@link InventoryEventPublisher} bindings would send.
+ */
+@Singleton
+public class OutboxMessages {
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    public OutboxMessage lowStock(LowStockEvent event) {
+        return message(InventoryEventPublisher.LOW_STOCK, event);
+    }
+
+    public OutboxMessage restocked(RestockedEvent event) {
+        return message(InventoryEventPublisher.RESTOCKED, event);
+    }
+
+    public OutboxMessage productChanged(ProductChangedEvent event) {
+        return message(InventoryEventPublisher.PRODUCT_CHANGED, event);
+    }
+
+    private OutboxMessage message(String routingKey, Object event) {
+        try {
+            return new OutboxMessage(routingKey, objectMapper.writeValueAsString(event));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize " + routingKey + " event", e);
+        }
+    }
+}
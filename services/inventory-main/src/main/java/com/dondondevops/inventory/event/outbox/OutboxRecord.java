@@ -0,0 +1,109 @@
+package com.dondondevops.inventory.event.outbox;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import com.dondondevops.inventory.model.InstantZConverter;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbConvertedBy;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+
+/**
+ * The events of one committed stock change, written in the same transaction as the change.
+ * While {@code pending} is set the record is listed in the sparse pending index, oldest first;
+ * the relay removes it once every message has been confirmed by the broker.
+ */
+@DynamoDbBean
+public class OutboxRecord {
+
+    /** Sparse global secondary index listing the records not yet published, oldest first. */
+    public static final String PENDING_INDEX = "pending-index";
+
+    /** Value of the pending index key until the record is published. */
+    public static final String PENDING_MARKER = "PENDING";
+
+    private String id;
+    private String pending;
+    private List<OutboxMessage> messages;
+    private Instant createdAt;
+    private Instant sentAt;
+    private Long claimedUntil;
+    private Long expiresAt;
+
+    public OutboxRecord() {}
+
+    public OutboxRecord(List<OutboxMessage> messages) {
+        this.createdAt = Instant.now();
+        // Ids sort by creation time, so the pending index hands out records in commit order
+        this.id = String.format("%013d#%s", createdAt.toEpochMilli(), UUID.randomUUID());
+        this.pending = PENDING_MARKER;
+        this.messages = messages;
+    }
+
+    @DynamoDbPartitionKey
+    @DynamoDbSecondarySortKey(indexNames = PENDING_INDEX)
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @DynamoDbSecondaryPartitionKey(indexNames = PENDING_INDEX)
+    public String getPending() {
+        return pending;
+    }
+
+    public void setPending(String pending) {
+        this.pending = pending;
+    }
+
+    public List<OutboxMessage> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<OutboxMessage> messages) {
+        this.messages = messages;
+    }
+
+    @DynamoDbConvertedBy(InstantZConverter.class)
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @DynamoDbConvertedBy(InstantZConverter.class)
+    public Instant getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(Instant sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    /** Epoch milliseconds until which a relay instance holds the record. */
+    public Long getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public void setClaimedUntil(Long claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    /** Epoch seconds after which DynamoDB's TTL deletes a sent record. */
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
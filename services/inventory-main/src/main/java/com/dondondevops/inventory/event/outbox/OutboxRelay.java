@@ -0,0 +1,172 @@
+package com.dondondevops.inventory.event.outbox;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.event.pipeline.EventPipeline;
+import com.dondondevops.inventory.repository.OutboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.env.Environment;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Drains the outbox to the {@code inventory.events} exchange. Every
+ * {@code inventory.outbox.relay-interval} it claims a batch of pending records, hands their
+ * messages to the {@link EventPipeline} and marks a record sent once the broker has confirmed
+ * every message. Records still waiting in the pipeline's journal after
+ * {@code inventory.outbox.confirm-timeout} are marked on a later pass, once their replay is
+ * confirmed; this instance does not hand them to the pipeline again meanwhile. Records the
+ * pipeline could not take stay pending and are published again once their claim lapses, so
+ * delivery is at least once and consumers may see an event twice.
+ */
+@Requires(notEnv = Environment.TEST)
+@Requires(beans = OutboxRepository.class)
+@Singleton
+public class OutboxRelay {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxRepository outbox;
+
+    private final EventPipeline pipeline;
+
+    private final int batchSize;
+
+    private final Duration lease;
+
+    private final Duration confirmTimeout;
+
+    private final Counter published;
+
+    private final Counter failures;
+
+    /** Records handed to the pipeline but not confirmed yet, by record id. */
+    private final Map<String, InFlight> inFlight = new LinkedHashMap<>();
+
+    private record InFlight(OutboxRecord record, CompletableFuture<Void> confirm) {}
+
+    @Inject
+    public OutboxRelay(OutboxRepository outbox, EventPipeline pipeline, MeterRegistry meterRegistry,
+            @Value("${inventory.outbox.batch-size:25}") int batchSize,
+            @Value("${inventory.outbox.lease:30s}") Duration lease,
+            @Value("${inventory.outbox.confirm-timeout:10s}") Duration confirmTimeout) {
+        this.outbox = outbox;
+        this.pipeline = pipeline;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.confirmTimeout = confirmTimeout;
+        this.published = meterRegistry.counter("inventory.outbox.published");
+        this.failures = meterRegistry.counter("inventory.outbox.publish.failures");
+    }
+
+    @Scheduled(fixedDelay = "${inventory.outbox.relay-interval:500ms}", initialDelay = "5s")
+    void relay() {
+        try {
+            settle();
+            // Keep going while full batches go out, so a backlog drains without waiting a delay per batch
+            List<OutboxRecord> pending;
+            do {
+                // Ask past the records this instance is still waiting on, so they cannot fill the batch
+                pending = outbox.pending(batchSize + inFlight.size());
+            } while (relay(pending) == batchSize);
+        } catch (Exception e) {
+            LOG.warn("Outbox relay pass failed", e);
+        }
+    }
+
+    /**
+     * Marks the records whose journaled messages have been confirmed since the last pass.
+     */
+    private void settle() {
+        Iterator<InFlight> waiting = inFlight.values().iterator();
+        while (waiting.hasNext()) {
+            InFlight entry = waiting.next();
+            if (entry.confirm().isDone()) {
+                waiting.remove();
+                settled(entry.record(), entry.confirm());
+            }
+        }
+    }
+
+    /**
+     * @return the number of records published and marked sent
+     */
+    private int relay(List<OutboxRecord> pending) {
+        List<OutboxRecord> claimed = new ArrayList<>();
+        List<CompletableFuture<Void>> confirms = new ArrayList<>();
+        for (OutboxRecord record : pending) {
+            if (claimed.size() == batchSize) {
+                break;
+            }
+            // A record whose claim lapsed while its messages wait in the journal is not sent twice from here
+            if (inFlight.containsKey(record.getId()) || !outbox.claim(record, lease)) {
+                continue;
+            }
+            claimed.add(record);
+            confirms.add(publish(record));
+        }
+
+        try {
+            CompletableFuture.allOf(confirms.toArray(CompletableFuture[]::new))
+                .get(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (ExecutionException | TimeoutException e) {
+            // Records whose messages were all confirmed are still marked below
+        }
+
+        int sent = 0;
+        for (int i = 0; i < claimed.size(); i++) {
+            OutboxRecord record = claimed.get(i);
+            CompletableFuture<Void> confirm = confirms.get(i);
+            if (!confirm.isDone()) {
+                inFlight.put(record.getId(), new InFlight(record, confirm));
+            } else if (settled(record, confirm)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Marks a record sent if the broker confirmed all its messages.
+     *
+     * @return true if it was marked sent
+     */
+    private boolean settled(OutboxRecord record, CompletableFuture<Void> confirm) {
+        if (confirm.isCompletedExceptionally()) {
+            failures.increment();
+            LOG.warn("Outbox record {} was not delivered and will be published again", record.getId());
+            return false;
+        }
+        outbox.markSent(record);
+        published.increment(record.getMessages().size());
+        return true;
+    }
+
+    private CompletableFuture<Void> publish(OutboxRecord record) {
+        try {
+            return pipeline.submit(record.getMessages());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.dondondevops.inventory.event.pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.publisher.InventoryEventPublisher;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.env.Environment;
+import io.micronaut.core.convert.format.ReadableBytes;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Publishes serialized inventory events off the caller's thread. Messages wait in a bounded
+ * ring buffer of {@code inventory.events.pipeline.buffer-size}; a single sender drains it in
+ * batches, publishes each batch with publisher confirms and waits for the confirms once per
+ * batch rather than once per message.
+ *
+ * <p>Messages the broker does not confirm are appended to a memory-mapped {@link SpillJournal}.
+ * While the journal holds anything, new messages are appended behind it, and every
+ * {@code retry-interval} the sender tries to replay the journal from its head, so events reach
+ * the broker in the order they were journaled. A message only counts as delivered once the
+ * broker confirms it, directly or on replay: the journal lets the pipeline retry in order
+ * without the caller, but the caller keeps its own copy until then, so losing the journal
+ * with its container only means those events are sent again.
+ */
+@Requires(notEnv = Environment.TEST)
+@Singleton
+public class EventPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventPipeline.class);
+
+    /** A message waiting to be sent and the future completed once the broker confirms it. */
+    private record Pending(OutboxMessage message, CompletableFuture<Void> done) {}
+
+    private final InventoryEventPublisher eventPublisher;
+
+    private final BlockingQueue<Pending> buffer;
+
+    private final SpillJournal journal;
+
+    /** Futures of the journaled messages submitted since the start, by journal offset. */
+    private final Map<Long, CompletableFuture<Void>> journaled = new ConcurrentHashMap<>();
+
+    private final int batchSize;
+
+    private final Duration confirmTimeout;
+
+    private final Duration retryInterval;
+
+    private final Counter published;
+
+    private final Counter spilled;
+
+    private final Counter replayed;
+
+    private final Thread sender;
+
+    private volatile boolean running = true;
+
+    private long nextReplay;
+
+    @Inject
+    public EventPipeline(InventoryEventPublisher eventPublisher, MeterRegistry meterRegistry,
+            @Value("${inventory.events.pipeline.buffer-size:4096}") int bufferSize,
+            @Value("${inventory.events.pipeline.batch-size:100}") int batchSize,
+            @Value("${inventory.events.pipeline.confirm-timeout:5s}") Duration confirmTimeout,
+            @Value("${inventory.events.pipeline.retry-interval:1s}") Duration retryInterval,
+            @Value("${inventory.events.journal.path:inventory-events.journal}") String journalPath,
+            @Value("${inventory.events.journal.max-size:64MB}") @ReadableBytes long journalMaxSize) throws IOException {
+        this.eventPublisher = eventPublisher;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.journal = new SpillJournal(Path.of(journalPath), journalMaxSize);
+        this.batchSize = batchSize;
+        this.confirmTimeout = confirmTimeout;
+        this.retryInterval = retryInterval;
+
+        Gauge.builder("inventory.events.buffer.size", buffer, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("inventory.events.journal.bytes", journal, SpillJournal::size).register(meterRegistry);
+        this.published = meterRegistry.counter("inventory.events.published");
+        this.spilled = meterRegistry.counter("inventory.events.spilled");
+        this.replayed = meterRegistry.counter("inventory.events.replayed");
+
+        this.nextReplay = System.nanoTime();
+        if (!journal.isEmpty()) {
+            LOG.info("Replaying {} bytes of journaled events", journal.size());
+        }
+        this.sender = Thread.ofPlatform().name("inventory-event-sender").daemon().start(this::run);
+    }
+
+    /**
+     * Queues {@code messages} for publishing. The returned future completes when the broker has
+     * confirmed every message, which may take until the journal is replayed, and fails if one
+     * could not be journaled. It fails right away with a {@link RejectedExecutionException},
+     * without queueing any of them, if the buffer has no room for all of them.
+     */
+    public CompletableFuture<Void> submit(List<OutboxMessage> messages) {
+        List<Pending> batch = messages.stream()
+            .map(message -> new Pending(message, new CompletableFuture<Void>()))
+            .toList();
+        // Only submitters add to the buffer, so the room checked here cannot shrink before the offers
+        synchronized (buffer) {
+            if (buffer.remainingCapacity() < batch.size()) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Event buffer is full"));
+            }
+            batch.forEach(buffer::offer);
+        }
+        return CompletableFuture.allOf(batch.stream().map(Pending::done).toArray(CompletableFuture[]::new));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<Pending> batch = nextBatch();
+                if (!journal.isEmpty()) {
+                    // Keep new events behind the journaled ones
+                    spill(batch);
+                    replay();
+                } else if (!batch.isEmpty()) {
+                    send(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOG.error("Event sender failed", e);
+            }
+        }
+    }
+
+    private List<Pending> nextBatch() throws InterruptedException {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        Pending first = buffer.poll(retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+        if (first != null) {
+            batch.add(first);
+            buffer.drainTo(batch, batchSize - 1);
+        }
+        return batch;
+    }
+
+    private void send(List<Pending> batch) throws InterruptedException {
+        List<CompletableFuture<Void>> confirms = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            confirms.add(publish(pending.message()));
+        }
+        awaitConfirms(confirms);
+
+        List<Pending> unconfirmed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (isConfirmed(confirms.get(i))) {
+                batch.get(i).done().complete(null);
+                published.increment();
+            } else {
+                unconfirmed.add(batch.get(i));
+            }
+        }
+        if (!unconfirmed.isEmpty()) {
+            LOG.warn("Broker did not confirm {} events, journaling them", unconfirmed.size());
+            spill(unconfirmed);
+            nextReplay = System.nanoTime() + retryInterval.toNanos();
+        }
+    }
+
+    private void spill(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> offsets = journal.append(batch.stream().map(Pending::message).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                journaled.put(offsets.get(i), batch.get(i).done());
+            }
+            spilled.increment(batch.size());
+        } catch (IOException e) {
+            LOG.error("Could not journal {} events", batch.size(), e);
+            batch.forEach(pending -> pending.done().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Publishes the oldest journaled batch and drops it from the journal once confirmed.
+     */
+    private void replay() throws InterruptedException {
+        if (System.nanoTime() - nextReplay < 0) {
+            return;
+        }
+        SpillJournal.Batch batch = journal.read(batchSize);
+        List<CompletableFuture<Void>> confirms = new ArrayList<>(batch.messages().size());
+        for (OutboxMessage message : batch.messages()) {
+            confirms.add(publish(message));
+        }
+        awaitConfirms(confirms);
+
+        if (confirms.stream().allMatch(EventPipeline::isConfirmed)) {
+            journal.advance(batch.end());
+            for (Long offset : batch.offsets()) {
+                // Messages journaled before a restart have no one waiting on them
+                CompletableFuture<Void> done = journaled.remove(offset);
+                if (done != null) {
+                    done.complete(null);
+                }
+            }
+            replayed.increment(batch.messages().size());
+            published.increment(batch.messages().size());
+            if (journal.isEmpty()) {
+                LOG.info("Event journal drained");
+            }
+        } else {
+            // Publish the whole batch again later; consumers may see some of it twice
+            nextReplay = System.nanoTime() + retryInterval.toNanos();
+        }
+    }
+
+    private CompletableFuture<Void> publish(OutboxMessage message) {
+        try {
+            return eventPublisher.publish(message.getRoutingKey(), message.getPayload().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void awaitConfirms(List<CompletableFuture<Void>> confirms) throws InterruptedException {
+        try {
+            CompletableFuture.allOf(confirms.toArray(CompletableFuture[]::new))
+                .get(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Each confirm is checked on its own by the caller
+        }
+    }
+
+    private static boolean isConfirmed(CompletableFuture<Void> confirm) {
+        return confirm.isDone() && !confirm.isCompletedExceptionally();
+    }
+
+    @PreDestroy
+    void close() throws IOException, InterruptedException {
+        running = false;
+        sender.join(confirmTimeout.toMillis() + retryInterval.toMillis());
+        // Whatever is still buffered goes to the journal for the next start
+        List<Pending> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        spill(remaining);
+        journal.close();
+        // Not confirmed; their senders publish them again
+        RejectedExecutionException closed = new RejectedExecutionException("Event pipeline closed");
+        journaled.values().forEach(done -> done.completeExceptionally(closed));
+        journaled.clear();
+    }
+}
@@ -0,0 +1,186 @@
+package com.dondondevops.inventory.event.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+
+/**
+ * Journal of messages the broker could not take, in a memory-mapped file used as a ring
+ * buffer. Entries are read back from the head in the order they were appended and the head
+ * only moves past entries once they have been confirmed. Appends wrap around to the start of
+ * the file once the end is reached, into the space drained entries left behind, so a journal
+ * that drains as fast as it fills never runs out of room. Every append and head move is
+ * forced to disk.
+ *
+ * <p>Layout: a header holding the head and tail offsets, followed by entries of
+ * {@code [int length][short routing key length][routing key][payload]}, all UTF-8. A length of
+ * {@value #WRAP} marks the end of the used part of the file before an entry that wrapped.
+ */
+final class SpillJournal implements Closeable {
+
+    private static final int HEADER_SIZE = 2 * Long.BYTES;
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = Long.BYTES;
+    private static final int WRAP = -1;
+
+    /**
+     * Messages read from the head of the journal, the offset each of them starts at, and the
+     * offset just after the last of them.
+     */
+    record Batch(List<OutboxMessage> messages, List<Long> offsets, long end) {}
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private long head;
+
+    private long tail;
+
+    SpillJournal(Path path, long maxSize) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.min(Math.max(channel.size(), maxSize), Integer.MAX_VALUE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        head = buffer.getLong(HEAD_OFFSET);
+        tail = buffer.getLong(TAIL_OFFSET);
+        if (head < HEADER_SIZE || head > buffer.capacity() || tail < HEADER_SIZE || tail > buffer.capacity()) {
+            // New or unreadable file
+            reset();
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Bytes held by entries not yet drained.
+     */
+    synchronized long size() {
+        return tail >= head ? tail - head : buffer.capacity() - head + tail - HEADER_SIZE;
+    }
+
+    /**
+     * Appends {@code messages} in order, all or none of them.
+     *
+     * @return the offset each message was written at
+     * @throws IOException if the journal has no room left for them
+     */
+    synchronized List<Long> append(List<OutboxMessage> messages) throws IOException {
+        if (head == tail && head != HEADER_SIZE) {
+            // Nothing to keep, so start over where there is the most room
+            reset();
+        }
+
+        List<byte[][]> entries = new ArrayList<>(messages.size());
+        List<Long> offsets = new ArrayList<>(messages.size());
+        long position = tail;
+        boolean wrapped = tail < head;
+        for (OutboxMessage message : messages) {
+            byte[] routingKey = message.getRoutingKey().getBytes(StandardCharsets.UTF_8);
+            byte[] payload = message.getPayload().getBytes(StandardCharsets.UTF_8);
+            long needed = Integer.BYTES + Short.BYTES + routingKey.length + payload.length;
+            if (!wrapped && position + needed > buffer.capacity()) {
+                wrapped = true;
+                position = HEADER_SIZE;
+            }
+            // The tail stays short of the head, so that a full journal cannot look empty
+            if (wrapped && position + needed >= head) {
+                throw new IOException("Event journal is full: " + size() + " bytes pending");
+            }
+            entries.add(new byte[][] { routingKey, payload });
+            offsets.add(position);
+            position += needed;
+        }
+
+        int previous = (int) tail;
+        for (int i = 0; i < entries.size(); i++) {
+            byte[][] entry = entries.get(i);
+            int offset = offsets.get(i).intValue();
+            if (offset < previous && previous + Integer.BYTES <= buffer.capacity()) {
+                buffer.putInt(previous, WRAP);
+            }
+            buffer.putInt(offset, Short.BYTES + entry[0].length + entry[1].length);
+            buffer.putShort(offset + Integer.BYTES, (short) entry[0].length);
+            buffer.put(offset + Integer.BYTES + Short.BYTES, entry[0]);
+            buffer.put(offset + Integer.BYTES + Short.BYTES + entry[0].length, entry[1]);
+            previous = offset + Integer.BYTES + Short.BYTES + entry[0].length + entry[1].length;
+        }
+        // Entries are written before the tail moves, so a crash in between only loses the append
+        buffer.force();
+        tail = position;
+        buffer.putLong(TAIL_OFFSET, tail);
+        buffer.force();
+        return offsets;
+    }
+
+    /**
+     * Reads up to {@code max} messages from the head without removing them.
+     */
+    synchronized Batch read(int max) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        int position = (int) head;
+        while (position != tail && messages.size() < max) {
+            if (position + Integer.BYTES > buffer.capacity() || buffer.getInt(position) == WRAP) {
+                position = HEADER_SIZE;
+                continue;
+            }
+            int length = buffer.getInt(position);
+            int keyLength = buffer.getShort(position + Integer.BYTES);
+            byte[] routingKey = new byte[keyLength];
+            byte[] payload = new byte[length - Short.BYTES - keyLength];
+            buffer.get(position + Integer.BYTES + Short.BYTES, routingKey);
+            buffer.get(position + Integer.BYTES + Short.BYTES + keyLength, payload);
+            messages.add(new OutboxMessage(
+                new String(routingKey, StandardCharsets.UTF_8), new String(payload, StandardCharsets.UTF_8)));
+            offsets.add((long) position);
+            position += Integer.BYTES + length;
+        }
+        return new Batch(messages, offsets, position);
+    }
+
+    /**
+     * Drops the entries before {@code end}, as returned by {@link #read(int)}.
+     */
+    synchronized void advance(long end) {
+        if (end < HEADER_SIZE || end > buffer.capacity()) {
+            throw new IllegalArgumentException("Offset " + end + " is outside the journal");
+        }
+        if (end == tail) {
+            reset();
+            return;
+        }
+        head = end;
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.force();
+    }
+
+    private void reset() {
+        head = HEADER_SIZE;
+        tail = HEADER_SIZE;
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(TAIL_OFFSET, tail);
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -1,10 +1,14 @@
 package com.dondondevops.inventory.event.publisher;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.dondondevops.inventory.event.dto.LowStockEvent;
+import com.dondondevops.inventory.event.dto.ProductChangedEvent;
 import com.dondondevops.inventory.event.dto.RestockedEvent;
 
 import io.micronaut.rabbitmq.annotation.Binding;
 import io.micronaut.rabbitmq.annotation.RabbitClient;
+import io.micronaut.rabbitmq.annotation.RabbitProperty;
 
 /**
  * Declarative RabbitMQ client for publishing inventory domain events.
@@ -13,12 +17,16 @@ import io.micronaut.rabbitmq.annotation.RabbitClient;
 @RabbitClient("inventory.events")
 public interface InventoryEventPublisher {
 
+    String LOW_STOCK = "inventory.low_stock";
+    String RESTOCKED = "inventory.restocked";
+    String PRODUCT_CHANGED = "inventory.product_changed";
+
     /**
      * Publishes a low stock event when product inventory falls below threshold.
      *
      * @param event The low stock event containing product ID, current stock, and threshold
      */
-    @Binding("inventory.low_stock")
+    @Binding(LOW_STOCK)
     void publishLowStock(LowStockEvent event);
 
     /**
@@ -26,6 +34,24 @@ public interface InventoryEventPublisher {
      *
      * @param event The restocked event containing list of restocked items
      */
-    @Binding("inventory.restocked")
+    @Binding(RESTOCKED)
     void publishRestocked(RestockedEvent event);
+
+    /**
+     * Publishes a product changed event so other instances evict the products from their cache.
+     *
+     * @param event The product changed event containing the changed product IDs
+     */
+    @Binding(PRODUCT_CHANGED)
+    void publishProductChanged(ProductChangedEvent event);
+
+    /**
+     * Publishes an event already serialized to JSON, such as one read back from the outbox.
+     * The returned future completes once the broker has confirmed the message.
+     *
+     * @param routingKey The routing key of the event
+     * @param body The JSON encoded event
+     */
+    @RabbitProperty(name = "contentType", value = "application/json")
+    CompletableFuture<Void> publish(@Binding String routingKey, byte[] body);
 }
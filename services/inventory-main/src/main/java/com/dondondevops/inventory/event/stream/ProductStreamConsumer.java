@@ -0,0 +1,323 @@
+package com.dondondevops.inventory.event.stream;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.event.dto.LowStockEvent;
+import com.dondondevops.inventory.event.dto.ProductChangedEvent;
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.outbox.OutboxMessages;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.repository.LeaseRepository;
+import com.dondondevops.inventory.repository.OutboxRepository;
+import com.dondondevops.inventory.repository.ProductCache;
+import com.dondondevops.inventory.repository.ProductRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.env.Environment;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.services.dynamodb.model.ExpiredIteratorException;
+import software.amazon.awssdk.services.dynamodb.model.GetRecordsResponse;
+import software.amazon.awssdk.services.dynamodb.model.OperationType;
+import software.amazon.awssdk.services.dynamodb.model.Record;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.Shard;
+import software.amazon.awssdk.services.dynamodb.model.ShardIteratorType;
+import software.amazon.awssdk.services.dynamodb.model.StreamDescription;
+import software.amazon.awssdk.services.dynamodb.model.TrimmedDataAccessException;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
+
+/**
+ * Reads the product table's stream and puts a LowStockEvent in the outbox for every write that
+ * takes a product below its low-stock threshold; the write itself sets the low-stock marker.
+ * Each stream record carries the product before and after one write, so a crossing is seen
+ * once however many reductions race, and no write path has to raise the event itself. Every
+ * page also announces the products it changed with a ProductChangedEvent, from which all
+ * instances evict their cached copies, and moves the shared catalog version on by one; the event
+ * carries the new version, so the instances hand out the same version for the same catalog, and
+ * only once they evicted what changed. Every instance also reads the version from the lease now
+ * and then, to catch up on announcements it missed.
+ *
+ * One instance at a time reads the stream, under the {@value #LEASE} lease, and stores how far
+ * it got in each shard, and the catalog version, on the lease. A shard is only read once its
+ * parent has been read to its end, so the writes of a product are seen in order. Positions are
+ * stored after the events of a page are in the outbox, so an instance that dies in between has
+ * the next holder raise them again; like the relay, this delivers at least once.
+ */
+@Requires(notEnv = Environment.TEST)
+@Requires(beans = { DynamoDbStreamsClient.class, LeaseRepository.class, ProductRepository.class })
+@Singleton
+public class ProductStreamConsumer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductStreamConsumer.class);
+
+    static final String LEASE = "product-stream";
+
+    /** Origin of the ProductChangedEvents raised from the stream. */
+    static final String ORIGIN = "product-stream";
+
+    /** Progress key of the shared catalog version, next to the shard positions. */
+    static final String CATALOG_VERSION = "catalogVersion";
+
+    /** Position of a shard that has been read to its end. */
+    static final String END = "END";
+
+    /** Pages read from one shard per pass, so a busy shard does not hold up the others. */
+    private static final int PAGES_PER_SHARD = 10;
+
+    private final DynamoDbStreamsClient streams;
+
+    private final LeaseRepository leases;
+
+    private final ProductRepository products;
+
+    private final OutboxRepository outbox;
+
+    private final OutboxMessages outboxMessages;
+
+    private final ProductCache cache;
+
+    private final Duration leaseDuration;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final Counter processed;
+
+    private final Counter lowStock;
+
+    /** Iterators to carry on from in the next pass, by shard id. */
+    private final Map<String, Cursor> cursors = new HashMap<>();
+
+    private String streamArn;
+
+    /** An iterator that is valid while the shard's stored position is still {@code after}. */
+    private record Cursor(String after, String iterator) {}
+
+    @Inject
+    public ProductStreamConsumer(DynamoDbStreamsClient streams, LeaseRepository leases, ProductRepository products,
+            OutboxRepository outbox, OutboxMessages outboxMessages, ProductCache cache, MeterRegistry meterRegistry,
+            @Value("${inventory.stream.lease:30s}") Duration leaseDuration) {
+        this.streams = streams;
+        this.leases = leases;
+        this.products = products;
+        this.outbox = outbox;
+        this.outboxMessages = outboxMessages;
+        this.cache = cache;
+        this.leaseDuration = leaseDuration;
+        this.processed = meterRegistry.counter("inventory.stream.records");
+        this.lowStock = meterRegistry.counter("inventory.stream.low-stock");
+    }
+
+    @Scheduled(fixedDelay = "${inventory.stream.poll-interval:1s}", initialDelay = "5s")
+    void poll() {
+        try {
+            if (!leases.acquire(LEASE, owner, leaseDuration)) {
+                cursors.clear();
+                return;
+            }
+            if (streamArn == null) {
+                Optional<String> arn = products.streamArn();
+                if (arn.isEmpty()) {
+                    // Still being enabled by the repository
+                    return;
+                }
+                streamArn = arn.get();
+            }
+            consume();
+        } catch (ResourceNotFoundException e) {
+            // The stream was replaced; its shards are pruned from the lease on the next pass
+            streamArn = null;
+            cursors.clear();
+        } catch (Exception e) {
+            LOG.warn("Product stream pass failed", e);
+        }
+    }
+
+    /**
+     * Catches this instance up with the shared catalog version, whether or not it holds the lease.
+     */
+    @Scheduled(fixedDelay = "${inventory.catalog.refresh-interval:30s}", initialDelay = "5s")
+    void refreshCatalogVersion() {
+        try {
+            catalogVersion(leases.progress(LEASE)).ifPresent(cache::advanceCatalogVersion);
+        } catch (Exception e) {
+            LOG.warn("Catalog version refresh failed", e);
+        }
+    }
+
+    /**
+     * The catalog version stored on the lease, or nothing before the stream was first read, so
+     * that instances keep the catalog version unknown rather than agree on one that never moves.
+     */
+    private static OptionalLong catalogVersion(Map<String, String> progress) {
+        String version = progress.get(CATALOG_VERSION);
+        return version == null ? OptionalLong.empty() : OptionalLong.of(Long.parseLong(version));
+    }
+
+    private void consume() {
+        Map<String, String> positions = new HashMap<>(leases.progress(LEASE));
+        List<Shard> shards = shards();
+        Set<String> listed = new HashSet<>();
+        shards.forEach(shard -> listed.add(shard.shardId()));
+
+        for (Shard shard : shards) {
+            String parent = shard.parentShardId();
+            if (END.equals(positions.get(shard.shardId()))
+                    || parent != null && listed.contains(parent) && !END.equals(positions.get(parent))) {
+                continue;
+            }
+            if (!read(shard.shardId(), positions)) {
+                cursors.clear();
+                return;
+            }
+        }
+
+        // Shards drop out of the stream after 24 hours
+        List<String> gone = positions.keySet().stream()
+            .filter(id -> !CATALOG_VERSION.equals(id) && !listed.contains(id))
+            .toList();
+        leases.removeProgress(LEASE, owner, gone);
+        cursors.keySet().retainAll(listed);
+    }
+
+    private List<Shard> shards() {
+        List<Shard> shards = new ArrayList<>();
+        String last = null;
+        do {
+            String start = last;
+            StreamDescription description = streams.describeStream(r -> r.streamArn(streamArn)
+                .exclusiveStartShardId(start)).streamDescription();
+            shards.addAll(description.shards());
+            last = description.lastEvaluatedShardId();
+        } while (last != null);
+        return shards;
+    }
+
+    /**
+     * Reads up to {@value #PAGES_PER_SHARD} pages of the shard, storing the position after each.
+     *
+     * @return false if the lease was lost
+     */
+    private boolean read(String shardId, Map<String, String> positions) {
+        Cursor cursor = cursors.remove(shardId);
+        String iterator = cursor != null && Objects.equals(cursor.after(), positions.get(shardId))
+            ? cursor.iterator()
+            : iterator(shardId, positions.get(shardId));
+
+        for (int page = 0; page < PAGES_PER_SHARD; page++) {
+            GetRecordsResponse response;
+            try {
+                String current = iterator;
+                response = streams.getRecords(r -> r.shardIterator(current));
+            } catch (ExpiredIteratorException e) {
+                iterator = iterator(shardId, positions.get(shardId));
+                continue;
+            } catch (TrimmedDataAccessException e) {
+                LOG.warn("Records of product stream shard {} aged out before they were read", shardId);
+                iterator = iterator(shardId, null);
+                continue;
+            }
+
+            List<Record> records = response.records();
+            if (!records.isEmpty()) {
+                long version = catalogVersion(positions).orElse(0) + 1;
+                outbox.add(messages(records, version));
+                String sequence = records.get(records.size() - 1).dynamodb().sequenceNumber();
+                Map<String, String> progress = Map.of(shardId, sequence, CATALOG_VERSION, Long.toString(version));
+                if (!leases.saveProgress(LEASE, owner, progress)) {
+                    return false;
+                }
+                positions.putAll(progress);
+            }
+
+            iterator = response.nextShardIterator();
+            if (iterator == null) {
+                if (!leases.saveProgress(LEASE, owner, shardId, END)) {
+                    return false;
+                }
+                positions.put(shardId, END);
+                return true;
+            }
+            if (records.isEmpty()) {
+                // Caught up with a shard still being written
+                break;
+            }
+        }
+        cursors.put(shardId, new Cursor(positions.get(shardId), iterator));
+        return true;
+    }
+
+    private String iterator(String shardId, String after) {
+        return streams.getShardIterator(r -> {
+            r.streamArn(streamArn).shardId(shardId);
+            if (after == null) {
+                r.shardIteratorType(ShardIteratorType.TRIM_HORIZON);
+            } else {
+                r.shardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER).sequenceNumber(after);
+            }
+        }).shardIterator();
+    }
+
+    /**
+     * The events of a page of stream records.
+     *
+     * @param catalogVersion the catalog version the page moves the catalog to
+     */
+    private List<OutboxMessage> messages(List<Record> records, long catalogVersion) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        Set<UUID> changed = new LinkedHashSet<>();
+        for (Record record : records) {
+            processed.increment();
+            changed.add(ProductRepository.idOf(record.dynamodb().keys()));
+            if (record.eventName() != OperationType.MODIFY) {
+                continue;
+            }
+            Product before = products.fromImage(record.dynamodb().oldImage());
+            Product after = products.fromImage(record.dynamodb().newImage());
+
+            if (crossedThreshold(before, after)) {
+                int threshold = after.lowStockThresholdOrDefault();
+                LOG.info("Product {} fell below the low-stock threshold - stock: {}, threshold: {}",
+                    after.getProductID(), after.getStock(), threshold);
+                messages.add(outboxMessages.lowStock(new LowStockEvent(
+                    after.getProductID(), after.getStock(), threshold)));
+                lowStock.increment();
+            }
+        }
+        messages.add(outboxMessages.productChanged(new ProductChangedEvent(ORIGIN, List.copyOf(changed), catalogVersion)));
+        return messages;
+    }
+
+    /**
+     * Whether a write took the stock from at or above the product's threshold to below it.
+     */
+    static boolean crossedThreshold(Product before, Product after) {
+        int threshold = after.lowStockThresholdOrDefault();
+        return after.getStock() < before.getStock()
+            && after.getStock() < threshold && before.getStock() >= threshold;
+    }
+
+    @PreDestroy
+    void close() {
+        leases.release(LEASE, owner);
+    }
+}
@@ -0,0 +1,17 @@
+package com.dondondevops.inventory.exception;
+
+/**
+ * Thrown when an {@code Idempotency-Key} is sent again with a different request.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    private String key;
+
+    public IdempotencyKeyReusedException(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
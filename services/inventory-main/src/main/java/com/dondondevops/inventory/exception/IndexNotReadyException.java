@@ -0,0 +1,18 @@
+package com.dondondevops.inventory.exception;
+
+/**
+ * Thrown when a query needs a secondary index that is still being created or backfilled.
+ */
+public class IndexNotReadyException extends RuntimeException {
+
+    private final String indexName;
+
+    public IndexNotReadyException(String indexName) {
+        super("Index " + indexName + " is still being built, try again later.");
+        this.indexName = indexName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+}
@@ -0,0 +1,30 @@
+package com.dondondevops.inventory.exception;
+
+import java.util.UUID;
+
+public class InsufficientStockException extends RuntimeException {
+
+    private UUID id;
+
+    private int requested;
+
+    private int available;
+
+    public InsufficientStockException(UUID id, int requested, int available) {
+        this.id = id;
+        this.requested = requested;
+        this.available = available;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
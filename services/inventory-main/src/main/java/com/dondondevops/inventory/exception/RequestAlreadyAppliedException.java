@@ -0,0 +1,18 @@
+package com.dondondevops.inventory.exception;
+
+/**
+ * Thrown when a stock change was not applied because a concurrent request with the same
+ * {@code Idempotency-Key} committed first. Its stored response is the answer to both.
+ */
+public class RequestAlreadyAppliedException extends RuntimeException {
+
+    private String key;
+
+    public RequestAlreadyAppliedException(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
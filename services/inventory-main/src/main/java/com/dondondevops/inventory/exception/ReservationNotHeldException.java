@@ -0,0 +1,29 @@
+package com.dondondevops.inventory.exception;
+
+import java.util.UUID;
+
+import com.dondondevops.inventory.model.Reservation;
+
+/**
+ * Thrown when a reservation is committed or released after it was already settled, or after
+ * its hold lapsed. Nothing was written.
+ */
+public class ReservationNotHeldException extends RuntimeException {
+
+    private UUID id;
+
+    private Reservation.Status status;
+
+    public ReservationNotHeldException(UUID id, Reservation.Status status) {
+        this.id = id;
+        this.status = status;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Reservation.Status getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,15 @@
+package com.dondondevops.inventory.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final String endpoint;
+
+    public ServiceOverloadedException(String endpoint) {
+        super("Too many concurrent " + endpoint + " requests, try again later.");
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
@@ -0,0 +1,22 @@
+package com.dondondevops.inventory.exception;
+
+import java.util.List;
+
+import com.dondondevops.inventory.model.ReduceStockResult;
+
+/**
+ * Thrown when DynamoDB cancels a multi-product stock transaction.
+ * Carries one result per product explaining why it did or did not apply.
+ */
+public class StockTransactionCancelledException extends RuntimeException {
+
+    private List<ReduceStockResult> results;
+
+    public StockTransactionCancelledException(List<ReduceStockResult> results) {
+        this.results = results;
+    }
+
+    public List<ReduceStockResult> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,20 @@
+package com.dondondevops.inventory.exception;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a product kept changing under a write until it ran out of attempts. Nothing was
+ * written; the request can be sent again.
+ */
+public class WriteConflictException extends RuntimeException {
+
+    private UUID id;
+
+    public WriteConflictException(UUID id) {
+        this.id = id;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+}
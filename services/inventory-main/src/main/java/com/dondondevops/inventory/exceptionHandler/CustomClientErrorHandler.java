@@ -0,0 +1,65 @@
+package com.dondondevops.inventory.exceptionHandler;
+
+import java.util.Map;
+
+import com.dondondevops.inventory.exception.IdempotencyKeyReusedException;
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.InvalidRequestException;
+import com.dondondevops.inventory.exception.ReservationNotHeldException;
+import com.dondondevops.inventory.exception.WriteConflictException;
+
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Error;
+
+@Controller
+public class CustomClientErrorHandler {
+
+    @Error(global = true)
+    public HttpResponse<?> handleBadRequest(HttpRequest<?> request, InvalidRequestException e) {
+        return HttpResponse.badRequest()
+            .body(Map.of(
+                "error", "Bad Request",
+                "message", e.getMessage()
+            ));
+    }
+
+    @Error(global = true)
+    public HttpResponse<?> handleInsufficientStock(HttpRequest<?> request, InsufficientStockException e) {
+        return HttpResponse.status(HttpStatus.CONFLICT)
+            .body(Map.of(
+                "error", "Insufficient Stock",
+                "message", "ID: " + e.getId() + " has " + e.getAvailable() + " in stock, "
+                    + e.getRequested() + " requested."
+            ));
+    }
+
+    @Error(global = true)
+    public HttpResponse<?> handleIdempotencyKeyReused(HttpRequest<?> request, IdempotencyKeyReusedException e) {
+        return HttpResponse.status(HttpStatus.UNPROCESSABLE_ENTITY)
+            .body(Map.of(
+                "error", "Idempotency Key Reused",
+                "message", "The Idempotency-Key was already used with a different request."
+            ));
+    }
+
+    @Error(global = true)
+    public HttpResponse<?> handleWriteConflict(HttpRequest<?> request, WriteConflictException e) {
+        return HttpResponse.status(HttpStatus.CONFLICT)
+            .body(Map.of(
+                "error", "Write Conflict",
+                "message", "ID: " + e.getId() + " was changed concurrently, try again."
+            ));
+    }
+
+    @Error(global = true)
+    public HttpResponse<?> handleReservationNotHeld(HttpRequest<?> request, ReservationNotHeldException e) {
+        return HttpResponse.status(HttpStatus.CONFLICT)
+            .body(Map.of(
+                "error", "Reservation Not Held",
+                "message", "ID: " + e.getId() + " is " + e.getStatus() + "."
+            ));
+    }
+}
@@ -2,10 +2,14 @@ package com.dondondevops.inventory.exceptionHandler;
 
 import java.util.Map;
 
+import com.dondondevops.inventory.exception.IndexNotReadyException;
+import com.dondondevops.inventory.exception.ServiceOverloadedException;
 import com.dondondevops.inventory.exception.UUIDNotFoundException;
 
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Error;
 import io.micronaut.http.server.exceptions.NotFoundException;
@@ -22,6 +26,26 @@ public class CustomNotFoundHandler {
             ));
     }
     
+    @Error(global = true)
+    public HttpResponse<?> handleOverloaded(HttpRequest<?> request, ServiceOverloadedException e) {
+        return HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of(
+                "error", "Service Unavailable",
+                "message", e.getMessage()
+            ));
+    }
+
+    @Error(global = true)
+    public HttpResponse<?> handleIndexNotReady(HttpRequest<?> request, IndexNotReadyException e) {
+        return HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "30")
+            .body(Map.of(
+                "error", "Service Unavailable",
+                "message", e.getMessage()
+            ));
+    }
+
     @Error(global = true)
     public HttpResponse<?> handleNotFound(HttpRequest<?> request, UUIDNotFoundException e) {
         return HttpResponse.notFound()
@@ -0,0 +1,27 @@
+package com.dondondevops.inventory.model;
+
+import java.util.List;
+
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+@Valid
+@Serdeable
+public class BatchReduceStockRequest {
+
+    @NotEmpty
+    private List<@Valid ReduceStockItem> items;
+
+    public BatchReduceStockRequest(@NotEmpty List<@Valid ReduceStockItem> items) {
+        this.items = items;
+    }
+
+    public List<ReduceStockItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ReduceStockItem> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,26 @@
+package com.dondondevops.inventory.model;
+
+import java.util.List;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public class BatchReduceStockResponse {
+
+    private boolean committed;
+
+    private List<ReduceStockResult> items;
+
+    public BatchReduceStockResponse(boolean committed, List<ReduceStockResult> items) {
+        this.committed = committed;
+        this.items = items;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public List<ReduceStockResult> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,27 @@
+package com.dondondevops.inventory.model;
+
+import java.util.List;
+
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+@Valid
+@Serdeable
+public class BulkRestockRequest {
+
+    @NotEmpty
+    private List<@Valid RestockRequest> items;
+
+    public BulkRestockRequest(@NotEmpty List<@Valid RestockRequest> items) {
+        this.items = items;
+    }
+
+    public List<RestockRequest> getItems() {
+        return items;
+    }
+
+    public void setItems(List<RestockRequest> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,35 @@
+package com.dondondevops.inventory.model;
+
+import java.time.Instant;
+
+import software.amazon.awssdk.enhanced.dynamodb.AttributeConverter;
+import software.amazon.awssdk.enhanced.dynamodb.AttributeValueType;
+import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Stores an instant as a number of epoch seconds, a third of the size of the ISO-8601 string
+ * {@link InstantZConverter} writes. Only for attributes that no index sorts on.
+ */
+public class EpochSecondConverter implements AttributeConverter<Instant> {
+
+    @Override
+    public AttributeValue transformFrom(Instant input) {
+        return AttributeValue.fromN(Long.toString(input.getEpochSecond()));
+    }
+
+    @Override
+    public Instant transformTo(AttributeValue attributeValue) {
+        return Instant.ofEpochSecond(Long.parseLong(attributeValue.n()));
+    }
+
+    @Override
+    public AttributeValueType attributeValueType() {
+        return AttributeValueType.N;
+    }
+
+    @Override
+    public EnhancedType<Instant> type() {
+        return EnhancedType.of(Instant.class);
+    }
+}
@@ -0,0 +1,74 @@
+package com.dondondevops.inventory.model;
+
+import java.time.Instant;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbConvertedBy;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/**
+ * Response stored for an {@code Idempotency-Key}, written in the same transaction as the stock
+ * change it describes. {@code fingerprint} identifies the request the key was first used with.
+ */
+@DynamoDbBean
+public class IdempotencyRecord {
+
+    private String key;
+    private String fingerprint;
+    private String body;
+    private Instant createdAt;
+    private Long expiresAt;
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String key, String fingerprint, String body) {
+        this.key = key;
+        this.fingerprint = fingerprint;
+        this.body = body;
+        this.createdAt = Instant.now();
+    }
+
+    @DynamoDbPartitionKey
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /** JSON of the response returned when the request was applied. */
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    @DynamoDbConvertedBy(InstantZConverter.class)
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /** Epoch seconds after which DynamoDB's TTL deletes the record. */
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
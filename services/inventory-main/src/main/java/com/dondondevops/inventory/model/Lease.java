@@ -0,0 +1,56 @@
+package com.dondondevops.inventory.model;
+
+import java.util.Map;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/**
+ * Lease on a background job that one instance at a time may run, with the progress the job
+ * stored on it so that the next holder carries on from there.
+ */
+@DynamoDbBean
+public class Lease {
+
+    private String name;
+    private String owner;
+    private Long expiresAt;
+    private Map<String, String> progress;
+
+    public Lease() {}
+
+    @DynamoDbPartitionKey
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /** Id of the instance holding the lease. */
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    /** Epoch milliseconds after which another instance may take the lease. */
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Map<String, String> getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Map<String, String> progress) {
+        this.progress = progress;
+    }
+}
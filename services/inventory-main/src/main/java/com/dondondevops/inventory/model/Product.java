@@ -1,26 +1,64 @@
 package com.dondondevops.inventory.model;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.UUID;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.serde.annotation.Serdeable;
+import software.amazon.awssdk.enhanced.dynamodb.extensions.annotations.DynamoDbVersionAttribute;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbConvertedBy;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 
+/**
+ * A product and its stock. The repositories map it with {@code ProductTableSchema}, which must
+ * list every attribute annotated here.
+ */
 @Serdeable
 @DynamoDbBean
 public class Product {
+
+    /** Global secondary index listing the products of a category by name. */
+    public static final String CATEGORY_INDEX = "category-name-index";
+
+    /** Global secondary index listing the products of a brand by name. */
+    public static final String BRAND_INDEX = "brand-name-index";
+
+    /** Sparse global secondary index listing only the products below the low-stock threshold, by stock. */
+    public static final String LOW_STOCK_INDEX = "low-stock-index";
+
+    /** Value of the low-stock index key while a product is low. */
+    public static final String LOW_STOCK_MARKER = "LOW";
+
+    /** Threshold of products without a {@code lowStockThreshold} of their own. */
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 10;
+
+    /** Most shards a product's stock can be split over, within the items of one transaction. */
+    public static final int MAX_STOCK_SHARDS = 32;
+
+    /** Global secondary index bucketing products by UTC expiry day, sorted by expiry date. */
+    public static final String EXPIRY_INDEX = "expiry-day-index";
     
     private UUID productID;
     private String Name;
     private String Category;
     private String Brand;
     private int Stock;
+    private int held;
     private double PriceInSGD;
+    private Integer lowStockThreshold;
+    private Integer stockShards;
     private Instant expiryDate;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version;
 
 
     public Product() {}
@@ -48,6 +86,7 @@ public class Product {
         this.productID = productID;
     }
 
+    @DynamoDbSecondarySortKey(indexNames = { CATEGORY_INDEX, BRAND_INDEX })
     public String getName() {
         return Name;
     }
@@ -56,6 +95,7 @@ public class Product {
         Name = name;
     }
 
+    @DynamoDbSecondaryPartitionKey(indexNames = CATEGORY_INDEX)
     public String getCategory() {
         return Category;
     }
@@ -64,6 +104,7 @@ public class Product {
         Category = category;
     }
 
+    @DynamoDbSecondaryPartitionKey(indexNames = BRAND_INDEX)
     public String getBrand() {
         return Brand;
     }
@@ -72,6 +113,7 @@ public class Product {
         Brand = brand;
     }
 
+    @DynamoDbSecondarySortKey(indexNames = LOW_STOCK_INDEX)
     public int getStock() {
         return Stock;
     }
@@ -80,6 +122,78 @@ public class Product {
         Stock = stock;
     }
 
+    /**
+     * Units of the stock held by pending reservations. They stay in stock until the
+     * reservation is committed, but cannot be sold to anyone else.
+     */
+    public int getHeld() {
+        return held;
+    }
+
+    public void setHeld(int held) {
+        this.held = held;
+    }
+
+    /**
+     * Units that can still be sold or reserved: the stock less the units held.
+     */
+    @DynamoDbIgnore
+    public int getAvailable() {
+        return Stock - held;
+    }
+
+    /**
+     * Stock level below which this product is low, or null to use {@link #DEFAULT_LOW_STOCK_THRESHOLD}.
+     */
+    @Nullable
+    public Integer getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    public void setLowStockThreshold(@Nullable Integer lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    /**
+     * The threshold this product is held to, its own or the default.
+     */
+    public int lowStockThresholdOrDefault() {
+        return lowStockThresholdOrDefault(lowStockThreshold);
+    }
+
+    public static int lowStockThresholdOrDefault(@Nullable Integer lowStockThreshold) {
+        return lowStockThreshold == null ? DEFAULT_LOW_STOCK_THRESHOLD : lowStockThreshold;
+    }
+
+    /**
+     * Number of {@link StockShard} items the stock is split over, or null when it is held on the
+     * product itself. While sharded, {@link #getStock()} on the stored item is the sum of the
+     * shards and the held units as of their last fold, and the held units themselves are kept on
+     * a {@link StockShard} item of their own rather than on the product.
+     */
+    @Nullable
+    public Integer getStockShards() {
+        return stockShards;
+    }
+
+    public void setStockShards(@Nullable Integer stockShards) {
+        this.stockShards = stockShards;
+    }
+
+    /**
+     * Key of the low-stock index, present only while stock is below the product's threshold
+     * so that the index holds nothing else. It is derived from the stock and never set directly.
+     */
+    @JsonIgnore
+    @DynamoDbSecondaryPartitionKey(indexNames = LOW_STOCK_INDEX)
+    public String getLowStock() {
+        return Stock < lowStockThresholdOrDefault() ? LOW_STOCK_MARKER : null;
+    }
+
+    public void setLowStock(String lowStock) {
+        // derived from Stock and lowStockThreshold
+    }
+
     public double getPriceInSGD() {
         return PriceInSGD;
     }
@@ -89,6 +203,7 @@ public class Product {
     }
 
     @DynamoDbConvertedBy(InstantZConverter.class)
+    @DynamoDbSecondarySortKey(indexNames = EXPIRY_INDEX)
     public Instant getExpiryDate() {
         return expiryDate;
     }
@@ -97,6 +212,23 @@ public class Product {
         this.expiryDate = expiryDate;
     }
 
+    /**
+     * Key of the expiry index: the UTC day of the expiry date, derived from it and never set directly.
+     */
+    @JsonIgnore
+    @DynamoDbSecondaryPartitionKey(indexNames = EXPIRY_INDEX)
+    public String getExpiryDay() {
+        return expiryDate == null ? null : expiryDayOf(expiryDate);
+    }
+
+    public void setExpiryDay(String expiryDay) {
+        // derived from expiryDate
+    }
+
+    public static String expiryDayOf(Instant instant) {
+        return LocalDate.ofInstant(instant, ZoneOffset.UTC).toString();
+    }
+
     @DynamoDbConvertedBy(InstantZConverter.class)
     public Instant getCreatedAt() {
         return createdAt;
@@ -115,11 +247,44 @@ public class Product {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * Incremented by every write. Whole-item writes through the enhanced client are conditioned on
+     * it, and so are stock updates, so a writer holding a stale copy fails instead of overwriting
+     * a newer one. Null for items written before products were versioned.
+     */
+    @Nullable
+    @DynamoDbVersionAttribute
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(@Nullable Long version) {
+        this.version = version;
+    }
+
+    public Product copy() {
+        Product copy = new Product();
+        copy.productID = productID;
+        copy.Name = Name;
+        copy.Category = Category;
+        copy.Brand = Brand;
+        copy.Stock = Stock;
+        copy.held = held;
+        copy.PriceInSGD = PriceInSGD;
+        copy.lowStockThreshold = lowStockThreshold;
+        copy.stockShards = stockShards;
+        copy.expiryDate = expiryDate;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.version = version;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Product [productID=" + productID + ", Name=" + Name + ", Category=" + Category + ", Brand=" + Brand
-                + ", Stock=" + Stock + ", PriceInSGD=" + PriceInSGD + ", expiryDate=" + expiryDate + ", createdAt="
-                + createdAt + ", updatedAt=" + updatedAt + "]";
+                + ", Stock=" + Stock + ", held=" + held + ", PriceInSGD=" + PriceInSGD + ", lowStockThreshold=" + lowStockThreshold + ", stockShards=" + stockShards + ", expiryDate=" + expiryDate + ", createdAt="
+                + createdAt + ", updatedAt=" + updatedAt + ", version=" + version + "]";
     }
 
     public static ProductBuilder builder() {
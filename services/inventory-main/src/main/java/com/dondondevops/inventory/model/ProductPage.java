@@ -0,0 +1,27 @@
+package com.dondondevops.inventory.model;
+
+import java.util.List;
+
+/**
+ * One page of products and the cursor to request the next one,
+ * or a {@code null} cursor when there are no more pages.
+ */
+public class ProductPage {
+
+    private final List<Product> items;
+
+    private final String nextCursor;
+
+    public ProductPage(List<Product> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Product> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
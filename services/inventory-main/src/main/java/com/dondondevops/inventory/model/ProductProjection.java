@@ -0,0 +1,105 @@
+package com.dondondevops.inventory.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The fields of a product a read returns, by their JSON names. A read with a projection fetches
+ * only the stored attributes behind those fields and returns each product as a JSON object with
+ * just those fields. {@code productID} is always included.
+ */
+public class ProductProjection {
+
+    private static final Map<String, Field> FIELDS = new LinkedHashMap<>();
+
+    static {
+        field("productID", Product::getProductID, "productID");
+        field("name", Product::getName, "name");
+        field("category", Product::getCategory, "category");
+        field("brand", Product::getBrand, "brand");
+        field("stock", Product::getStock, "stock");
+        field("held", Product::getHeld, "held");
+        field("available", Product::getAvailable, "stock", "held");
+        field("priceInSGD", Product::getPriceInSGD, "priceInSGD");
+        field("lowStockThreshold", Product::getLowStockThreshold, "lowStockThreshold");
+        field("stockShards", Product::getStockShards, "stockShards");
+        field("expiryDate", Product::getExpiryDate, "expiryDate");
+        field("createdAt", Product::getCreatedAt, "createdAt");
+        field("updatedAt", Product::getUpdatedAt, "updatedAt");
+        field("version", Product::getVersion, "version");
+    }
+
+    private final Set<String> fields = new LinkedHashSet<>();
+
+    /**
+     * @throws IllegalArgumentException if a field is not a product field
+     */
+    public ProductProjection(Collection<String> fields) {
+        this.fields.add("productID");
+        for (String field : fields) {
+            if (!isField(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+            this.fields.add(field);
+        }
+    }
+
+    public static boolean isField(String name) {
+        return FIELDS.containsKey(name);
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Product attributes to read from DynamoDB, by the names the JSON API uses.
+     */
+    public List<String> attributes() {
+        Set<String> attributes = new LinkedHashSet<>();
+        for (String field : fields) {
+            attributes.addAll(FIELDS.get(field).attributes);
+        }
+        return new ArrayList<>(attributes);
+    }
+
+    /**
+     * The projected fields of {@code product}, leaving out those without a value.
+     */
+    public Map<String, Object> apply(Product product) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        for (String field : fields) {
+            Object value = FIELDS.get(field).getter.apply(product);
+            if (value != null) {
+                json.put(field, value);
+            }
+        }
+        return json;
+    }
+
+    public List<Map<String, Object>> apply(List<Product> products) {
+        return products.stream().map(this::apply).toList();
+    }
+
+    private static void field(String name, Function<Product, Object> getter, String... attributes) {
+        FIELDS.put(name, new Field(getter, List.of(attributes)));
+    }
+
+    private static class Field {
+
+        private final Function<Product, Object> getter;
+
+        private final List<String> attributes;
+
+        Field(Function<Product, Object> getter, List<String> attributes) {
+            this.getter = getter;
+            this.attributes = attributes;
+        }
+    }
+}
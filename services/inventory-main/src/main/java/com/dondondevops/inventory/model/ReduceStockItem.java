@@ -0,0 +1,40 @@
+package com.dondondevops.inventory.model;
+
+import java.util.UUID;
+
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+@Valid
+@Serdeable
+public class ReduceStockItem {
+
+    @NotNull
+    private UUID productId;
+
+    @Positive
+    private int quantity;
+
+    public ReduceStockItem(@NotNull UUID productId, @Positive int quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public UUID getProductId() {
+        return productId;
+    }
+
+    public void setProductId(UUID productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,64 @@
+package com.dondondevops.inventory.model;
+
+import java.util.UUID;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Outcome for one product of a batch stock reduction.
+ * {@code stock} is the level after the reduction when it was applied,
+ * or the level DynamoDB reported when the item blocked the transaction.
+ */
+@Serdeable
+public class ReduceStockResult {
+
+    public enum Status {
+        REDUCED,
+        NOT_FOUND,
+        INSUFFICIENT_STOCK,
+        ROLLED_BACK,
+        FAILED
+    }
+
+    private UUID productId;
+
+    private int quantity;
+
+    private Status status;
+
+    @Nullable
+    private Integer stock;
+
+    @Nullable
+    private String reason;
+
+    public ReduceStockResult(UUID productId, int quantity, Status status, @Nullable Integer stock,
+            @Nullable String reason) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.status = status;
+        this.stock = stock;
+        this.reason = reason;
+    }
+
+    public UUID getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,146 @@
+package com.dondondevops.inventory.model;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.micronaut.serde.annotation.Serdeable;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbConvertedBy;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+
+/**
+ * Units of one product held for a pending checkout. While {@link Status#HELD} they count in
+ * the product's {@code held} units; committing takes them off the stock, releasing or expiring
+ * gives them back. A hold is listed in the sparse held index, by deadline, until it is settled.
+ */
+@Serdeable
+@DynamoDbBean
+public class Reservation {
+
+    /** Sparse global secondary index listing the holds not yet settled, by deadline. */
+    public static final String HELD_INDEX = "held-index";
+
+    /** Value of the held index key until the reservation is settled. */
+    public static final String HELD_MARKER = "HELD";
+
+    public enum Status {
+        HELD,
+        COMMITTED,
+        RELEASED,
+        EXPIRED
+    }
+
+    private UUID reservationId;
+    private UUID productId;
+    private int quantity;
+    private Status status;
+    private String held;
+    private Instant createdAt;
+    private Instant holdUntil;
+    private Instant settledAt;
+    private Long expiresAt;
+
+    public Reservation() {}
+
+    public Reservation(UUID productId, int quantity, Duration hold) {
+        this.reservationId = UUID.randomUUID();
+        this.productId = productId;
+        this.quantity = quantity;
+        this.status = Status.HELD;
+        this.held = HELD_MARKER;
+        this.createdAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        this.holdUntil = createdAt.plus(hold);
+    }
+
+    @DynamoDbPartitionKey
+    public UUID getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(UUID reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    public UUID getProductId() {
+        return productId;
+    }
+
+    public void setProductId(UUID productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    @JsonIgnore
+    @DynamoDbSecondaryPartitionKey(indexNames = HELD_INDEX)
+    public String getHeld() {
+        return held;
+    }
+
+    public void setHeld(String held) {
+        this.held = held;
+    }
+
+    @DynamoDbConvertedBy(InstantZConverter.class)
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /** When the hold lapses and the sweeper gives the units back. */
+    @DynamoDbConvertedBy(InstantZConverter.class)
+    @DynamoDbSecondarySortKey(indexNames = HELD_INDEX)
+    public Instant getHoldUntil() {
+        return holdUntil;
+    }
+
+    public void setHoldUntil(Instant holdUntil) {
+        this.holdUntil = holdUntil;
+    }
+
+    @DynamoDbConvertedBy(InstantZConverter.class)
+    public Instant getSettledAt() {
+        return settledAt;
+    }
+
+    public void setSettledAt(Instant settledAt) {
+        this.settledAt = settledAt;
+    }
+
+    /** Epoch seconds after which DynamoDB deletes the settled record; unset while held. */
+    @JsonIgnore
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isLapsed(Instant now) {
+        return holdUntil.isBefore(now);
+    }
+}
@@ -0,0 +1,55 @@
+package com.dondondevops.inventory.model;
+
+import java.util.UUID;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+@Valid
+@Serdeable
+public class ReserveStockRequest {
+
+    @NotNull
+    private UUID productId;
+
+    @Positive
+    private int quantity;
+
+    /** How long to hold the units; {@code inventory.reservations.hold} when absent. */
+    @Nullable
+    @Positive
+    private Long holdSeconds;
+
+    public ReserveStockRequest(@NotNull UUID productId, @Positive int quantity, @Nullable @Positive Long holdSeconds) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.holdSeconds = holdSeconds;
+    }
+
+    public UUID getProductId() {
+        return productId;
+    }
+
+    public void setProductId(UUID productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Long getHoldSeconds() {
+        return holdSeconds;
+    }
+
+    public void setHoldSeconds(Long holdSeconds) {
+        this.holdSeconds = holdSeconds;
+    }
+}
@@ -0,0 +1,60 @@
+package com.dondondevops.inventory.model;
+
+import java.util.UUID;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Outcome for one line of a bulk restock.
+ */
+@Serdeable
+public class RestockResult {
+
+    public enum Status {
+        RESTOCKED,
+        NOT_FOUND,
+        FAILED
+    }
+
+    private UUID productId;
+
+    private int quantity;
+
+    private Status status;
+
+    @Nullable
+    private Integer stockAfter;
+
+    @Nullable
+    private String reason;
+
+    public RestockResult(UUID productId, int quantity, Status status, @Nullable Integer stockAfter,
+            @Nullable String reason) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.status = status;
+        this.stockAfter = stockAfter;
+        this.reason = reason;
+    }
+
+    public UUID getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Integer getStockAfter() {
+        return stockAfter;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,79 @@
+package com.dondondevops.inventory.model;
+
+import java.util.UUID;
+
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+
+/**
+ * One slice of the stock of a product with {@code stockShards} set. Each shard is its own item,
+ * keyed {@code productId#index}, so writes to a hot product spread over as many partitions.
+ * Shards only hold units that are free to sell; the units held by reservations are kept in one
+ * more item, keyed {@code productId#held}, so taking units off a shard needs no other item to
+ * tell whether they are held. The product's stock is the sum of its shards and held units.
+ */
+@DynamoDbBean
+public class StockShard {
+
+    private String shardId;
+    private UUID productId;
+    private int stock;
+
+    public StockShard() {}
+
+    public StockShard(UUID productId, int index, int stock) {
+        this.shardId = shardId(productId, index);
+        this.productId = productId;
+        this.stock = stock;
+    }
+
+    /** Key suffix of the item holding the units of a product held by reservations. */
+    public static final String HELD = "held";
+
+    public static String shardId(UUID productId, int index) {
+        return productId + "#" + index;
+    }
+
+    public static String heldId(UUID productId) {
+        return productId + "#" + HELD;
+    }
+
+    @DynamoDbPartitionKey
+    public String getShardId() {
+        return shardId;
+    }
+
+    public void setShardId(String shardId) {
+        this.shardId = shardId;
+    }
+
+    public UUID getProductId() {
+        return productId;
+    }
+
+    public void setProductId(UUID productId) {
+        this.productId = productId;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void setStock(int stock) {
+        this.stock = stock;
+    }
+
+    /**
+     * Whether this is the item of the held units rather than a shard.
+     */
+    @DynamoDbIgnore
+    public boolean isHeld() {
+        return shardId.endsWith("#" + HELD);
+    }
+
+    @DynamoDbIgnore
+    public int getIndex() {
+        return Integer.parseInt(shardId.substring(shardId.lastIndexOf('#') + 1));
+    }
+}
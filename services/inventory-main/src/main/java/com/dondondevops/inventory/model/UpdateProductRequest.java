@@ -3,6 +3,7 @@ package com.dondondevops.inventory.model;
 import io.micronaut.core.annotation.Nullable;
 import io.micronaut.serde.annotation.Serdeable;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.PositiveOrZero;
 
 @Valid
@@ -18,16 +19,29 @@ public class UpdateProductRequest {
     @Nullable
     private String brand;
 
+    @Nullable
     @PositiveOrZero
-    private double price;
+    private Double price;
 
+    @Nullable
+    @PositiveOrZero
+    private Integer lowStockThreshold;
+
+    /** Shards to split the stock over for hot products, or 0 to keep it on the product again. */
+    @Nullable
+    @PositiveOrZero
+    @Max(Product.MAX_STOCK_SHARDS)
+    private Integer stockShards;
 
     public UpdateProductRequest(@Nullable String name, @Nullable String category, @Nullable String brand,
-            @PositiveOrZero double price) {
+            @Nullable @PositiveOrZero Double price, @Nullable @PositiveOrZero Integer lowStockThreshold,
+            @Nullable @PositiveOrZero @Max(Product.MAX_STOCK_SHARDS) Integer stockShards) {
         this.name = name;
         this.category = category;
         this.brand = brand;
         this.price = price;
+        this.lowStockThreshold = lowStockThreshold;
+        this.stockShards = stockShards;
     }
 
     public String getName() {
@@ -54,11 +68,27 @@ public class UpdateProductRequest {
         this.brand = brand;
     }
 
-    public double getPrice() {
+    public Double getPrice() {
         return price;
     }
 
-    public void setPrice(double price) {
+    public void setPrice(Double price) {
         this.price = price;
     }
+
+    public Integer getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    public void setLowStockThreshold(Integer lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    public Integer getStockShards() {
+        return stockShards;
+    }
+
+    public void setStockShards(Integer stockShards) {
+        this.stockShards = stockShards;
+    }
 }
@@ -0,0 +1,278 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dondondevops.inventory.exception.RequestAlreadyAppliedException;
+import com.dondondevops.inventory.exception.StockTransactionCancelledException;
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.StockShard;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+/**
+ * Non-blocking variant of the hot paths of {@link ProductRepository}, on the async DynamoDB
+ * clients. Enabled with {@code inventory.dynamodb.async=true}; it shares the product cache, the
+ * stock transactions, the outbox and the idempotency table with the blocking repository, which still creates the table.
+ */
+@Requires(property = "inventory.dynamodb.async", value = "true")
+@Requires(beans = { DynamoDbAsyncClient.class, DynamoDbEnhancedAsyncClient.class })
+@Singleton
+public class AsyncProductRepository {
+
+    private DynamoDbAsyncClient client;
+
+    private DynamoDbAsyncTable<Product> table;
+
+    private DynamoDbEnhancedAsyncClient enhancedClient;
+
+    private DynamoDbAsyncTable<StockShard> shardTable;
+
+    private OutboxRepository outbox;
+
+    private IdempotencyRepository idempotency;
+
+    private ProductCache cache;
+
+    private WriteContention contention;
+
+    private ProductRepository repository;
+
+    private ProductFormat format;
+
+    @Inject
+    public AsyncProductRepository(@NonNull DynamoDbAsyncClient client,
+            @NonNull DynamoDbEnhancedAsyncClient enhancedClient, @NonNull ProductRepository repository,
+            @NonNull OutboxRepository outbox, @NonNull IdempotencyRepository idempotency,
+            @NonNull ProductCache cache, @NonNull WriteContention contention) {
+        this.client = client;
+        this.table = enhancedClient.table(ProductRepository.TABLE_NAME, repository.tableSchema());
+        this.format = repository.format();
+        this.enhancedClient = enhancedClient;
+        this.shardTable = enhancedClient.table(StockShardRepository.TABLE_NAME, StockShardRepository.TABLE_SCHEMA);
+        this.outbox = outbox;
+        this.idempotency = idempotency;
+        this.cache = cache;
+        this.contention = contention;
+        this.repository = repository;
+    }
+
+    /**
+     * Reads a product from the cache, or from DynamoDB on a miss, summing the stock of a
+     * sharded product from its shards.
+     *
+     * @see ProductRepository#getById(UUID)
+     */
+    public CompletableFuture<Optional<Product>> getById(UUID id) {
+        Optional<Product> cached = cache.peek(id);
+        CompletableFuture<Optional<Product>> product = cached.isPresent()
+            ? CompletableFuture.completedFuture(cached)
+            : table.getItem(ProductRepository.getRequest(id, false))
+                .thenApply(found -> {
+                    if (found != null) {
+                        cache.store(found);
+                    }
+                    return Optional.ofNullable(found);
+                });
+        return product.thenCompose(found -> readShards(found.orElse(null), false).thenApply(shards -> {
+            ShardedStock stock = shards.get(id);
+            if (stock != null) {
+                found.get().setStock(stock.total());
+                found.get().setHeld(stock.getHeld());
+            }
+            return found;
+        }));
+    }
+
+    /**
+     * @see ProductRepository#decrementStock(UUID, int, StockReceipt)
+     */
+    public CompletableFuture<StockChange> decrementStock(UUID id, int quantity, @Nullable StockReceipt receipt) {
+        if (receipt != null) {
+            return changeStock(id, new StockDelta(-quantity, null), StockEvents.NONE, receipt, 1);
+        }
+        Optional<Product> cached = cache.peek(id);
+        if (cached.isPresent() && cached.get().getStockShards() != null) {
+            return decrementShards(cached.get(), quantity);
+        }
+        StockDecrement.Expected expected = cached
+            .map(product -> StockDecrement.Expected.of(product, quantity))
+            .orElse(StockDecrement.Expected.UNKNOWN);
+        return decrement(id, quantity, expected, 1);
+    }
+
+    private CompletableFuture<StockChange> decrement(UUID id, int quantity, StockDecrement.Expected expected,
+            int attempt) {
+        return client.updateItem(StockDecrement.request(id, quantity, expected, Instant.now(), format))
+            .thenApply(response -> {
+                contention.attempts(WriteContention.STOCK, attempt);
+                StockChange change = StockDecrement.change(table.tableSchema(), response.attributes(), quantity);
+                cache.written(change.getProduct());
+                return change;
+            })
+            .exceptionallyCompose(error -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (!(cause instanceof ConditionalCheckFailedException failed)) {
+                    return CompletableFuture.failedFuture(cause);
+                }
+                Map<String, AttributeValue> item = failed.hasItem() ? failed.item() : Map.of();
+                Optional<RuntimeException> failure = StockDecrement.failure(id, quantity, item, format);
+                if (failure.isPresent()) {
+                    return CompletableFuture.failedFuture(failure.get());
+                }
+                Product current = table.tableSchema().mapToItem(item);
+                if (current.getStockShards() != null) {
+                    cache.store(current);
+                    return decrementShards(current, quantity);
+                }
+                if (StockDecrement.transactional(item, format) || attempt == ProductRepository.MAX_WRITE_ATTEMPTS) {
+                    return changeStock(id, new StockDelta(-quantity, null), StockEvents.NONE, null, 1);
+                }
+                // Expected the wrong threshold, or its side; the item tells which
+                return decrement(id, quantity, StockDecrement.Expected.of(current, quantity), attempt + 1);
+            });
+    }
+
+    private CompletableFuture<StockChange> decrementShards(Product product, int quantity) {
+        return decrementShards(product, quantity, ThreadLocalRandom.current().nextInt(product.getStockShards()), 0);
+    }
+
+    /**
+     * Tries the shards from {@code start} on, one conditional UpdateItem each, and falls back to
+     * a transaction once all of them held too little.
+     *
+     * @see ProductRepository#decrementStock(UUID, int, StockReceipt)
+     */
+    private CompletableFuture<StockChange> decrementShards(Product product, int quantity, int start, int tried) {
+        UUID id = product.getProductID();
+        int count = product.getStockShards();
+        if (tried == count) {
+            return changeStock(id, new StockDelta(-quantity, null), StockEvents.NONE, null, 1);
+        }
+        return client.updateItem(StockShardRepository.takeRequest(id, (start + tried) % count, quantity))
+            .thenApply(response -> true)
+            .exceptionallyCompose(error -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (!(cause instanceof ConditionalCheckFailedException)) {
+                    return CompletableFuture.failedFuture(cause);
+                }
+                return CompletableFuture.completedFuture(false);
+            })
+            .thenCompose(taken -> {
+                if (!taken) {
+                    return decrementShards(product, quantity, start, tried + 1);
+                }
+                contention.attempts(WriteContention.STOCK, tried + 1);
+                return readShards(product, true).thenApply(shards -> {
+                    ShardedStock stock = shards.get(id);
+                    Product updated = product.copy();
+                    updated.setStock(stock.total());
+                    updated.setHeld(stock.getHeld());
+                    updated.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+                    cache.written(updated);
+                    return new StockChange(updated, updated.getStock() + quantity);
+                }).thenCompose(this::foldCrossing);
+            });
+    }
+
+    /**
+     * @see ProductRepository#foldCrossing(StockChange)
+     */
+    private CompletableFuture<StockChange> foldCrossing(StockChange change) {
+        if (!ProductRepository.crossedShardThreshold(change)) {
+            return CompletableFuture.completedFuture(change);
+        }
+        // The fold reads and writes with the blocking client, so it runs off the async client's threads
+        return CompletableFuture.runAsync(() -> repository.foldCrossing(change)).handle((done, error) -> change);
+    }
+
+    /**
+     * @see ProductRepository#incrementStock(UUID, int, Instant, StockEvents, StockReceipt)
+     */
+    public CompletableFuture<StockChange> incrementStock(UUID id, int quantity, Instant expiryDate,
+            StockEvents events, StockReceipt receipt) {
+        return changeStock(id, new StockDelta(quantity, expiryDate), events, receipt, 1);
+    }
+
+    private CompletableFuture<Map<UUID, ShardedStock>> readShards(Product product, boolean consistentRead) {
+        if (product == null || product.getStockShards() == null) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        Map<UUID, Integer> counts = Map.of(product.getProductID(), product.getStockShards());
+        List<StockShard> shards = new CopyOnWriteArrayList<>();
+        // At most MAX_STOCK_SHARDS shards and the held units, so a single batch
+        return enhancedClient.batchGetItem(r -> r.readBatches(StockShardRepository.readBatches(shardTable, counts, consistentRead)))
+            .resultsForTable(shardTable)
+            .subscribe(shards::add)
+            .thenApply(done -> StockShardRepository.stocks(counts, shards));
+    }
+
+    private CompletableFuture<StockChange> changeStock(UUID id, StockDelta delta, StockEvents events,
+            StockReceipt receipt, int attempt) {
+        return table.getItem(ProductRepository.getRequest(id, true))
+            .thenCompose(product -> readShards(product, true).thenApply(shards -> Map.entry(Optional.ofNullable(product), shards)))
+            .thenCompose(read -> {
+                Optional<Product> product = read.getKey();
+                StockTransaction transaction;
+                try {
+                    transaction = new StockTransaction(Map.of(id, delta),
+                        product.map(found -> Map.of(id, found)).orElse(Map.of()), read.getValue(), Instant.now(), format);
+                } catch (StockTransactionCancelledException e) {
+                    return CompletableFuture.failedFuture(StockTransaction.singleProductFailure(id, e));
+                }
+                IdempotencyRecord record = receipt == null ? null : receipt.of(transaction.getChanges());
+                return client.transactWriteItems(transaction.toRequest(
+                        outbox.put(events.of(transaction.getChanges())),
+                        Optional.ofNullable(record).map(idempotency::put)))
+                    .thenApply(response -> {
+                        contention.attempts(WriteContention.STOCK, attempt);
+                        cache.written(transaction.getUpdatedProducts());
+                        return transaction.getChanges().get(0);
+                    })
+                    .thenCompose(this::foldCrossing)
+                    .exceptionallyCompose(error -> {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        if (!(cause instanceof TransactionCanceledException cancelled)) {
+                            return CompletableFuture.failedFuture(cause);
+                        }
+                        if (transaction.isDuplicate(cancelled)) {
+                            return CompletableFuture.failedFuture(new RequestAlreadyAppliedException(record.getKey()));
+                        }
+                        if (transaction.isConflict(cancelled) && attempt < ProductRepository.MAX_WRITE_ATTEMPTS) {
+                            Duration backoff = contention.conflicted(List.of(id), WriteContention.STOCK, attempt);
+                            // Waits on the delayed executor's timer rather than a thread
+                            return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(backoff.toNanos(), TimeUnit.NANOSECONDS))
+                                .thenCompose(ignored -> changeStock(id, delta, events, receipt, attempt + 1));
+                        }
+                        contention.attempts(WriteContention.STOCK, attempt);
+                        if (transaction.isConflict(cancelled)) {
+                            contention.exhausted(List.of(id), WriteContention.STOCK);
+                        }
+                        return CompletableFuture.failedFuture(StockTransaction.singleProductFailure(id,
+                            new StockTransactionCancelledException(transaction.cancellationResults(cancelled))));
+                    });
+            });
+    }
+}
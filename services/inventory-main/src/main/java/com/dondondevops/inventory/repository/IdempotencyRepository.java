@@ -0,0 +1,109 @@
+package com.dondondevops.inventory.repository;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.model.InstantZConverter;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.NonNull;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+
+/**
+ * Dedupe table of {@code Idempotency-Key}s and the responses they produced. Records are put in
+ * the transaction of the stock change, on the condition that the key is new, and expire after
+ * {@code inventory.idempotency.ttl}.
+ */
+@Requires(beans = { DynamoDbClient.class, DynamoDbEnhancedClient.class })
+@Singleton
+public class IdempotencyRepository {
+
+    static final String TABLE_NAME = "InventoryIdempotency";
+    private static final String KEY = "key";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    /** The mapping the annotations on {@link IdempotencyRecord} describe, without bean reflection. */
+    static final TableSchema<IdempotencyRecord> TABLE_SCHEMA = StaticTableSchema.builder(IdempotencyRecord.class)
+        .newItemSupplier(IdempotencyRecord::new)
+        .addAttribute(String.class, a -> a.name(KEY)
+            .getter(IdempotencyRecord::getKey)
+            .setter(IdempotencyRecord::setKey)
+            .tags(primaryPartitionKey()))
+        .addAttribute(String.class, a -> a.name("fingerprint")
+            .getter(IdempotencyRecord::getFingerprint)
+            .setter(IdempotencyRecord::setFingerprint))
+        .addAttribute(String.class, a -> a.name("body")
+            .getter(IdempotencyRecord::getBody)
+            .setter(IdempotencyRecord::setBody))
+        .addAttribute(Instant.class, a -> a.name("createdAt")
+            .getter(IdempotencyRecord::getCreatedAt)
+            .setter(IdempotencyRecord::setCreatedAt)
+            .attributeConverter(new InstantZConverter()))
+        .addAttribute(Long.class, a -> a.name(EXPIRES_AT)
+            .getter(IdempotencyRecord::getExpiresAt)
+            .setter(IdempotencyRecord::setExpiresAt))
+        .build();
+
+    private DynamoDbClient client;
+
+    private DynamoDbTable<IdempotencyRecord> table;
+
+    private Duration ttl;
+
+    @Inject
+    public IdempotencyRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient,
+            @Value("${inventory.idempotency.ttl:24h}") Duration ttl) {
+        this.client = client;
+        this.table = enhancedClient.table(TABLE_NAME, TABLE_SCHEMA);
+        this.ttl = ttl;
+        initTable();
+    }
+
+    private void initTable() {
+        if (TableBootstrap.createIfMissing(client, table)) {
+            TableBootstrap.enableTimeToLive(client, TABLE_NAME, EXPIRES_AT);
+        }
+    }
+
+    /**
+     * Reads the record of a key. Expired records are ignored, since TTL deletion can lag by days.
+     */
+    public Optional<IdempotencyRecord> find(String key) {
+        IdempotencyRecord record = table.getItem(r -> r.key(Key.builder().partitionValue(key).build()).consistentRead(true));
+        if (record == null || (record.getExpiresAt() != null && record.getExpiresAt() < Instant.now().getEpochSecond())) {
+            return Optional.empty();
+        }
+        return Optional.of(record);
+    }
+
+    /**
+     * Returns the write that stores {@code record}, failing the transaction if its key is
+     * already stored.
+     */
+    public TransactWriteItem put(IdempotencyRecord record) {
+        record.setExpiresAt(Instant.now().plus(ttl).getEpochSecond());
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(TABLE_NAME)
+                .item(table.tableSchema().itemToMap(record, true))
+                .conditionExpression("attribute_not_exists(#key)")
+                .expressionAttributeNames(Map.of("#key", KEY))
+                .build())
+            .build();
+    }
+}
@@ -0,0 +1,199 @@
+package com.dondondevops.inventory.repository;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dondondevops.inventory.model.Lease;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.NonNull;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+/**
+ * Leases that let one instance at a time run a background job. The holder renews its lease on
+ * every run; once it stops, another instance takes the lease over when it runs out. Progress is
+ * only stored while the lease is still held, so a holder that lost it cannot overwrite what
+ * the next one has done.
+ */
+@Requires(beans = { DynamoDbClient.class, DynamoDbEnhancedClient.class })
+@Singleton
+public class LeaseRepository {
+
+    static final String TABLE_NAME = "InventoryLease";
+    private static final String NAME = "name";
+    private static final String OWNER = "owner";
+    private static final String EXPIRES_AT = "expiresAt";
+    private static final String PROGRESS = "progress";
+
+    /** The mapping the annotations on {@link Lease} describe, without bean reflection. */
+    static final TableSchema<Lease> TABLE_SCHEMA = StaticTableSchema.builder(Lease.class)
+        .newItemSupplier(Lease::new)
+        .addAttribute(String.class, a -> a.name(NAME)
+            .getter(Lease::getName)
+            .setter(Lease::setName)
+            .tags(primaryPartitionKey()))
+        .addAttribute(String.class, a -> a.name(OWNER)
+            .getter(Lease::getOwner)
+            .setter(Lease::setOwner))
+        .addAttribute(Long.class, a -> a.name(EXPIRES_AT)
+            .getter(Lease::getExpiresAt)
+            .setter(Lease::setExpiresAt))
+        .addAttribute(EnhancedType.mapOf(String.class, String.class), a -> a.name(PROGRESS)
+            .getter(Lease::getProgress)
+            .setter(Lease::setProgress))
+        .build();
+
+    private DynamoDbClient client;
+
+    private DynamoDbTable<Lease> table;
+
+    @Inject
+    public LeaseRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient) {
+        this.client = client;
+        this.table = enhancedClient.table(TABLE_NAME, TABLE_SCHEMA);
+        TableBootstrap.createIfMissing(client, table);
+    }
+
+    /**
+     * Takes or renews the lease {@code name} for {@code duration}, unless another owner holds it
+     * and it has not run out yet.
+     *
+     * @return true if {@code owner} holds the lease
+     */
+    public boolean acquire(String name, String owner, Duration duration) {
+        long now = System.currentTimeMillis();
+        try {
+            client.updateItem(b -> b.tableName(TABLE_NAME)
+                .key(keyOf(name))
+                .updateExpression("SET #owner = :owner, #expiresAt = :until, #progress = if_not_exists(#progress, :none)")
+                .conditionExpression("attribute_not_exists(#name) OR #owner = :owner OR #expiresAt < :now")
+                .expressionAttributeNames(Map.of(
+                    "#name", NAME, "#owner", OWNER, "#expiresAt", EXPIRES_AT, "#progress", PROGRESS))
+                .expressionAttributeValues(Map.of(
+                    ":owner", AttributeValue.fromS(owner),
+                    ":until", AttributeValue.fromN(Long.toString(now + duration.toMillis())),
+                    ":now", AttributeValue.fromN(Long.toString(now)),
+                    ":none", AttributeValue.fromM(Map.of()))));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lets another instance take the lease right away, if {@code owner} still holds it.
+     */
+    public void release(String name, String owner) {
+        try {
+            client.updateItem(b -> b.tableName(TABLE_NAME)
+                .key(keyOf(name))
+                .updateExpression("SET #expiresAt = :expired")
+                .conditionExpression("#owner = :owner")
+                .expressionAttributeNames(Map.of("#owner", OWNER, "#expiresAt", EXPIRES_AT))
+                .expressionAttributeValues(Map.of(
+                    ":owner", AttributeValue.fromS(owner),
+                    ":expired", AttributeValue.fromN("0"))));
+        } catch (ConditionalCheckFailedException e) {
+            // Already taken over
+        }
+    }
+
+    /**
+     * The progress stored on the lease, read consistently.
+     */
+    public Map<String, String> progress(String name) {
+        Lease lease = table.getItem(r -> r.key(Key.builder().partitionValue(name).build()).consistentRead(true));
+        return lease == null || lease.getProgress() == null ? Map.of() : lease.getProgress();
+    }
+
+    /**
+     * Stores {@code value} under {@code key} in the progress of the lease, if {@code owner}
+     * still holds it.
+     *
+     * @return false if the lease was lost
+     */
+    public boolean saveProgress(String name, String owner, String key, String value) {
+        return saveProgress(name, owner, Map.of(key, value));
+    }
+
+    /**
+     * Stores all of {@code entries} in the progress of the lease at once, if {@code owner} still
+     * holds it.
+     *
+     * @return false if the lease was lost
+     */
+    public boolean saveProgress(String name, String owner, Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        List<String> sets = new ArrayList<>();
+        int i = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            names.put("#k" + i, entry.getKey());
+            values.put(":v" + i, AttributeValue.fromS(entry.getValue()));
+            sets.add("#progress.#k" + i + " = :v" + i++);
+        }
+        return updateProgress(name, owner, "SET " + String.join(", ", sets), names, values);
+    }
+
+    /**
+     * Drops {@code keys} from the progress of the lease, if {@code owner} still holds it.
+     *
+     * @return false if the lease was lost
+     */
+    public boolean removeProgress(String name, String owner, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return true;
+        }
+        Map<String, String> names = new HashMap<>();
+        List<String> removes = new ArrayList<>();
+        int i = 0;
+        for (String key : keys) {
+            names.put("#k" + i, key);
+            removes.add("#progress.#k" + i++);
+        }
+        return updateProgress(name, owner, "REMOVE " + String.join(", ", removes), names, Map.of());
+    }
+
+    private boolean updateProgress(String name, String owner, String expression, Map<String, String> keyNames,
+            Map<String, AttributeValue> keyValues) {
+        Map<String, String> names = new HashMap<>(keyNames);
+        names.put("#owner", OWNER);
+        names.put("#progress", PROGRESS);
+        Map<String, AttributeValue> values = new HashMap<>(keyValues);
+        values.put(":owner", AttributeValue.fromS(owner));
+        try {
+            client.updateItem(b -> b.tableName(TABLE_NAME)
+                .key(keyOf(name))
+                .updateExpression(expression)
+                .conditionExpression("#owner = :owner")
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    private static Map<String, AttributeValue> keyOf(String name) {
+        return Map.of(NAME, AttributeValue.fromS(name));
+    }
+}
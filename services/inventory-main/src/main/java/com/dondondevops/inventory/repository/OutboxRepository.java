@@ -0,0 +1,218 @@
+package com.dondondevops.inventory.repository;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondarySortKey;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.outbox.OutboxRecord;
+import com.dondondevops.inventory.model.InstantZConverter;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.NonNull;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.EnhancedGlobalSecondaryIndex;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+
+/**
+ * Outbox of inventory events. Records are put in the same TransactWriteItems as the stock
+ * change they describe, so an event exists exactly when its change committed, and the
+ * {@link com.dondondevops.inventory.event.outbox.OutboxRelay} publishes them afterwards.
+ */
+@Requires(beans = { DynamoDbClient.class, DynamoDbEnhancedClient.class })
+@Singleton
+public class OutboxRepository {
+
+    static final String TABLE_NAME = "InventoryOutbox";
+    private static final String ID = "id";
+    private static final String PENDING = "pending";
+    private static final String CLAIMED_UNTIL = "claimedUntil";
+    private static final String SENT_AT = "sentAt";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    private static final InstantZConverter INSTANT_CONVERTER = new InstantZConverter();
+
+    private static final TableSchema<OutboxMessage> MESSAGE_SCHEMA = StaticTableSchema.builder(OutboxMessage.class)
+        .newItemSupplier(OutboxMessage::new)
+        .addAttribute(String.class, a -> a.name("routingKey")
+            .getter(OutboxMessage::getRoutingKey)
+            .setter(OutboxMessage::setRoutingKey))
+        .addAttribute(String.class, a -> a.name("payload")
+            .getter(OutboxMessage::getPayload)
+            .setter(OutboxMessage::setPayload))
+        .build();
+
+    /** The mapping the annotations on {@link OutboxRecord} describe, without bean reflection. */
+    static final TableSchema<OutboxRecord> TABLE_SCHEMA = StaticTableSchema.builder(OutboxRecord.class)
+        .newItemSupplier(OutboxRecord::new)
+        .addAttribute(String.class, a -> a.name(ID)
+            .getter(OutboxRecord::getId)
+            .setter(OutboxRecord::setId)
+            .tags(primaryPartitionKey(), secondarySortKey(OutboxRecord.PENDING_INDEX)))
+        .addAttribute(String.class, a -> a.name(PENDING)
+            .getter(OutboxRecord::getPending)
+            .setter(OutboxRecord::setPending)
+            .tags(secondaryPartitionKey(OutboxRecord.PENDING_INDEX)))
+        .addAttribute(EnhancedType.listOf(EnhancedType.documentOf(OutboxMessage.class, MESSAGE_SCHEMA)),
+            a -> a.name("messages")
+                .getter(OutboxRecord::getMessages)
+                .setter(OutboxRecord::setMessages))
+        .addAttribute(Instant.class, a -> a.name("createdAt")
+            .getter(OutboxRecord::getCreatedAt)
+            .setter(OutboxRecord::setCreatedAt)
+            .attributeConverter(INSTANT_CONVERTER))
+        .addAttribute(Instant.class, a -> a.name(SENT_AT)
+            .getter(OutboxRecord::getSentAt)
+            .setter(OutboxRecord::setSentAt)
+            .attributeConverter(INSTANT_CONVERTER))
+        .addAttribute(Long.class, a -> a.name(CLAIMED_UNTIL)
+            .getter(OutboxRecord::getClaimedUntil)
+            .setter(OutboxRecord::setClaimedUntil))
+        .addAttribute(Long.class, a -> a.name(EXPIRES_AT)
+            .getter(OutboxRecord::getExpiresAt)
+            .setter(OutboxRecord::setExpiresAt))
+        .build();
+
+    private DynamoDbClient client;
+
+    private DynamoDbTable<OutboxRecord> table;
+
+    private Duration retention;
+
+    @Inject
+    public OutboxRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient,
+            @Value("${inventory.outbox.retention:7d}") Duration retention) {
+        this.client = client;
+        this.table = enhancedClient.table(TABLE_NAME, TABLE_SCHEMA);
+        this.retention = retention;
+        initTable();
+    }
+
+    private void initTable() {
+        boolean created = TableBootstrap.createIfMissing(client, table, CreateTableEnhancedRequest.builder()
+            .globalSecondaryIndices(EnhancedGlobalSecondaryIndex.builder()
+                .indexName(OutboxRecord.PENDING_INDEX)
+                .projection(p -> p.projectionType(ProjectionType.ALL))
+                .build())
+            .build());
+        if (created) {
+            // Sent records then stay until removed by hand if this fails; publishing is unaffected
+            TableBootstrap.enableTimeToLive(client, TABLE_NAME, EXPIRES_AT);
+        }
+    }
+
+    /**
+     * Returns the write that adds a record holding {@code messages}, to be included in the
+     * transaction of the change they describe, or nothing when there is no message to send.
+     */
+    public Optional<TransactWriteItem> put(List<OutboxMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return Optional.empty();
+        }
+        OutboxRecord record = new OutboxRecord(messages);
+        return Optional.of(TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(TABLE_NAME)
+                .item(table.tableSchema().itemToMap(record, true))
+                .conditionExpression("attribute_not_exists(#id)")
+                .expressionAttributeNames(Map.of("#id", ID))
+                .build())
+            .build());
+    }
+
+    /**
+     * Adds a record holding {@code messages} on its own, for events derived from changes that
+     * have already committed, such as those read from the product stream.
+     */
+    public void add(List<OutboxMessage> messages) {
+        if (messages != null && !messages.isEmpty()) {
+            table.putItem(new OutboxRecord(messages));
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} records not yet published, oldest first, skipping those another
+     * relay holds an unexpired claim on. The filter applies after each page is read, so pages
+     * are read until {@code limit} unclaimed records are found or the index ends.
+     */
+    public List<OutboxRecord> pending(int limit) {
+        Expression unclaimed = Expression.builder()
+            .expression("attribute_not_exists(#claimedUntil) OR #claimedUntil < :now")
+            .expressionNames(Map.of("#claimedUntil", CLAIMED_UNTIL))
+            .expressionValues(Map.of(":now", AttributeValue.fromN(Long.toString(System.currentTimeMillis()))))
+            .build();
+        return table.index(OutboxRecord.PENDING_INDEX)
+            .query(r -> r.queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(OutboxRecord.PENDING_MARKER)))
+                .filterExpression(unclaimed)
+                .limit(limit))
+            .stream()
+            .flatMap(page -> page.items().stream())
+            .limit(limit)
+            .toList();
+    }
+
+    /**
+     * Takes a pending record for {@code lease}, unless another relay holds an unexpired claim
+     * on it. A relay that dies mid-publish loses its claim when the lease runs out.
+     *
+     * @return false if the record was already sent or is claimed elsewhere
+     */
+    public boolean claim(OutboxRecord record, Duration lease) {
+        long now = System.currentTimeMillis();
+        try {
+            client.updateItem(b -> b.tableName(TABLE_NAME)
+                .key(keyOf(record))
+                .updateExpression("SET #claimedUntil = :until")
+                .conditionExpression("attribute_exists(#pending) AND "
+                    + "(attribute_not_exists(#claimedUntil) OR #claimedUntil < :now)")
+                .expressionAttributeNames(Map.of("#pending", PENDING, "#claimedUntil", CLAIMED_UNTIL))
+                .expressionAttributeValues(Map.of(
+                    ":until", AttributeValue.fromN(Long.toString(now + lease.toMillis())),
+                    ":now", AttributeValue.fromN(Long.toString(now)))));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes a published record out of the pending index and lets it expire after
+     * {@code inventory.outbox.retention}.
+     */
+    public void markSent(OutboxRecord record) {
+        Instant now = Instant.now();
+        client.updateItem(b -> b.tableName(TABLE_NAME)
+            .key(keyOf(record))
+            .updateExpression("SET #sentAt = :now, #expiresAt = :expiresAt REMOVE #pending, #claimedUntil")
+            .expressionAttributeNames(Map.of(
+                "#sentAt", SENT_AT, "#expiresAt", EXPIRES_AT, "#pending", PENDING, "#claimedUntil", CLAIMED_UNTIL))
+            .expressionAttributeValues(Map.of(
+                ":now", INSTANT_CONVERTER.transformFrom(now),
+                ":expiresAt", AttributeValue.fromN(Long.toString(now.plus(retention).getEpochSecond())))));
+    }
+
+    private static Map<String, AttributeValue> keyOf(OutboxRecord record) {
+        return Map.of(ID, AttributeValue.fromS(record.getId()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.dondondevops.inventory.repository;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.dondondevops.inventory.exception.InvalidRequestException;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Encodes a DynamoDB {@code LastEvaluatedKey} as an opaque, URL-safe cursor and back.
+ * Key attributes are always scalars, so only S, N and B values are supported.
+ */
+public final class PageCursor {
+
+    private PageCursor() {}
+
+    public static String encode(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, AttributeValue> entry : new TreeMap<>(lastEvaluatedKey).entrySet()) {
+            AttributeValue value = entry.getValue();
+            String encoded;
+            if (value.s() != null) {
+                encoded = "S:" + value.s();
+            } else if (value.n() != null) {
+                encoded = "N:" + value.n();
+            } else if (value.b() != null) {
+                encoded = "B:" + Base64.getEncoder().encodeToString(value.b().asByteArray());
+            } else {
+                throw new IllegalArgumentException("Unsupported key attribute type for " + entry.getKey());
+            }
+
+            if (builder.length() > 0) {
+                builder.append('&');
+            }
+            builder.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
+                .append('=')
+                .append(URLEncoder.encode(encoded, StandardCharsets.UTF_8));
+        }
+
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Map<String, AttributeValue> decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            Map<String, AttributeValue> key = new HashMap<>();
+
+            for (String pair : decoded.split("&")) {
+                int separator = pair.indexOf('=');
+                String name = URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8);
+                String encoded = URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+                String value = encoded.substring(2);
+
+                switch (encoded.substring(0, 2)) {
+                    case "S:" -> key.put(name, AttributeValue.fromS(value));
+                    case "N:" -> key.put(name, AttributeValue.fromN(value));
+                    case "B:" -> key.put(name, AttributeValue.fromB(SdkBytes.fromByteArray(Base64.getDecoder().decode(value))));
+                    default -> throw new IllegalArgumentException("Unknown attribute type");
+                }
+            }
+            return key;
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Invalid cursor.");
+        }
+    }
+}
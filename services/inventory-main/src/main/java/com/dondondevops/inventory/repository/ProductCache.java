@@ -0,0 +1,156 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.dondondevops.inventory.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+/**
+ * Bounded, time-limited cache of products in front of DynamoDB. Local writes replace the
+ * cached product. Writes by any instance reach the others through the product stream, whose
+ * consumer announces them on {@code inventory.product_changed} through the outbox, off the
+ * write path; every instance then evicts its copy. Hit, miss and eviction counts are exported
+ * as {@code cache.*} metrics tagged {@code cache=product}.
+ *
+ * Products are mutable, so the cache only ever hands out and stores copies.
+ *
+ * Every product change the cache hears of, local or announced, also drops the product's
+ * encoded JSON from the {@link ProductJsonCache}, and moves the
+ * {@linkplain #catalogVersion() catalog version} on: announced changes to the shared version
+ * they carry, local ones by a count of their own until the next announcement.
+ */
+@Singleton
+public class ProductCache {
+
+    private final Cache<UUID, Product> cache;
+
+    private final ProductJsonCache jsonCache;
+
+    /** Highest shared catalog version heard of, or -1 before the first. */
+    private final AtomicLong catalogVersion = new AtomicLong(-1);
+
+    /** Local writes since the shared catalog version last moved. */
+    private final AtomicLong localWrites = new AtomicLong();
+
+    public ProductCache(MeterRegistry meterRegistry, ProductJsonCache jsonCache,
+            @Value("${inventory.cache.maximum-size:10000}") long maximumSize,
+            @Value("${inventory.cache.expire-after-write:30s}") Duration expireAfterWrite) {
+        this.jsonCache = jsonCache;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "product");
+    }
+
+    /**
+     * Token that changes whenever a product may have changed, for clients to tell whether a
+     * catalog read may have changed. It is a counter shared by all instances, moved on by the
+     * product stream consumer once per batch of changes, so every instance hands out the same
+     * token for the same catalog. A change made elsewhere reaches the token a moment after it
+     * reaches the table, and only after its products were evicted here. A change made by this
+     * instance moves the token at once, as {@code version.writes}, so a client reading after
+     * its own write never gets its old catalog confirmed; two instances with as many unannounced
+     * writes can then hand out the same token for different catalogs until the stream announces
+     * them.
+     *
+     * @return the version, or null until this instance has heard of one
+     */
+    public String catalogVersion() {
+        long version = catalogVersion.get();
+        long writes = localWrites.get();
+        if (version < 0) {
+            return null;
+        }
+        return writes == 0 ? Long.toString(version) : version + "." + writes;
+    }
+
+    /**
+     * Moves the catalog version on to {@code version}, unless a later one was heard of already.
+     */
+    public void advanceCatalogVersion(long version) {
+        if (catalogVersion.getAndAccumulate(version, Math::max) < version) {
+            localWrites.set(0);
+        }
+    }
+
+    /**
+     * Returns the cached product, calling {@code loader} on a miss. Products that do not exist
+     * are not cached.
+     */
+    public Optional<Product> get(UUID id, Function<UUID, Optional<Product>> loader) {
+        Product product = cache.get(id, key -> loader.apply(key).map(Product::copy).orElse(null));
+        return Optional.ofNullable(product).map(Product::copy);
+    }
+
+    /**
+     * Returns the cached product without loading it on a miss.
+     */
+    public Optional<Product> peek(UUID id) {
+        return Optional.ofNullable(cache.getIfPresent(id)).map(Product::copy);
+    }
+
+    /**
+     * Caches a product read from DynamoDB without announcing it. A product older than the cached
+     * one, such as a read that finished after a concurrent write, is ignored.
+     */
+    public void store(Product product) {
+        cache.asMap().merge(product.getProductID(), product.copy(), ProductCache::newer);
+    }
+
+    /**
+     * Caches a product this instance has just written. Nothing is sent from here, so callers on
+     * an event loop or SDK completion thread never wait on the broker.
+     */
+    public void written(Product product) {
+        written(List.of(product));
+    }
+
+    public void written(Collection<Product> products) {
+        for (Product product : products) {
+            store(product);
+            jsonCache.invalidate(product.getProductID());
+        }
+        localWrites.incrementAndGet();
+    }
+
+    /**
+     * Drops a product this instance has just deleted.
+     */
+    public void removed(UUID id) {
+        cache.invalidate(id);
+        jsonCache.invalidate(id);
+        localWrites.incrementAndGet();
+    }
+
+    /**
+     * Drops products changed in the table, as announced from its stream.
+     */
+    public void evict(Collection<UUID> ids) {
+        cache.invalidateAll(ids);
+        jsonCache.invalidateAll(ids);
+    }
+
+    private static Product newer(Product cached, Product incoming) {
+        Long cachedVersion = cached.getVersion();
+        Long incomingVersion = incoming.getVersion();
+        if (cachedVersion != null && incomingVersion != null && incomingVersion < cachedVersion) {
+            return cached;
+        }
+        // Shard writes leave the version alone, so an equal version may still carry newer stock
+        return incoming;
+    }
+}
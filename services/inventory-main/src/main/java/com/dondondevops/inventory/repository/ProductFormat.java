@@ -0,0 +1,62 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Instant;
+
+import com.dondondevops.inventory.model.EpochSecondConverter;
+import com.dondondevops.inventory.model.InstantZConverter;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * How the attributes of a Product item that no key or index depends on are named and encoded.
+ * Both formats are always read; {@code inventory.products.compact-writes} picks the one written.
+ * Every write of such an attribute removes it under the other format's name, so an item never
+ * holds both and instances writing either format can run side by side.
+ *
+ * The table and index keys, and {@code version}, which every conditional write checks, keep
+ * their names in both formats.
+ */
+enum ProductFormat {
+
+    /** Full attribute names and ISO-8601 timestamps, as items were first written. */
+    LEGACY("held", "priceInSGD", "lowStockThreshold", "stockShards", "createdAt", "updatedAt"),
+
+    /** One- and two-letter attribute names and epoch-second timestamps. */
+    COMPACT("h", "p", "lt", "sh", "c", "u");
+
+    private static final InstantZConverter INSTANT_CONVERTER = new InstantZConverter();
+
+    private static final EpochSecondConverter EPOCH_SECOND_CONVERTER = new EpochSecondConverter();
+
+    final String held;
+    final String price;
+    final String lowStockThreshold;
+    final String stockShards;
+    final String createdAt;
+    final String updatedAt;
+
+    ProductFormat(String held, String price, String lowStockThreshold, String stockShards, String createdAt,
+            String updatedAt) {
+        this.held = held;
+        this.price = price;
+        this.lowStockThreshold = lowStockThreshold;
+        this.stockShards = stockShards;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    static ProductFormat of(boolean compact) {
+        return compact ? COMPACT : LEGACY;
+    }
+
+    ProductFormat other() {
+        return this == COMPACT ? LEGACY : COMPACT;
+    }
+
+    /**
+     * A timestamp as this format stores it.
+     */
+    AttributeValue timestamp(Instant instant) {
+        return this == COMPACT ? EPOCH_SECOND_CONVERTER.transformFrom(instant) : INSTANT_CONVERTER.transformFrom(instant);
+    }
+}
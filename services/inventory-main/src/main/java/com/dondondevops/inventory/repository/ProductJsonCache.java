@@ -0,0 +1,98 @@
+package com.dondondevops.inventory.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.UUID;
+
+import com.dondondevops.inventory.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.convert.format.ReadableBytes;
+import io.micronaut.serde.ObjectMapper;
+import jakarta.inject.Singleton;
+
+/**
+ * Products already encoded as JSON, so that repeated reads of a hot product skip serialization.
+ * An entry is only served for the entity tag it was encoded under, and {@link ProductCache}
+ * drops it whenever it hears the product changed. Bounded by the bytes held,
+ * {@code inventory.cache.json-maximum-size}, rather than by the number of products.
+ *
+ * The encoded bytes are shared between responses and must not be modified.
+ */
+@Singleton
+public class ProductJsonCache {
+
+    /** Approximate heap taken by an entry besides its bytes. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final Cache<UUID, Encoded> cache;
+
+    private final ObjectMapper objectMapper;
+
+    public ProductJsonCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${inventory.cache.json-maximum-size:16MB}") @ReadableBytes long maximumSize) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maximumSize)
+            .weigher((UUID id, Encoded encoded) -> ENTRY_OVERHEAD + encoded.tag.length() + encoded.bytes.length)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "product-json");
+        Gauge.builder("inventory.cache.json.bytes", cache,
+                c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns {@code product} encoded as JSON, from the cache when it was encoded under the same
+     * {@code tag}.
+     */
+    public byte[] encoded(Product product, String tag) {
+        UUID id = product.getProductID();
+        Encoded cached = cache.getIfPresent(id);
+        if (cached != null && cached.tag.equals(tag)) {
+            return cached.bytes;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(product);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cache.put(id, new Encoded(tag, bytes));
+        return bytes;
+    }
+
+    public void invalidate(UUID id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll(Collection<UUID> ids) {
+        cache.invalidateAll(ids);
+    }
+
+    long weightedSize() {
+        cache.cleanUp();
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private static class Encoded {
+
+        private final String tag;
+
+        private final byte[] bytes;
+
+        Encoded(String tag, byte[] bytes) {
+            this.tag = tag;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -1,93 +1,1249 @@
 package com.dondondevops.inventory.repository;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.exception.IndexNotReadyException;
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.InvalidRequestException;
+import com.dondondevops.inventory.exception.RequestAlreadyAppliedException;
+import com.dondondevops.inventory.exception.ReservationNotHeldException;
+import com.dondondevops.inventory.exception.StockTransactionCancelledException;
+import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.exception.WriteConflictException;
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.model.InstantZConverter;
 import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.model.Reservation;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micronaut.context.annotation.Bean;
 import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
 import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Inject;
-import software.amazon.awssdk.core.internal.waiters.ResponseOrException;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.EnhancedGlobalSecondaryIndex;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.Page;
-import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.CreateGlobalSecondaryIndexAction;
 import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
-import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexUpdate;
+import software.amazon.awssdk.services.dynamodb.model.IndexStatus;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputDescription;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+import software.amazon.awssdk.services.dynamodb.model.StreamSpecification;
+import software.amazon.awssdk.services.dynamodb.model.StreamViewType;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+import software.amazon.awssdk.services.dynamodb.model.TableStatus;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
 @Requires(beans = { DynamoDbClient.class, DynamoDbEnhancedClient.class })
 @Bean
 public class ProductRepository {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ProductRepository.class);
+
+    static final String TABLE_NAME = "Product";
+    static final String PRODUCT_ID = "productID";
+    static final String STOCK = "stock";
+    static final String EXPIRY_DATE = "expiryDate";
+    static final String LOW_STOCK = "lowStock";
+    static final String EXPIRY_DAY = "expiryDay";
+    static final String VERSION = "version";
+
+    private static final List<String> SECONDARY_INDEXES = List.of(
+        Product.CATEGORY_INDEX, Product.BRAND_INDEX, Product.LOW_STOCK_INDEX, Product.EXPIRY_INDEX);
+
+    private static final Duration INDEX_POLL_INTERVAL = Duration.ofSeconds(10);
+
+    /** Day buckets of the expiry index queried at the same time while filling a page. */
+    private static final int EXPIRY_DAYS_IN_FLIGHT = 8;
+
+    /** DynamoDB's limit on the number of actions in one TransactWriteItems or BatchGetItem call. */
+    public static final int MAX_TRANSACTION_ITEMS = 100;
+
+    private static final int MAX_SCAN_SEGMENTS = 64;
+    private static final int SCAN_BUFFER_SIZE = 1000;
+
+    /** Scanned products whose shards are read together while streaming the table. */
+    private static final int SHARD_READ_CHUNK = 100;
+
+    /** Products one stock transaction can change, leaving room for its outbox record and idempotency receipt. */
+    public static final int MAX_BATCH_PRODUCTS = MAX_TRANSACTION_ITEMS - 2;
+
+    /** Times a product write is read and written again after losing a race with another writer. */
+    static final int MAX_WRITE_ATTEMPTS = 5;
+
+    private static final InstantZConverter INSTANT_CONVERTER = new InstantZConverter();
+
     private DynamoDbClient client;
 
     private DynamoDbEnhancedClient enhancedClient;
 
     private DynamoDbTable<Product> table;
 
+    private MeterRegistry meterRegistry;
+
+    private int scanSegments;
+
+    private ProductCache cache;
+
+    private OutboxRepository outbox;
+
+    private IdempotencyRepository idempotency;
+
+    private WriteContention contention;
+
+    private StockShardRepository shards;
+
+    private ReservationRepository reservations;
+
+    private ProductFormat format;
+
+    /** Secondary indexes that can be queried; the others are still being created or backfilled. */
+    private final Set<String> activeIndexes = ConcurrentHashMap.newKeySet();
+
     @Inject
-    public ProductRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient) {
+    public ProductRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient,
+            @NonNull MeterRegistry meterRegistry, @NonNull ProductCache cache,
+            @NonNull OutboxRepository outbox, @NonNull IdempotencyRepository idempotency,
+            @NonNull WriteContention contention, @NonNull StockShardRepository shards,
+            @NonNull ReservationRepository reservations,
+            @Value("${inventory.scan.segments:4}") int scanSegments,
+            @Value("${inventory.products.compact-writes:false}") boolean compactWrites) {
+        if (scanSegments < 1 || scanSegments > MAX_SCAN_SEGMENTS) {
+            throw new IllegalArgumentException(
+                "inventory.scan.segments must be between 1 and " + MAX_SCAN_SEGMENTS + ", was " + scanSegments);
+        }
         this.client = client;
         this.enhancedClient = enhancedClient;
+        this.meterRegistry = meterRegistry;
+        this.scanSegments = scanSegments;
+        this.cache = cache;
+        this.outbox = outbox;
+        this.idempotency = idempotency;
+        this.contention = contention;
+        this.shards = shards;
+        this.reservations = reservations;
+        this.format = ProductFormat.of(compactWrites);
         initTable();
     }
 
     private void initTable() {
-        table = enhancedClient.table("Product", TableSchema.fromBean(Product.class));
+        table = enhancedClient.table(TABLE_NAME, ProductTableSchema.create(format));
 
-        List<String> tableNames = client.listTables().tableNames();
-        boolean tableExists = tableNames.contains("Product");
+        boolean created = TableBootstrap.createIfMissing(client, table, CreateTableEnhancedRequest.builder()
+            .globalSecondaryIndices(SECONDARY_INDEXES.stream()
+                .map(indexName -> EnhancedGlobalSecondaryIndex.builder()
+                    .indexName(indexName)
+                    .projection(p -> p.projectionType(ProjectionType.ALL))
+                    .build())
+                .toList())
+            .build());
 
-        if(!tableExists) {
+        boolean streaming = false;
+        if (created) {
+            // Indexes created with the table are active with it
+            activeIndexes.addAll(SECONDARY_INDEXES);
+        } else {
+            TableDescription description = describeTable();
+            SECONDARY_INDEXES.stream()
+                .filter(indexName -> indexStatus(description, indexName) == IndexStatus.ACTIVE)
+                .forEach(activeIndexes::add);
+            streaming = streamEnabled(description);
+        }
+        if (activeIndexes.size() < SECONDARY_INDEXES.size() || !streaming) {
+            Thread.ofVirtual().name("product-table-updater").start(() -> {
+                createMissingIndexes();
+                enableStream();
+            });
+        }
+    }
+
+    /**
+     * Adds the secondary indexes declared on {@link Product} to a table created before they existed.
+     * DynamoDB creates one index per UpdateTable and backfills it in the background, so the indexes
+     * are created one after the other, each once the previous one is active. Until an index is
+     * active, queries on it fail with {@link IndexNotReadyException}.
+     */
+    private void createMissingIndexes() {
+        for (String indexName : SECONDARY_INDEXES) {
+            while (!activeIndexes.contains(indexName)) {
+                try {
+                    TableDescription description = describeTable();
+                    IndexStatus status = indexStatus(description, indexName);
+                    if (status == IndexStatus.ACTIVE) {
+                        activeIndexes.add(indexName);
+                        LOG.info("Index {} on table {} is active", indexName, TABLE_NAME);
+                        continue;
+                    }
+                    if (status == null) {
+                        createIndex(description, indexName);
+                    }
+                } catch (DynamoDbException e) {
+                    // Also thrown while another instance, or another index, is updating the table
+                    LOG.warn("Could not create index {} on table {}, retrying", indexName, TABLE_NAME, e);
+                }
+
+                try {
+                    Thread.sleep(INDEX_POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns on the table's stream with old and new images, which the low-stock events of stock
+     * reductions are derived from. The table only takes one update at a time,
+     * so this waits for the indexes and retries until the table accepts it.
+     */
+    private void enableStream() {
+        while (!Thread.currentThread().isInterrupted()) {
             try {
-                table.createTable();
-                DynamoDbWaiter waiter = DynamoDbWaiter.builder().client(client).build();
-                ResponseOrException<DescribeTableResponse> response = waiter.waitUntilTableExists(b -> b.tableName("Product").build()).matched();
-                response.response().orElseThrow(
-                    () -> new RuntimeException("Product table was not created."));
+                TableDescription description = describeTable();
+                if (streamEnabled(description)) {
+                    LOG.info("Stream on table {} is enabled", TABLE_NAME);
+                    return;
+                }
+                if (description.streamSpecification() != null
+                        && Boolean.TRUE.equals(description.streamSpecification().streamEnabled())) {
+                    LOG.error("Stream on table {} does not carry old and new images, low stock events are not raised",
+                        TABLE_NAME);
+                    return;
+                }
+                if (description.tableStatus() == TableStatus.ACTIVE) {
+                    client.updateTable(b -> b.tableName(TABLE_NAME).streamSpecification(spec -> spec
+                        .streamEnabled(true)
+                        .streamViewType(StreamViewType.NEW_AND_OLD_IMAGES)));
+                    LOG.info("Enabling stream on table {}", TABLE_NAME);
+                }
             } catch (DynamoDbException e) {
-                e.printStackTrace();
-                System.exit(1);
+                LOG.warn("Could not enable stream on table {}, retrying", TABLE_NAME, e);
             }
+
+            try {
+                Thread.sleep(INDEX_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static boolean streamEnabled(TableDescription description) {
+        StreamSpecification stream = description.streamSpecification();
+        return stream != null && Boolean.TRUE.equals(stream.streamEnabled())
+            && stream.streamViewType() == StreamViewType.NEW_AND_OLD_IMAGES;
+    }
+
+    /**
+     * The ARN of the table's stream, once it carries old and new images.
+     */
+    public Optional<String> streamArn() {
+        TableDescription description = describeTable();
+        return streamEnabled(description) ? Optional.ofNullable(description.latestStreamArn()) : Optional.empty();
+    }
+
+    private void createIndex(TableDescription description, String indexName) {
+        String partitionKey = table.tableSchema().tableMetadata().indexPartitionKey(indexName);
+        List<String> sortKey = table.tableSchema().tableMetadata().indexSortKey(indexName).stream().toList();
+
+        CreateGlobalSecondaryIndexAction.Builder create = CreateGlobalSecondaryIndexAction.builder()
+            .indexName(indexName)
+            .keySchema(indexKeySchema(partitionKey, sortKey))
+            .projection(p -> p.projectionType(ProjectionType.ALL));
+        if (description.billingModeSummary() == null
+                || description.billingModeSummary().billingMode() != BillingMode.PAY_PER_REQUEST) {
+            ProvisionedThroughputDescription throughput = description.provisionedThroughput();
+            create.provisionedThroughput(t -> t
+                .readCapacityUnits(throughput.readCapacityUnits())
+                .writeCapacityUnits(throughput.writeCapacityUnits()));
         }
+
+        List<AttributeDefinition> attributes = new ArrayList<>();
+        attributes.add(attributeDefinition(partitionKey));
+        sortKey.forEach(name -> attributes.add(attributeDefinition(name)));
+
+        client.updateTable(b -> b.tableName(TABLE_NAME)
+            .attributeDefinitions(attributes)
+            .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder().create(create.build()).build()));
+        LOG.info("Creating index {} on table {}", indexName, TABLE_NAME);
+    }
+
+    private TableDescription describeTable() {
+        return client.describeTable(b -> b.tableName(TABLE_NAME)).table();
+    }
+
+    /**
+     * The status of the index, or null if the table has no such index.
+     */
+    private static IndexStatus indexStatus(TableDescription description, String indexName) {
+        if (!description.hasGlobalSecondaryIndexes()) {
+            return null;
+        }
+        return description.globalSecondaryIndexes().stream()
+            .filter(index -> index.indexName().equals(indexName))
+            .map(GlobalSecondaryIndexDescription::indexStatus)
+            .findFirst()
+            .orElse(null);
+    }
+
+    private void requireIndex(String indexName) {
+        if (!activeIndexes.contains(indexName)) {
+            throw new IndexNotReadyException(indexName);
+        }
+    }
+
+    private AttributeDefinition attributeDefinition(String name) {
+        ScalarAttributeType type = table.tableSchema().tableMetadata().scalarAttributeType(name)
+            .orElse(ScalarAttributeType.S);
+        return AttributeDefinition.builder().attributeName(name).attributeType(type).build();
+    }
+
+    private static List<KeySchemaElement> indexKeySchema(String partitionKey, List<String> sortKey) {
+        List<KeySchemaElement> keySchema = new ArrayList<>();
+        keySchema.add(KeySchemaElement.builder().attributeName(partitionKey).keyType(KeyType.HASH).build());
+        sortKey.forEach(name -> keySchema.add(KeySchemaElement.builder().attributeName(name).keyType(KeyType.RANGE).build()));
+        return keySchema;
     }
 
     public List<Product> getAll() {
+        try (Stream<Product> products = streamAll()) {
+            return products.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Streams every product with a parallel scan over {@code inventory.scan.segments} segments,
+     * each read on its own virtual thread. Items arrive in no particular order and at most
+     * {@value #SCAN_BUFFER_SIZE} are held in memory at a time. The stock of sharded products is
+     * summed from their shards {@value #SHARD_READ_CHUNK} scanned products at a time. Close the
+     * stream to stop early.
+     */
+    public Stream<Product> streamAll() {
+        SegmentedScan scan = new SegmentedScan(table, scanSegments, SCAN_BUFFER_SIZE, meterRegistry);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(withShardStock(scan), Spliterator.NONNULL), false)
+            .onClose(scan::close);
+    }
+
+    /**
+     * Hands out {@code products} in chunks of {@value #SHARD_READ_CHUNK}, with the stock of the
+     * sharded ones in each chunk summed from their shards by one BatchGetItem.
+     */
+    private Iterator<Product> withShardStock(Iterator<Product> products) {
+        return new Iterator<>() {
+
+            private Iterator<Product> chunk = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                if (!chunk.hasNext() && products.hasNext()) {
+                    List<Product> next = new ArrayList<>(SHARD_READ_CHUNK);
+                    while (next.size() < SHARD_READ_CHUNK && products.hasNext()) {
+                        next.add(products.next());
+                    }
+                    chunk = withShardStock(next).iterator();
+                }
+                return chunk.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.next();
+            }
+        };
+    }
+
+    /**
+     * Scans a single page of at most {@code limit} products, resuming after {@code cursor}.
+     * When {@code attributes} is not empty only those attributes are read from DynamoDB.
+     */
+    public ProductPage getPage(int limit, String cursor, Collection<String> attributes) {
+        ScanEnhancedRequest.Builder request = ScanEnhancedRequest.builder()
+            .limit(limit)
+            .exclusiveStartKey(PageCursor.decode(cursor));
+        if (attributes != null && !attributes.isEmpty()) {
+            request.attributesToProject(ProductTableSchema.storedNames(attributes));
+        }
+
+        Page<Product> page = table.scan(request.build()).iterator().next();
+        return new ProductPage(withShardStock(page.items()), PageCursor.encode(page.lastEvaluatedKey()));
+    }
+
+    /**
+     * Reads a single page of the products whose {@code indexName} partition key equals
+     * {@code value}, in index sort key order. Only matching items are read, so the cost
+     * follows the size of the page rather than the size of the table.
+     */
+    public ProductPage queryIndex(String indexName, String value, int limit, String cursor,
+            Collection<String> attributes) {
+        requireIndex(indexName);
+        QueryEnhancedRequest.Builder request = QueryEnhancedRequest.builder()
+            .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(value)))
+            .limit(limit)
+            .exclusiveStartKey(PageCursor.decode(cursor));
+        if (attributes != null && !attributes.isEmpty()) {
+            request.attributesToProject(ProductTableSchema.storedNames(attributes));
+        }
+
+        Page<Product> page = table.index(indexName).query(request.build()).iterator().next();
+        return new ProductPage(withShardStock(page.items()), PageCursor.encode(page.lastEvaluatedKey()));
+    }
+
+    /**
+     * Reads one page of the products expiring between {@code from} and {@code to}, inclusive, in
+     * expiry order, resuming after {@code cursor}. Only the day buckets of the expiry index that
+     * overlap the range are queried, up to {@value #EXPIRY_DAYS_IN_FLIGHT} of them at a time, and
+     * only until the page is full.
+     */
+    public ProductPage getExpiring(Instant from, Instant to, int limit, String cursor) {
+        requireIndex(Product.EXPIRY_INDEX);
+        Map<String, AttributeValue> startKey = PageCursor.decode(cursor);
+        LocalDate day = startKey == null ? LocalDate.ofInstant(from, ZoneOffset.UTC) : expiryDay(startKey);
+        LocalDate last = LocalDate.ofInstant(to, ZoneOffset.UTC);
+        if (day.isBefore(LocalDate.ofInstant(from, ZoneOffset.UTC)) || day.isAfter(last)) {
+            throw new InvalidRequestException("Invalid cursor.");
+        }
+
         List<Product> products = new ArrayList<>();
-        PageIterable<Product>  productPageIterable = table.scan();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            fill:
+            while (!day.isAfter(last)) {
+                // Most buckets are empty, so the next ones are read alongside the current one
+                int remaining = limit - products.size();
+                List<Future<Page<Product>>> window = new ArrayList<>();
+                for (LocalDate bucket = day; window.size() < EXPIRY_DAYS_IN_FLIGHT && !bucket.isAfter(last);
+                        bucket = bucket.plusDays(1)) {
+                    LocalDate queried = bucket;
+                    Map<String, AttributeValue> exclusiveStart = window.isEmpty() ? startKey : null;
+                    window.add(executor.submit(() -> expiringPage(queried, from, to, remaining, exclusiveStart)));
+                }
 
-        for(Page<Product> product : productPageIterable) {
-            for(Product p : product.items()) {
-                products.add(p);
+                try {
+                    for (Future<Page<Product>> future : window) {
+                        Page<Product> page = await(future);
+                        List<Product> items = page.items();
+                        int wanted = limit - products.size();
+                        if (items.size() >= wanted) {
+                            products.addAll(items.subList(0, wanted));
+                            boolean exhausted = day.equals(last) && items.size() == wanted
+                                && page.lastEvaluatedKey() == null;
+                            return new ProductPage(withShardStock(products),
+                                exhausted ? null : PageCursor.encode(expiryKey(products.get(limit - 1))));
+                        }
+                        products.addAll(items);
+                        if (page.lastEvaluatedKey() != null && !page.lastEvaluatedKey().isEmpty()) {
+                            // The bucket did not fit in one response; finish it before the later days
+                            startKey = page.lastEvaluatedKey();
+                            continue fill;
+                        }
+                        day = day.plusDays(1);
+                        startKey = null;
+                    }
+                } finally {
+                    window.forEach(future -> future.cancel(true));
+                }
             }
         }
-        return products;
+        return new ProductPage(withShardStock(products), null);
+    }
+
+    private Page<Product> expiringPage(LocalDate day, Instant from, Instant to, int limit,
+            Map<String, AttributeValue> exclusiveStartKey) {
+        QueryConditional range = QueryConditional.sortBetween(
+            Key.builder().partitionValue(day.toString()).sortValue(INSTANT_CONVERTER.transformFrom(from).s()).build(),
+            Key.builder().partitionValue(day.toString()).sortValue(INSTANT_CONVERTER.transformFrom(to).s()).build());
+        return table.index(Product.EXPIRY_INDEX)
+            .query(r -> r.queryConditional(range).limit(limit).exclusiveStartKey(exclusiveStartKey))
+            .iterator().next();
+    }
+
+    /**
+     * The expiry index key of {@code product}, to resume a page right after it.
+     */
+    private Map<String, AttributeValue> expiryKey(Product product) {
+        return table.tableSchema().itemToMap(product, List.of(PRODUCT_ID, EXPIRY_DAY, EXPIRY_DATE));
+    }
+
+    private static LocalDate expiryDay(Map<String, AttributeValue> key) {
+        AttributeValue day = key.get(EXPIRY_DAY);
+        try {
+            return LocalDate.parse(day.s());
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Invalid cursor.");
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the expiry index", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Expiry index query failed", e.getCause());
+        }
+    }
+
+    /**
+     * The format product attributes are written in.
+     */
+    ProductFormat format() {
+        return format;
+    }
+
+    TableSchema<Product> tableSchema() {
+        return table.tableSchema();
+    }
+
+    /**
+     * Reads a page of the ids of products that still store attributes under the names of the
+     * format not written, resuming after {@code cursor}. The filter applies after the scan
+     * reads {@code limit} items, so a page can hold fewer ids, or none, before the table ends.
+     */
+    public ProductPage unmigratedPage(int limit, String cursor) {
+        ProductFormat other = format.other();
+        List<String> stale = List.of(
+            other.held, other.price, other.lowStockThreshold, other.stockShards, other.createdAt, other.updatedAt);
+        Map<String, String> names = new HashMap<>();
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < stale.size(); i++) {
+            names.put("#a" + i, stale.get(i));
+            conditions.add("attribute_exists(#a" + i + ")");
+        }
+
+        Page<Product> page = table.scan(ScanEnhancedRequest.builder()
+                .limit(limit)
+                .exclusiveStartKey(PageCursor.decode(cursor))
+                .filterExpression(Expression.builder()
+                    .expression(String.join(" OR ", conditions))
+                    .expressionNames(names)
+                    .build())
+                .attributesToProject(PRODUCT_ID)
+                .build())
+            .iterator().next();
+        return new ProductPage(page.items(), PageCursor.encode(page.lastEvaluatedKey()));
     }
 
+    /**
+     * Rewrites a product in the format written, removing the attributes it had under the
+     * other format's names. Conditioned on the version like any other write.
+     *
+     * @throws UUIDNotFoundException if the product does not exist
+     * @throws WriteConflictException if every attempt lost to another writer
+     */
+    public Product migrate(UUID id) {
+        return update(id, product -> {});
+    }
+
+    /**
+     * Token that changes whenever any product may have changed; see {@link ProductCache#catalogVersion()}.
+     */
+    public String catalogVersion() {
+        return cache.catalogVersion();
+    }
+
+    /**
+     * Reads a product through the cache. The result may be up to
+     * {@code inventory.cache.expire-after-write} old; use {@link #getById(UUID, boolean)}
+     * with a consistent read before writing back a modified product. The stock of a sharded
+     * product is the exception: it is summed from the shards on every read, since shard writes
+     * reach neither the product item nor other instances' caches until the next fold.
+     */
     public Optional<Product> getById(UUID id) {
-        return Optional.ofNullable(table.getItem(Key.builder().partitionValue(id.toString()).build()));
+        return cache.get(id, key -> Optional.ofNullable(table.getItem(getRequest(key, false))))
+            .map(product -> withShardStock(List.of(product)).get(0));
+    }
+
+    /**
+     * Reads a product from DynamoDB, bypassing the cache, and refreshes the cached copy.
+     */
+    public Optional<Product> getById(UUID id, boolean consistentRead) {
+        Optional<Product> product = Optional.ofNullable(table.getItem(getRequest(id, consistentRead)));
+        product.ifPresent(cache::store);
+        return product;
     }
 
     public Product save(Product value) {
         table.putItemWithResponse(
                 PutItemEnhancedRequest.builder(Product.class).item(value).build());
-        return getById(value.getProductID()).get();
+        Product saved = getById(value.getProductID(), true).get();
+        cache.written(saved);
+        return saved;
     }
 
     public void delete(Product product) {
         table.deleteItem(product);
+        if (product.getStockShards() != null) {
+            shards.removeAll(product.getProductID(), product.getStockShards());
+        }
+        cache.removed(product.getProductID());
+    }
+
+    /**
+     * Reads a product consistently, applies {@code change} to it and writes the whole item back.
+     * The write only applies while the product's version is still the one read, so a concurrent
+     * PATCH or stock change is never overwritten; when one got in between, the product is read
+     * and changed again after a jittered backoff, up to {@value #MAX_WRITE_ATTEMPTS} times.
+     *
+     * @throws UUIDNotFoundException if the product does not exist
+     * @throws WriteConflictException if every attempt lost to another writer
+     */
+    public Product update(UUID id, Consumer<Product> change) {
+        for (int attempt = 1; ; attempt++) {
+            Product product = table.getItem(getRequest(id, true));
+            if (product == null) {
+                throw new UUIDNotFoundException(id);
+            }
+            change.accept(product);
+            try {
+                Product updated = table.updateItem(product);
+                contention.attempts(WriteContention.UPDATE, attempt);
+                cache.written(updated);
+                return updated;
+            } catch (ConditionalCheckFailedException e) {
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    contention.attempts(WriteContention.UPDATE, attempt);
+                    contention.exhausted(List.of(id), WriteContention.UPDATE);
+                    throw new WriteConflictException(id);
+                }
+                WriteContention.pause(contention.conflicted(List.of(id), WriteContention.UPDATE, attempt));
+            }
+        }
+    }
+
+    /**
+     * Takes {@code quantity} units off a product's stock. Without a receipt this is a single
+     * conditional UpdateItem that needs no read first (see {@link StockDecrement}); for a
+     * sharded product it goes to one of its shards instead, leaving the product item alone.
+     * Products with held units, reductions that no single shard can take, and reductions whose
+     * response is stored under an idempotency key, are read consistently and reduced in a
+     * transaction instead. Either way concurrent reductions can neither lose updates nor drive
+     * the stock below the held units. The low-stock marker is set in the same write as the stock,
+     * except for sharded products, whose shards are folded right after a reduction that takes
+     * them below the threshold (see {@link #foldCrossing}). Low-stock events are raised from the
+     * product stream, not here.
+     *
+     * @throws UUIDNotFoundException if the product does not exist
+     * @throws InsufficientStockException if fewer than {@code quantity} units are available
+     */
+    public StockChange decrementStock(UUID id, int quantity, @Nullable StockReceipt receipt) {
+        if (receipt == null) {
+            Optional<StockChange> change = decrement(id, quantity);
+            if (change.isPresent()) {
+                return change.get();
+            }
+        }
+        return changeStock(id, new StockDelta(-quantity, null), StockEvents.NONE, receipt);
+    }
+
+    /**
+     * Expects the threshold of the cached copy, if any, and on a miss the request built from the
+     * item the failed condition returned.
+     *
+     * @return the change, or nothing if the product has to be reduced in a transaction
+     */
+    private Optional<StockChange> decrement(UUID id, int quantity) {
+        Optional<Product> cached = cache.peek(id);
+        if (cached.isPresent() && cached.get().getStockShards() != null) {
+            return decrementShards(cached.get(), quantity);
+        }
+        StockDecrement.Expected expected = cached
+            .map(product -> StockDecrement.Expected.of(product, quantity))
+            .orElse(StockDecrement.Expected.UNKNOWN);
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            UpdateItemResponse response;
+            try {
+                response = client.updateItem(StockDecrement.request(id, quantity, expected, Instant.now(), format));
+            } catch (ConditionalCheckFailedException e) {
+                Map<String, AttributeValue> item = e.hasItem() ? e.item() : Map.of();
+                Optional<RuntimeException> failure = StockDecrement.failure(id, quantity, item, format);
+                if (failure.isPresent()) {
+                    throw failure.get();
+                }
+                Product current = table.tableSchema().mapToItem(item);
+                if (current.getStockShards() != null) {
+                    // Remembered so the next reduction goes straight to the shards
+                    cache.store(current);
+                    return decrementShards(current, quantity);
+                }
+                if (StockDecrement.transactional(item, format)) {
+                    return Optional.empty();
+                }
+                expected = StockDecrement.Expected.of(current, quantity);
+                continue;
+            }
+            contention.attempts(WriteContention.STOCK, attempt);
+            StockChange change = StockDecrement.change(table.tableSchema(), response.attributes(), quantity);
+            cache.written(change.getProduct());
+            return Optional.of(change);
+        }
+        // The threshold or stock kept moving under the request; the transaction reads them first
+        return Optional.empty();
+    }
+
+    /**
+     * Takes {@code quantity} units off a sharded product with one conditional UpdateItem on a
+     * shard picked at random, moving on to the next shard while the one tried holds too little.
+     * Held units are kept apart from the shards, so neither the product item nor the other
+     * shards are read before the write; the stock reported is summed from the shards after it.
+     *
+     * @return the change, or nothing if no single shard holds {@code quantity} units
+     */
+    private Optional<StockChange> decrementShards(Product product, int quantity) {
+        UUID id = product.getProductID();
+        int count = product.getStockShards();
+        int start = ThreadLocalRandom.current().nextInt(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                client.updateItem(StockShardRepository.takeRequest(id, (start + i) % count, quantity));
+            } catch (ConditionalCheckFailedException e) {
+                continue;
+            }
+            contention.attempts(WriteContention.STOCK, i + 1);
+            Product updated = withShardStock(List.of(product), true).get(0);
+            updated.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+            cache.written(updated);
+            StockChange change = new StockChange(updated, updated.getStock() + quantity);
+            foldCrossing(change);
+            return Optional.of(change);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds {@code quantity} units to a product's stock, optionally replacing its expiry date.
+     *
+     * @throws UUIDNotFoundException if the product does not exist
+     */
+    public StockChange incrementStock(UUID id, int quantity, Instant expiryDate, StockEvents events,
+            StockReceipt receipt) {
+        return changeStock(id, new StockDelta(quantity, expiryDate), events, receipt);
+    }
+
+    private StockChange changeStock(UUID id, StockDelta delta, StockEvents events, StockReceipt receipt) {
+        try {
+            return changeStock(Map.of(id, delta), events, receipt).get(0);
+        } catch (StockTransactionCancelledException e) {
+            throw StockTransaction.singleProductFailure(id, e);
+        }
+    }
+
+    /**
+     * Takes stock off several products in one transaction: either every product has enough
+     * stock and all reductions apply, or none of them do.
+     *
+     * @param quantities quantity to remove per product, at most {@value #MAX_BATCH_PRODUCTS} entries
+     * @return the changes in the iteration order of {@code quantities}
+     * @throws StockTransactionCancelledException with a reason per product if the transaction was cancelled
+     */
+    public List<StockChange> decrementStock(Map<UUID, Integer> quantities, @Nullable StockReceipt receipt) {
+        Map<UUID, StockDelta> deltas = new LinkedHashMap<>();
+        quantities.forEach((id, quantity) -> deltas.put(id, new StockDelta(-quantity, null)));
+        return changeStock(deltas, StockEvents.NONE, receipt);
+    }
+
+    /**
+     * Applies stock deltas to several products, and writes the outbox record {@code events}
+     * describes and the idempotency record of {@code receipt}, if any, in one TransactWriteItems. Products are read consistently first and each
+     * write is conditioned on the version read, so the new stock and the low-stock index entry
+     * are set exactly. Sharded products are written on their shards instead, read with one
+     * BatchGetItem alongside. When another writer gets in between, the whole change is read and
+     * tried again after a jittered backoff, up to {@value #MAX_WRITE_ATTEMPTS} times.
+     *
+     * @param deltas change per product, at most {@value #MAX_BATCH_PRODUCTS} entries
+     * @return the changes in the iteration order of {@code deltas}
+     * @throws StockTransactionCancelledException with a reason per product if the change was not applied
+     * @throws RequestAlreadyAppliedException if the receipt's key was stored by another request first
+     */
+    public List<StockChange> changeStock(Map<UUID, StockDelta> deltas, StockEvents events,
+            @Nullable StockReceipt receipt) {
+        return changeStock(deltas, events, receipt, List::of);
+    }
+
+    /**
+     * @param others writes on other tables to commit with the change, built again for every
+     *               attempt so they can check what they depend on is still current
+     */
+    private List<StockChange> changeStock(Map<UUID, StockDelta> deltas, StockEvents events,
+            @Nullable StockReceipt receipt, Supplier<List<TransactWriteItem>> others) {
+        for (int attempt = 1; ; attempt++) {
+            Map<UUID, Product> products = getByIds(deltas.keySet(), true);
+            StockTransaction transaction = new StockTransaction(deltas, products,
+                shards.read(shardCounts(products.values()), true), Instant.now(), format);
+            IdempotencyRecord record = receipt == null ? null : receipt.of(transaction.getChanges());
+            try {
+                client.transactWriteItems(transaction.toRequest(others.get(),
+                    outbox.put(events.of(transaction.getChanges())),
+                    Optional.ofNullable(record).map(idempotency::put)));
+            } catch (TransactionCanceledException e) {
+                if (transaction.isDuplicate(e)) {
+                    throw new RequestAlreadyAppliedException(record.getKey());
+                }
+                if (!transaction.isConflict(e) || attempt == MAX_WRITE_ATTEMPTS) {
+                    contention.attempts(WriteContention.STOCK, attempt);
+                    if (transaction.isConflict(e)) {
+                        contention.exhausted(transaction.conflicted(e), WriteContention.STOCK);
+                    }
+                    throw new StockTransactionCancelledException(transaction.cancellationResults(e));
+                }
+                WriteContention.pause(contention.conflicted(transaction.conflicted(e), WriteContention.STOCK, attempt));
+                continue;
+            }
+            contention.attempts(WriteContention.STOCK, attempt);
+            cache.written(transaction.getUpdatedProducts());
+            transaction.getChanges().forEach(this::foldCrossing);
+            return transaction.getChanges();
+        }
+    }
+
+    /**
+     * Holds {@code quantity} units of a product for {@code hold}. The units stay in stock but
+     * stop counting as available, and the reservation is stored in the same transaction as the
+     * product's held units.
+     *
+     * @throws UUIDNotFoundException if the product does not exist
+     * @throws InsufficientStockException if fewer than {@code quantity} units are available
+     */
+    public Reservation reserve(UUID productId, int quantity, Duration hold) {
+        Reservation reservation = new Reservation(productId, quantity, hold);
+        try {
+            changeStock(Map.of(productId, new StockDelta(0, null, quantity)), StockEvents.NONE, null,
+                () -> List.of(reservations.put(reservation)));
+        } catch (StockTransactionCancelledException e) {
+            throw StockTransaction.singleProductFailure(productId, e);
+        }
+        return reservation;
+    }
+
+    /**
+     * Takes the units of a held reservation off the product's stock and its held units, and
+     * marks the reservation committed, in one transaction.
+     *
+     * @throws UUIDNotFoundException if the reservation or its product does not exist
+     * @throws ReservationNotHeldException if the reservation was already settled or has lapsed
+     */
+    public StockChange commitReservation(UUID id) {
+        Reservation reservation = heldReservation(id);
+        UUID productId = reservation.getProductId();
+        int quantity = reservation.getQuantity();
+        try {
+            return changeStock(Map.of(productId, new StockDelta(-quantity, null, -quantity)), StockEvents.NONE, null,
+                () -> List.of(reservations.settle(heldReservation(id), Reservation.Status.COMMITTED, Instant.now())))
+                .get(0);
+        } catch (StockTransactionCancelledException e) {
+            throw StockTransaction.singleProductFailure(productId, e);
+        }
+    }
+
+    /**
+     * Gives the units of a held reservation back to the product's available stock and marks the
+     * reservation {@code status}, in one transaction. A reservation whose product was deleted
+     * is settled on its own.
+     *
+     * @throws UUIDNotFoundException if the reservation does not exist
+     * @throws ReservationNotHeldException if the reservation was already settled
+     */
+    public Reservation releaseReservation(UUID id, Reservation.Status status) {
+        Reservation reservation = reservations.get(id).orElseThrow(() -> new UUIDNotFoundException(id));
+        if (reservation.getStatus() != Reservation.Status.HELD) {
+            throw new ReservationNotHeldException(id, reservation.getStatus());
+        }
+        release(reservation.getProductId(), List.of(reservation), status);
+        return settled(reservation, status);
+    }
+
+    /**
+     * Releases lapsed holds on one product together: the product's held units drop by their
+     * sum and every reservation is marked expired in the same transaction.
+     *
+     * @param lapsed reservations of {@code productId}, at most {@value #MAX_BATCH_PRODUCTS}
+     * @throws ReservationNotHeldException if one of them was settled in the meantime
+     */
+    public void releaseLapsed(UUID productId, List<Reservation> lapsed) {
+        release(productId, lapsed, Reservation.Status.EXPIRED);
+    }
+
+    private void release(UUID productId, List<Reservation> held, Reservation.Status status) {
+        int quantity = held.stream().mapToInt(Reservation::getQuantity).sum();
+        Supplier<List<TransactWriteItem>> settles = () -> {
+            Instant now = Instant.now();
+            List<TransactWriteItem> items = new ArrayList<>();
+            for (Reservation reservation : held) {
+                Reservation current = reservations.get(reservation.getReservationId())
+                    .orElseThrow(() -> new UUIDNotFoundException(reservation.getReservationId()));
+                if (current.getStatus() != Reservation.Status.HELD) {
+                    throw new ReservationNotHeldException(current.getReservationId(), current.getStatus());
+                }
+                items.add(reservations.settle(current, status, now));
+            }
+            return items;
+        };
+        if (getById(productId, true).isEmpty()) {
+            // Nothing left to give the units back to
+            List<TransactWriteItem> items = settles.get();
+            client.transactWriteItems(r -> r.transactItems(items));
+            return;
+        }
+        try {
+            changeStock(Map.of(productId, new StockDelta(0, null, -quantity)), StockEvents.NONE, null, settles);
+        } catch (StockTransactionCancelledException e) {
+            throw StockTransaction.singleProductFailure(productId, e);
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} holds whose deadline passed before {@code now}, oldest first.
+     */
+    public List<Reservation> lapsedReservations(Instant now, int limit) {
+        return reservations.lapsed(now, limit);
+    }
+
+    private Reservation heldReservation(UUID id) {
+        Reservation reservation = reservations.get(id).orElseThrow(() -> new UUIDNotFoundException(id));
+        if (reservation.getStatus() != Reservation.Status.HELD) {
+            throw new ReservationNotHeldException(id, reservation.getStatus());
+        }
+        if (reservation.isLapsed(Instant.now())) {
+            throw new ReservationNotHeldException(id, Reservation.Status.EXPIRED);
+        }
+        return reservation;
+    }
+
+    private static Reservation settled(Reservation reservation, Reservation.Status status) {
+        reservation.setStatus(status);
+        reservation.setHeld(null);
+        reservation.setSettledAt(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        return reservation;
+    }
+
+    /**
+     * Splits a product's stock over {@code stockShards} shards, changes the number of shards,
+     * or moves the stock back onto the product when {@code stockShards} is 0. The shards split
+     * the units free to sell, and the held units move between the product and an item of their
+     * own. The product, every old and new shard and the held units are written in one transaction
+     * conditioned on what was read, so no unit is lost to a concurrent stock change; one that gets
+     * in between causes a retry.
+     *
+     * @throws UUIDNotFoundException if the product does not exist
+     * @throws WriteConflictException if every attempt lost to another writer
+     */
+    public Product reshardStock(UUID id, int stockShards) {
+        for (int attempt = 1; ; attempt++) {
+            Product product = table.getItem(getRequest(id, true));
+            if (product == null) {
+                throw new UUIDNotFoundException(id);
+            }
+            int current = product.getStockShards() == null ? 0 : product.getStockShards();
+            if (current == stockShards) {
+                return product;
+            }
+            ShardedStock stock = current == 0 ? null : shards.snapshot(id, current);
+            int[] old = stock == null ? new int[0] : stock.getShards();
+            int total = stock == null ? product.getStock() : stock.total();
+            int held = stock == null ? product.getHeld() : stock.getHeld();
+            // The shards only split the free units; the held ones get an item of their own
+            int[] split = evenSplit(total - held, stockShards);
+
+            Instant now = Instant.now();
+            List<TransactWriteItem> items = new ArrayList<>();
+            items.add(StockUpdate.resharded(product, total, stockShards == 0 ? held : 0, stockShards, now, format)
+                .toTransactWriteItem(id));
+            for (int i = 0; i < Math.max(old.length, split.length); i++) {
+                if (i >= split.length) {
+                    items.add(StockShardRepository.remove(id, i, old[i]));
+                } else {
+                    items.add(StockShardRepository.replace(id, i, split[i], i < old.length ? old[i] : null));
+                }
+            }
+            if (stockShards == 0) {
+                items.add(StockShardRepository.removeHeld(id, held));
+            } else {
+                items.add(StockShardRepository.replaceHeld(id, held, current == 0 ? 0 : held));
+            }
+
+            try {
+                client.transactWriteItems(r -> r.transactItems(items));
+            } catch (TransactionCanceledException e) {
+                if (!StockTransaction.isConflictOnly(e)) {
+                    throw e;
+                }
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    contention.exhausted(List.of(id), WriteContention.STOCK);
+                    throw new WriteConflictException(id);
+                }
+                WriteContention.pause(contention.conflicted(List.of(id), WriteContention.STOCK, attempt));
+                continue;
+            }
+
+            Product updated = product.copy();
+            updated.setStock(total);
+            updated.setHeld(held);
+            updated.setStockShards(stockShards == 0 ? null : stockShards);
+            updated.setVersion(StockUpdate.nextVersion(product.getVersion()));
+            updated.setUpdatedAt(now.truncatedTo(ChronoUnit.SECONDS));
+            cache.written(updated);
+            return updated;
+        }
+    }
+
+    /**
+     * Folds the shards of a sharded product back into the stock stored on the product, so that
+     * the low-stock index and product reads catch up with shard writes, and evens out the shards
+     * when some run low while others hold most of the stock. The shards are read as of one point
+     * in time, so the folded stock is one the product really had, and the product stream sees a
+     * low-stock crossing between two folds once. A fold that races another write is left for the
+     * next one.
+     *
+     * @return the change folded in, if the stock on the product moved
+     */
+    public Optional<StockChange> foldShards(UUID id) {
+        Product product = table.getItem(getRequest(id, true));
+        if (product == null || product.getStockShards() == null) {
+            return Optional.empty();
+        }
+        ShardedStock stock = shards.snapshot(id, product.getStockShards());
+        int total = stock.total();
+
+        List<TransactWriteItem> items = new ArrayList<>(rebalance(id, stock.getShards()));
+        Optional<StockChange> change = Optional.empty();
+        if (total != product.getStock()) {
+            Instant now = Instant.now();
+            Product updated = product.copy();
+            updated.setStock(total);
+            updated.setHeld(stock.getHeld());
+            updated.setVersion(StockUpdate.nextVersion(product.getVersion()));
+            updated.setUpdatedAt(now.truncatedTo(ChronoUnit.SECONDS));
+            change = Optional.of(new StockChange(updated, product.getStock()));
+
+            items.add(StockUpdate.of(product, new StockDelta(total - product.getStock(), null), now, format)
+                .toTransactWriteItem(id));
+        }
+        if (items.isEmpty()) {
+            return Optional.empty();
+        }
+
+        try {
+            client.transactWriteItems(r -> r.transactItems(items));
+        } catch (TransactionCanceledException e) {
+            if (StockTransaction.isConflictOnly(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+        change.ifPresent(folded -> cache.written(folded.getProduct()));
+        return change;
+    }
+
+    /**
+     * Folds the shards of a sharded product right away when {@code change} took its stock below
+     * the threshold. Shard writes never reach the product item, so until a fold the low-stock
+     * marker, the stream's low-stock event and the catalog version would wait for the next pass
+     * of the rebalancer, up to {@code inventory.stock-shards.rebalance-interval} later. A fold
+     * that fails or races another write leaves the crossing to that pass; the change itself is
+     * already committed.
+     */
+    void foldCrossing(StockChange change) {
+        if (!crossedShardThreshold(change)) {
+            return;
+        }
+        UUID id = change.getProduct().getProductID();
+        try {
+            foldShards(id);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not fold the stock shards of product {} after it fell below its threshold", id, e);
+        }
+    }
+
+    /**
+     * Whether {@code change} took the stock of a sharded product from at or above its threshold
+     * to below it.
+     */
+    static boolean crossedShardThreshold(StockChange change) {
+        Product product = change.getProduct();
+        int threshold = product.lowStockThresholdOrDefault();
+        return product.getStockShards() != null
+            && product.getStock() < threshold && change.getPreviousStock() >= threshold;
+    }
+
+    /**
+     * Maps an image of the product stream, stored in either format.
+     */
+    public Product fromImage(Map<String, AttributeValue> image) {
+        return table.tableSchema().mapToItem(image);
+    }
+
+    /**
+     * Moves stock from the fullest shards to the ones below half their even share. Each move
+     * only takes units a shard still holds, so shard writes running alongside stay valid.
+     */
+    static List<TransactWriteItem> rebalance(UUID id, int[] stocks) {
+        int[] targets = evenSplit(Arrays.stream(stocks).sum(), stocks.length);
+        boolean skewed = false;
+        for (int i = 0; i < stocks.length; i++) {
+            skewed |= 2 * stocks[i] < targets[i];
+        }
+        if (!skewed) {
+            return List.of();
+        }
+
+        List<TransactWriteItem> moves = new ArrayList<>();
+        for (int i = 0; i < stocks.length; i++) {
+            if (stocks[i] > targets[i]) {
+                moves.add(StockShardRepository.take(id, i, stocks[i] - targets[i]));
+            } else if (stocks[i] < targets[i]) {
+                moves.add(StockShardRepository.add(id, i, targets[i] - stocks[i]));
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Splits {@code total} units over {@code parts} as evenly as possible, the remainder going
+     * to the first parts.
+     */
+    static int[] evenSplit(int total, int parts) {
+        int[] split = new int[parts];
+        for (int i = 0; i < parts; i++) {
+            split[i] = total / parts + (i < total % parts ? 1 : 0);
+        }
+        return split;
+    }
+
+    private List<Product> withShardStock(List<Product> products) {
+        return withShardStock(products, false);
+    }
+
+    /**
+     * Sets the stock and held units of the sharded products among {@code products} to those of
+     * their shards, read with BatchGetItem. Reads of products without shards cost nothing more.
+     * A projection without the product id and shard count keeps the stock as of the last fold.
+     */
+    private List<Product> withShardStock(List<Product> products, boolean consistentRead) {
+        Map<UUID, Integer> counts = shardCounts(products);
+        counts.remove(null);
+        if (counts.isEmpty()) {
+            return products;
+        }
+        Map<UUID, ShardedStock> stocks = shards.read(counts, consistentRead);
+        for (Product product : products) {
+            ShardedStock stock = stocks.get(product.getProductID());
+            if (stock != null) {
+                product.setStock(stock.total());
+                product.setHeld(stock.getHeld());
+            }
+        }
+        return products;
+    }
+
+    static Map<UUID, Integer> shardCounts(Collection<Product> products) {
+        Map<UUID, Integer> counts = new HashMap<>();
+        for (Product product : products) {
+            if (product.getStockShards() != null) {
+                counts.put(product.getProductID(), product.getStockShards());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Reads up to {@value #MAX_TRANSACTION_ITEMS} products with a single BatchGetItem.
+     * Products that do not exist are absent from the returned map.
+     */
+    public Map<UUID, Product> getByIds(Collection<UUID> ids, boolean consistentRead) {
+        ReadBatch.Builder<Product> batch = ReadBatch.builder(Product.class).mappedTableResource(table);
+        for (UUID id : ids) {
+            batch.addGetItem(getRequest(id, consistentRead));
+        }
+
+        Map<UUID, Product> products = new HashMap<>();
+        enhancedClient.batchGetItem(r -> r.readBatches(batch.build()))
+            .resultsForTable(table)
+            .forEach(product -> products.put(product.getProductID(), product));
+        return products;
+    }
+
+    static GetItemEnhancedRequest getRequest(UUID id, boolean consistentRead) {
+        return GetItemEnhancedRequest.builder()
+            .key(Key.builder().partitionValue(id.toString()).build())
+            .consistentRead(consistentRead)
+            .build();
+    }
+
+    static Map<String, AttributeValue> keyOf(UUID id) {
+        return Map.of(PRODUCT_ID, AttributeValue.fromS(id.toString()));
     }
 
-    public Product update(Product updatedProduct) {
-        return table.updateItem(updatedProduct);
+    /**
+     * The id of the product with the key {@code key}, such as the keys of a stream record.
+     */
+    public static UUID idOf(Map<String, AttributeValue> key) {
+        return UUID.fromString(key.get(PRODUCT_ID).s());
     }
 }
@@ -0,0 +1,144 @@
+package com.dondondevops.inventory.repository;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondarySortKey;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.dondondevops.inventory.model.EpochSecondConverter;
+import com.dondondevops.inventory.model.InstantZConverter;
+import com.dondondevops.inventory.model.Product;
+
+import software.amazon.awssdk.enhanced.dynamodb.AttributeConverter;
+import software.amazon.awssdk.enhanced.dynamodb.extensions.VersionedRecordExtension;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+
+/**
+ * The DynamoDB mapping of {@link Product}, written out attribute by attribute instead of
+ * derived from the bean annotations with reflection at startup. Items map through plain method
+ * references, and nothing here needs reflection configuration in a native image.
+ *
+ * Key and index attributes are named as {@code TableSchema.fromBean} derives them from the
+ * annotations on {@link Product}. The other attributes are read under the names of both
+ * {@link ProductFormat}s and written under the names of one, the other name being mapped to
+ * null so that a whole-item update removes it. A product attribute added there must be added
+ * here as well.
+ */
+final class ProductTableSchema {
+
+    /** Product fields that are stored under a different name in each format. */
+    private static final Map<String, Function<ProductFormat, String>> FORMATTED = Map.of(
+        "held", format -> format.held,
+        "priceInSGD", format -> format.price,
+        "lowStockThreshold", format -> format.lowStockThreshold,
+        "stockShards", format -> format.stockShards,
+        "createdAt", format -> format.createdAt,
+        "updatedAt", format -> format.updatedAt);
+
+    /** Every product field that is stored, by the name the JSON API uses. */
+    static final List<String> FIELDS = List.of(ProductRepository.PRODUCT_ID, "name", "category", "brand",
+        ProductRepository.STOCK, "held", "priceInSGD", "lowStockThreshold", "stockShards", ProductRepository.LOW_STOCK,
+        ProductRepository.EXPIRY_DATE, ProductRepository.EXPIRY_DAY, "createdAt", "updatedAt", ProductRepository.VERSION);
+
+    private ProductTableSchema() {}
+
+    /**
+     * @param written the format attributes are written in
+     */
+    static StaticTableSchema<Product> create(ProductFormat written) {
+        InstantZConverter instants = new InstantZConverter();
+        StaticTableSchema.Builder<Product> schema = StaticTableSchema.builder(Product.class)
+            .newItemSupplier(Product::new)
+            .addAttribute(UUID.class, a -> a.name(ProductRepository.PRODUCT_ID)
+                .getter(Product::getProductID)
+                .setter(Product::setProductID)
+                .tags(primaryPartitionKey()))
+            .addAttribute(String.class, a -> a.name("name")
+                .getter(Product::getName)
+                .setter(Product::setName)
+                .tags(secondarySortKey(List.of(Product.CATEGORY_INDEX, Product.BRAND_INDEX))))
+            .addAttribute(String.class, a -> a.name("category")
+                .getter(Product::getCategory)
+                .setter(Product::setCategory)
+                .tags(secondaryPartitionKey(Product.CATEGORY_INDEX)))
+            .addAttribute(String.class, a -> a.name("brand")
+                .getter(Product::getBrand)
+                .setter(Product::setBrand)
+                .tags(secondaryPartitionKey(Product.BRAND_INDEX)))
+            .addAttribute(Integer.class, a -> a.name(ProductRepository.STOCK)
+                .getter(Product::getStock)
+                .setter(Product::setStock)
+                .tags(secondarySortKey(Product.LOW_STOCK_INDEX)))
+            .addAttribute(String.class, a -> a.name(ProductRepository.LOW_STOCK)
+                .getter(Product::getLowStock)
+                .setter(Product::setLowStock)
+                .tags(secondaryPartitionKey(Product.LOW_STOCK_INDEX)))
+            .addAttribute(Instant.class, a -> a.name(ProductRepository.EXPIRY_DATE)
+                .getter(Product::getExpiryDate)
+                .setter(Product::setExpiryDate)
+                .attributeConverter(instants)
+                .tags(secondarySortKey(Product.EXPIRY_INDEX)))
+            .addAttribute(String.class, a -> a.name(ProductRepository.EXPIRY_DAY)
+                .getter(Product::getExpiryDay)
+                .setter(Product::setExpiryDay)
+                .tags(secondaryPartitionKey(Product.EXPIRY_INDEX)))
+            .addAttribute(Long.class, a -> a.name(ProductRepository.VERSION)
+                .getter(Product::getVersion)
+                .setter(Product::setVersion)
+                .tags(VersionedRecordExtension.AttributeTags.versionAttribute()));
+
+        for (ProductFormat format : ProductFormat.values()) {
+            boolean writes = format == written;
+            AttributeConverter<Instant> timestamps = format == ProductFormat.COMPACT ? new EpochSecondConverter() : instants;
+            formatted(schema, Integer.class, format.held, writes, Product::getHeld, Product::setHeld, null);
+            formatted(schema, Double.class, format.price, writes, Product::getPriceInSGD, Product::setPriceInSGD, null);
+            formatted(schema, Integer.class, format.lowStockThreshold, writes,
+                Product::getLowStockThreshold, Product::setLowStockThreshold, null);
+            formatted(schema, Integer.class, format.stockShards, writes,
+                Product::getStockShards, Product::setStockShards, null);
+            formatted(schema, Instant.class, format.createdAt, writes,
+                Product::getCreatedAt, Product::setCreatedAt, timestamps);
+            formatted(schema, Instant.class, format.updatedAt, writes,
+                Product::getUpdatedAt, Product::setUpdatedAt, timestamps);
+        }
+        return schema.build();
+    }
+
+    private static <T> void formatted(StaticTableSchema.Builder<Product> schema, Class<T> type, String name,
+            boolean writes, Function<Product, T> getter, BiConsumer<Product, T> setter,
+            AttributeConverter<T> converter) {
+        schema.addAttribute(type, a -> {
+            a.name(name).getter(writes ? getter : product -> null).setter(setter);
+            if (converter != null) {
+                a.attributeConverter(converter);
+            }
+        });
+    }
+
+    /**
+     * The attribute names to project to read {@code fields}: both stored names of a field whose
+     * name depends on the format.
+     */
+    static List<String> storedNames(Collection<String> fields) {
+        List<String> names = new ArrayList<>();
+        for (String field : fields) {
+            Function<ProductFormat, String> formatted = FORMATTED.get(field);
+            if (formatted == null) {
+                names.add(field);
+            } else {
+                for (ProductFormat format : ProductFormat.values()) {
+                    names.add(formatted.apply(format));
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,174 @@
+package com.dondondevops.inventory.repository;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondarySortKey;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.dondondevops.inventory.model.InstantZConverter;
+import com.dondondevops.inventory.model.Reservation;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.NonNull;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.EnhancedGlobalSecondaryIndex;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+/**
+ * Reservation holds. Every write here is meant for the transaction that moves the product's
+ * held units with it, so the held count on a product is always the sum of its holds. Settled
+ * reservations expire through DynamoDB TTL after {@code inventory.reservations.retention};
+ * holds themselves have no TTL, so a hold is only ever removed by settling it.
+ */
+@Requires(beans = { DynamoDbClient.class, DynamoDbEnhancedClient.class })
+@Singleton
+public class ReservationRepository {
+
+    static final String TABLE_NAME = "InventoryReservation";
+    private static final String RESERVATION_ID = "reservationId";
+    private static final String STATUS = "status";
+    private static final String HELD = "held";
+    private static final String SETTLED_AT = "settledAt";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    private static final InstantZConverter INSTANT_CONVERTER = new InstantZConverter();
+
+    /** The mapping the annotations on {@link Reservation} describe, without bean reflection. */
+    static final TableSchema<Reservation> TABLE_SCHEMA = StaticTableSchema.builder(Reservation.class)
+        .newItemSupplier(Reservation::new)
+        .addAttribute(UUID.class, a -> a.name(RESERVATION_ID)
+            .getter(Reservation::getReservationId)
+            .setter(Reservation::setReservationId)
+            .tags(primaryPartitionKey()))
+        .addAttribute(UUID.class, a -> a.name("productId")
+            .getter(Reservation::getProductId)
+            .setter(Reservation::setProductId))
+        .addAttribute(Integer.class, a -> a.name("quantity")
+            .getter(Reservation::getQuantity)
+            .setter(Reservation::setQuantity))
+        .addAttribute(Reservation.Status.class, a -> a.name(STATUS)
+            .getter(Reservation::getStatus)
+            .setter(Reservation::setStatus))
+        .addAttribute(String.class, a -> a.name(HELD)
+            .getter(Reservation::getHeld)
+            .setter(Reservation::setHeld)
+            .tags(secondaryPartitionKey(Reservation.HELD_INDEX)))
+        .addAttribute(Instant.class, a -> a.name("createdAt")
+            .getter(Reservation::getCreatedAt)
+            .setter(Reservation::setCreatedAt)
+            .attributeConverter(INSTANT_CONVERTER))
+        .addAttribute(Instant.class, a -> a.name("holdUntil")
+            .getter(Reservation::getHoldUntil)
+            .setter(Reservation::setHoldUntil)
+            .attributeConverter(INSTANT_CONVERTER)
+            .tags(secondarySortKey(Reservation.HELD_INDEX)))
+        .addAttribute(Instant.class, a -> a.name(SETTLED_AT)
+            .getter(Reservation::getSettledAt)
+            .setter(Reservation::setSettledAt)
+            .attributeConverter(INSTANT_CONVERTER))
+        .addAttribute(Long.class, a -> a.name(EXPIRES_AT)
+            .getter(Reservation::getExpiresAt)
+            .setter(Reservation::setExpiresAt))
+        .build();
+
+    private DynamoDbClient client;
+
+    private DynamoDbTable<Reservation> table;
+
+    private Duration retention;
+
+    @Inject
+    public ReservationRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient,
+            @Value("${inventory.reservations.retention:7d}") Duration retention) {
+        this.client = client;
+        this.table = enhancedClient.table(TABLE_NAME, TABLE_SCHEMA);
+        this.retention = retention;
+        initTable();
+    }
+
+    private void initTable() {
+        boolean created = TableBootstrap.createIfMissing(client, table, CreateTableEnhancedRequest.builder()
+            .globalSecondaryIndices(EnhancedGlobalSecondaryIndex.builder()
+                .indexName(Reservation.HELD_INDEX)
+                .projection(p -> p.projectionType(ProjectionType.ALL))
+                .build())
+            .build());
+        if (created) {
+            // Settled reservations then stay until removed by hand if this fails; holds are unaffected
+            TableBootstrap.enableTimeToLive(client, TABLE_NAME, EXPIRES_AT);
+        }
+    }
+
+    public Optional<Reservation> get(UUID id) {
+        return Optional.ofNullable(table.getItem(r -> r.key(Key.builder().partitionValue(id.toString()).build())
+            .consistentRead(true)));
+    }
+
+    /**
+     * Returns the write that stores a new hold.
+     */
+    public TransactWriteItem put(Reservation reservation) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(TABLE_NAME)
+                .item(table.tableSchema().itemToMap(reservation, true))
+                .conditionExpression("attribute_not_exists(#id)")
+                .expressionAttributeNames(Map.of("#id", RESERVATION_ID))
+                .build())
+            .build();
+    }
+
+    /**
+     * Returns the write that settles a hold as {@code status}, failing the transaction if it
+     * was settled by someone else first.
+     */
+    public TransactWriteItem settle(Reservation reservation, Reservation.Status status, Instant now) {
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(RESERVATION_ID, AttributeValue.fromS(reservation.getReservationId().toString())))
+                .updateExpression("SET #status = :status, #settledAt = :now, #expiresAt = :expiresAt REMOVE #held")
+                .conditionExpression("#status = :held")
+                .expressionAttributeNames(Map.of(
+                    "#status", STATUS, "#settledAt", SETTLED_AT, "#expiresAt", EXPIRES_AT, "#held", HELD))
+                .expressionAttributeValues(Map.of(
+                    ":status", AttributeValue.fromS(status.name()),
+                    ":held", AttributeValue.fromS(Reservation.Status.HELD.name()),
+                    ":now", INSTANT_CONVERTER.transformFrom(now),
+                    ":expiresAt", AttributeValue.fromN(Long.toString(now.plus(retention).getEpochSecond()))))
+                .build())
+            .build();
+    }
+
+    /**
+     * Reads up to {@code limit} holds whose deadline passed before {@code now}, oldest first.
+     */
+    public List<Reservation> lapsed(Instant now, int limit) {
+        return table.index(Reservation.HELD_INDEX)
+            .query(r -> r.queryConditional(QueryConditional.sortLessThan(k -> k
+                    .partitionValue(Reservation.HELD_MARKER)
+                    .sortValue(INSTANT_CONVERTER.transformFrom(now).s())))
+                .limit(limit))
+            .iterator().next().items();
+    }
+}
@@ -0,0 +1,139 @@
+package com.dondondevops.inventory.repository;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.dondondevops.inventory.model.Product;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+
+/**
+ * A DynamoDB parallel scan. Each segment is scanned page by page on its own virtual thread and
+ * pushes its items into a bounded buffer that this iterator drains, so segments only run ahead
+ * of the consumer by the size of the buffer. Closing the scan interrupts any running segment.
+ */
+final class SegmentedScan implements Iterator<Product>, AutoCloseable {
+
+    private static final Object SEGMENT_DONE = new Object();
+
+    private final BlockingQueue<Object> buffer;
+
+    private final ExecutorService executor;
+
+    private int runningSegments;
+
+    private Product next;
+
+    SegmentedScan(DynamoDbTable<Product> table, int totalSegments, int bufferSize, MeterRegistry meterRegistry) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.runningSegments = totalSegments;
+
+        for (int segment = 0; segment < totalSegments; segment++) {
+            int current = segment;
+            executor.submit(() -> scanSegment(table, current, totalSegments, meterRegistry));
+        }
+    }
+
+    private void scanSegment(DynamoDbTable<Product> table, int segment, int totalSegments,
+            MeterRegistry meterRegistry) {
+        Tags tags = Tags.of("segment", Integer.toString(segment), "totalSegments", Integer.toString(totalSegments));
+        Counter pages = meterRegistry.counter("inventory.scan.segment.pages", tags);
+        Counter items = meterRegistry.counter("inventory.scan.segment.items", tags);
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        try {
+            ScanEnhancedRequest request = ScanEnhancedRequest.builder()
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .build();
+
+            for (Page<Product> page : table.scan(request)) {
+                pages.increment();
+                for (Product product : page.items()) {
+                    buffer.put(product);
+                    items.increment();
+                }
+            }
+            buffer.put(SEGMENT_DONE);
+        } catch (InterruptedException e) {
+            // The consumer closed the scan early
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            meterRegistry.counter("inventory.scan.segment.failures", tags).increment();
+            try {
+                buffer.put(new SegmentFailure(segment, e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("inventory.scan.segment.duration", tags));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && runningSegments > 0) {
+            Object element;
+            try {
+                element = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while waiting for scan results", e);
+            }
+
+            if (element == SEGMENT_DONE) {
+                runningSegments--;
+            } else if (element instanceof SegmentFailure failure) {
+                close();
+                throw new IllegalStateException("Scan of segment " + failure.segment + " failed", failure.cause);
+            } else {
+                next = (Product) element;
+            }
+        }
+
+        if (next == null) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Product next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Product product = next;
+        next = null;
+        return product;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static class SegmentFailure {
+
+        private final int segment;
+
+        private final RuntimeException cause;
+
+        SegmentFailure(int segment, RuntimeException cause) {
+            this.segment = segment;
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.dondondevops.inventory.repository;
+
+import java.util.Arrays;
+
+/**
+ * The stock of a sharded product as read from its shard items: the units free to sell on each
+ * shard, and the units held by reservations, which are kept apart from the shards.
+ */
+final class ShardedStock {
+
+    private final int[] shards;
+
+    private final int held;
+
+    ShardedStock(int[] shards, int held) {
+        this.shards = shards;
+        this.held = held;
+    }
+
+    /**
+     * Units free to sell per shard index; shards that were not read count as empty.
+     */
+    int[] getShards() {
+        return shards;
+    }
+
+    int getHeld() {
+        return held;
+    }
+
+    /**
+     * Units free to sell, over all shards.
+     */
+    int free() {
+        return Arrays.stream(shards).sum();
+    }
+
+    /**
+     * The product's stock: the free units and the held ones.
+     */
+    int total() {
+        return free() + held;
+    }
+}
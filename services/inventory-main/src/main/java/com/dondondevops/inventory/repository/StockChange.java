@@ -0,0 +1,27 @@
+package com.dondondevops.inventory.repository;
+
+import com.dondondevops.inventory.model.Product;
+
+/**
+ * Result of an atomic stock update: the item as written by DynamoDB and the
+ * stock level it held immediately before the update was applied.
+ */
+public class StockChange {
+
+    private final Product product;
+
+    private final int previousStock;
+
+    public StockChange(Product product, int previousStock) {
+        this.product = product;
+        this.previousStock = previousStock;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public int getPreviousStock() {
+        return previousStock;
+    }
+}
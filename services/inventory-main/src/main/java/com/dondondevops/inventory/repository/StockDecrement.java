@@ -0,0 +1,151 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.model.Product;
+
+import io.micronaut.core.annotation.Nullable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+/**
+ * Reduction of one product's stock in a single conditional UpdateItem, without reading the
+ * product first. DynamoDB adds the negative quantity only while the stock covers it, so
+ * concurrent reductions of a hot product neither lose updates nor oversell, and none of them
+ * fails for having raced another. The product comes back as written, and its version moves on
+ * like on every other write, so a write based on an earlier read fails afterwards.
+ *
+ * The sparse low-stock marker is set in the same write. A condition cannot do arithmetic, so
+ * the request is built for an {@link Expected expected} threshold and side of it: it only
+ * applies if the product has that threshold and the stock left is on that side, which are
+ * compared against constants. A request built for the wrong ones fails with the item as it
+ * was, and is built again from that item. The low-stock event is left to the product stream,
+ * which sees the stock before and after the change.
+ *
+ * The condition cannot subtract held units from the stock, nor sum stock shards, so it only
+ * holds for products with neither; the others are reduced by a {@link StockTransaction}.
+ */
+final class StockDecrement {
+
+    /**
+     * The low-stock threshold a reduction expects the product to have, null for the default, and
+     * whether it expects the stock left to be below it.
+     */
+    record Expected(@Nullable Integer threshold, boolean low) {
+
+        /** What to expect of a product nothing is known about: the default threshold, not crossed. */
+        static final Expected UNKNOWN = new Expected(null, false);
+
+        /**
+         * What to expect of {@code product}, as last seen, when taking {@code quantity} units off.
+         */
+        static Expected of(Product product, int quantity) {
+            return new Expected(product.getLowStockThreshold(),
+                product.getStock() - quantity < product.lowStockThresholdOrDefault());
+        }
+    }
+
+    private StockDecrement() {}
+
+    static UpdateItemRequest request(UUID id, int quantity, Expected expected, Instant now, ProductFormat format) {
+        Map<String, String> names = new HashMap<>(Map.of(
+            "#id", ProductRepository.PRODUCT_ID,
+            "#stock", ProductRepository.STOCK,
+            "#version", ProductRepository.VERSION,
+            "#updatedAt", format.updatedAt,
+            "#otherUpdatedAt", format.other().updatedAt,
+            "#stockShards", format.stockShards,
+            "#otherStockShards", format.other().stockShards,
+            "#held", format.held,
+            "#otherHeld", format.other().held));
+        names.put("#threshold", format.lowStockThreshold);
+        names.put("#otherThreshold", format.other().lowStockThreshold);
+        Map<String, AttributeValue> values = new HashMap<>(Map.of(
+            ":negQuantity", AttributeValue.fromN(Integer.toString(-quantity)),
+            ":quantity", AttributeValue.fromN(Integer.toString(quantity)),
+            ":one", AttributeValue.fromN("1"),
+            ":zero", AttributeValue.fromN("0"),
+            ":now", format.timestamp(now),
+            // The least stock that still leaves the threshold once the quantity is taken off
+            ":boundary", AttributeValue.fromN(Integer.toString(
+                quantity + Product.lowStockThresholdOrDefault(expected.threshold())))));
+
+        String threshold;
+        if (expected.threshold() == null) {
+            threshold = "attribute_not_exists(#threshold) AND attribute_not_exists(#otherThreshold)";
+        } else {
+            threshold = "(#threshold = :threshold OR #otherThreshold = :threshold)";
+            values.put(":threshold", AttributeValue.fromN(Integer.toString(expected.threshold())));
+        }
+        String update = "ADD #stock :negQuantity, #version :one SET #updatedAt = :now";
+        if (expected.low()) {
+            update += ", #lowStock = :lowStock";
+            names.put("#lowStock", ProductRepository.LOW_STOCK);
+            values.put(":lowStock", AttributeValue.fromS(Product.LOW_STOCK_MARKER));
+        }
+
+        return UpdateItemRequest.builder()
+            .tableName(ProductRepository.TABLE_NAME)
+            .key(ProductRepository.keyOf(id))
+            .updateExpression(update + " REMOVE #otherUpdatedAt")
+            .conditionExpression("attribute_exists(#id) AND #stock >= :quantity"
+                + " AND attribute_not_exists(#stockShards) AND attribute_not_exists(#otherStockShards)"
+                + " AND (attribute_not_exists(#held) OR #held = :zero)"
+                + " AND (attribute_not_exists(#otherHeld) OR #otherHeld = :zero)"
+                + " AND " + threshold
+                + (expected.low() ? " AND #stock < :boundary" : " AND #stock >= :boundary"))
+            .expressionAttributeNames(names)
+            .expressionAttributeValues(values)
+            .returnValues(ReturnValue.ALL_NEW)
+            .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+            .build();
+    }
+
+    /**
+     * The change a reduction of {@code quantity} made, from the item it returned.
+     */
+    static StockChange change(TableSchema<Product> schema, Map<String, AttributeValue> written, int quantity) {
+        Product product = schema.mapToItem(written);
+        return new StockChange(product, product.getStock() + quantity);
+    }
+
+    /**
+     * Why a reduction's condition failed, from the item as it was then.
+     *
+     * @param item the item returned with the failed condition, empty if there was none
+     * @return the exception to throw, or nothing if the product must be reduced by a transaction
+     *         or the request expected the wrong threshold; see {@link #transactional}
+     */
+    static Optional<RuntimeException> failure(UUID id, int quantity, Map<String, AttributeValue> item,
+            ProductFormat format) {
+        if (item.isEmpty()) {
+            return Optional.of(new UUIDNotFoundException(id));
+        }
+        if (transactional(item, format) || number(item, ProductRepository.STOCK) >= quantity) {
+            return Optional.empty();
+        }
+        return Optional.of(new InsufficientStockException(id, quantity, number(item, ProductRepository.STOCK)));
+    }
+
+    /**
+     * Whether the item has held units or sharded stock, and must be reduced by a transaction.
+     */
+    static boolean transactional(Map<String, AttributeValue> item, ProductFormat format) {
+        return item.containsKey(format.stockShards) || item.containsKey(format.other().stockShards)
+            || number(item, format.held) != 0 || number(item, format.other().held) != 0;
+    }
+
+    private static int number(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.n() == null ? 0 : Integer.parseInt(value.n());
+    }
+}
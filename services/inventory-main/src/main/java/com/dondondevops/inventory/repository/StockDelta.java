@@ -0,0 +1,53 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Instant;
+
+/**
+ * Change to apply to one product's stock: units to add (negative to take stock off),
+ * optionally a new expiry date, and units to add to or take off the product's reservation
+ * holds.
+ */
+public class StockDelta {
+
+    private final int delta;
+
+    private final Instant expiryDate;
+
+    private final int heldDelta;
+
+    public StockDelta(int delta, Instant expiryDate) {
+        this(delta, expiryDate, 0);
+    }
+
+    public StockDelta(int delta, Instant expiryDate, int heldDelta) {
+        this.delta = delta;
+        this.expiryDate = expiryDate;
+        this.heldDelta = heldDelta;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public Instant getExpiryDate() {
+        return expiryDate;
+    }
+
+    public int getHeldDelta() {
+        return heldDelta;
+    }
+
+    /**
+     * Change in the units available to sell: stock not held by a reservation.
+     */
+    public int getAvailableDelta() {
+        return delta - heldDelta;
+    }
+
+    /**
+     * Units this change is about, for reporting.
+     */
+    public int getQuantity() {
+        return Math.max(Math.abs(delta), Math.abs(heldDelta));
+    }
+}
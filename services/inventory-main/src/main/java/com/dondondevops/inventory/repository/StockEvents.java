@@ -0,0 +1,18 @@
+package com.dondondevops.inventory.repository;
+
+import java.util.List;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+
+/**
+ * Describes a stock change as the events to publish for it. Called with the changes a
+ * transaction is about to commit, possibly more than once when the transaction is retried;
+ * the messages returned are written to the outbox in that same transaction.
+ */
+@FunctionalInterface
+public interface StockEvents {
+
+    StockEvents NONE = changes -> List.of();
+
+    List<OutboxMessage> of(List<StockChange> changes);
+}
@@ -0,0 +1,15 @@
+package com.dondondevops.inventory.repository;
+
+import java.util.List;
+
+import com.dondondevops.inventory.model.IdempotencyRecord;
+
+/**
+ * Describes the response to a stock change as the idempotency record to store with it.
+ * Called with the changes a transaction is about to commit, possibly more than once.
+ */
+@FunctionalInterface
+public interface StockReceipt {
+
+    IdempotencyRecord of(List<StockChange> changes);
+}
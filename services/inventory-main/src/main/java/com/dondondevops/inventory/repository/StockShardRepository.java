@@ -0,0 +1,347 @@
+package com.dondondevops.inventory.repository;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.dondondevops.inventory.model.StockShard;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.NonNull;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.MappedTableResource;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactGetItemsEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+/**
+ * Stock shards of hot products. The shards of a product are read together with one
+ * BatchGetItem, alongside the item of its held units, and every write to them is conditional,
+ * so a shard never goes negative and a write racing a reshard fails instead of resurrecting a
+ * removed shard. A single reduction is one UpdateItem on one shard; the other writes are meant
+ * for a stock transaction.
+ */
+@Requires(beans = { DynamoDbClient.class, DynamoDbEnhancedClient.class })
+@Singleton
+public class StockShardRepository {
+
+    static final String TABLE_NAME = "ProductStockShard";
+    private static final String SHARD_ID = "shardId";
+    private static final String STOCK = "stock";
+    private static final String PRODUCT_ID = "productId";
+
+    /** The mapping the annotations on {@link StockShard} describe, without bean reflection. */
+    static final TableSchema<StockShard> TABLE_SCHEMA = StaticTableSchema.builder(StockShard.class)
+        .newItemSupplier(StockShard::new)
+        .addAttribute(String.class, a -> a.name(SHARD_ID)
+            .getter(StockShard::getShardId)
+            .setter(StockShard::setShardId)
+            .tags(primaryPartitionKey()))
+        .addAttribute(UUID.class, a -> a.name(PRODUCT_ID)
+            .getter(StockShard::getProductId)
+            .setter(StockShard::setProductId))
+        .addAttribute(Integer.class, a -> a.name(STOCK)
+            .getter(StockShard::getStock)
+            .setter(StockShard::setStock))
+        .build();
+
+    private DynamoDbClient client;
+
+    private DynamoDbEnhancedClient enhancedClient;
+
+    private DynamoDbTable<StockShard> table;
+
+    @Inject
+    public StockShardRepository(@NonNull DynamoDbClient client, @NonNull DynamoDbEnhancedClient enhancedClient) {
+        this.client = client;
+        this.enhancedClient = enhancedClient;
+        this.table = enhancedClient.table(TABLE_NAME, TABLE_SCHEMA);
+        initTable();
+    }
+
+    private void initTable() {
+        TableBootstrap.createIfMissing(client, table);
+    }
+
+    /**
+     * Reads the shards and held units of several products with BatchGetItem.
+     *
+     * @param shardCounts number of shards per product
+     * @return the stock per product; shards that were not returned count as empty
+     */
+    Map<UUID, ShardedStock> read(Map<UUID, Integer> shardCounts, boolean consistentRead) {
+        if (shardCounts.isEmpty()) {
+            return Map.of();
+        }
+        List<StockShard> shards = new ArrayList<>();
+        for (ReadBatch batch : readBatches(table, shardCounts, consistentRead)) {
+            enhancedClient.batchGetItem(r -> r.readBatches(batch)).resultsForTable(table).forEach(shards::add);
+        }
+        return stocks(shardCounts, shards);
+    }
+
+    /**
+     * Reads all shards and the held units of a product as of a single point in time, with
+     * TransactGetItems, so that their sum is a stock level the product really had.
+     */
+    ShardedStock snapshot(UUID id, int shardCount) {
+        TransactGetItemsEnhancedRequest.Builder request = TransactGetItemsEnhancedRequest.builder();
+        for (int i = 0; i < shardCount; i++) {
+            request.addGetItem(table, key(id, i));
+        }
+        request.addGetItem(table, heldKey(id));
+        List<StockShard> shards = new ArrayList<>();
+        enhancedClient.transactGetItems(request.build()).forEach(document -> {
+            StockShard shard = document.getItem(table);
+            if (shard != null) {
+                shards.add(shard);
+            }
+        });
+        return stocks(Map.of(id, shardCount), shards).get(id);
+    }
+
+    /**
+     * Removes every shard, and the held units, of a product that is being deleted.
+     */
+    public void removeAll(UUID id, int shardCount) {
+        for (int i = 0; i < shardCount; i++) {
+            table.deleteItem(key(id, i));
+        }
+        table.deleteItem(heldKey(id));
+    }
+
+    /**
+     * Products that currently have shards, read with a scan of the shard table. Only hot
+     * products are sharded, so the table stays small.
+     */
+    public Set<UUID> shardedProducts() {
+        Set<UUID> ids = new LinkedHashSet<>();
+        table.scan(r -> r.attributesToProject(PRODUCT_ID))
+            .items()
+            .forEach(shard -> ids.add(shard.getProductId()));
+        return ids;
+    }
+
+    static List<ReadBatch> readBatches(MappedTableResource<StockShard> table, Map<UUID, Integer> shardCounts,
+            boolean consistentRead) {
+        List<Key> keys = new ArrayList<>();
+        shardCounts.forEach((id, count) -> {
+            for (int i = 0; i < count; i++) {
+                keys.add(key(id, i));
+            }
+            keys.add(heldKey(id));
+        });
+
+        List<ReadBatch> batches = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += ProductRepository.MAX_TRANSACTION_ITEMS) {
+            ReadBatch.Builder<StockShard> batch = ReadBatch.builder(StockShard.class).mappedTableResource(table);
+            keys.subList(from, Math.min(from + ProductRepository.MAX_TRANSACTION_ITEMS, keys.size()))
+                .forEach(key -> batch.addGetItem(GetItemEnhancedRequest.builder()
+                    .key(key)
+                    .consistentRead(consistentRead)
+                    .build()));
+            batches.add(batch.build());
+        }
+        return batches;
+    }
+
+    static Map<UUID, ShardedStock> stocks(Map<UUID, Integer> shardCounts, Collection<StockShard> shards) {
+        Map<UUID, int[]> free = new HashMap<>();
+        Map<UUID, Integer> held = new HashMap<>();
+        shardCounts.forEach((id, count) -> free.put(id, new int[count]));
+        for (StockShard shard : shards) {
+            int[] product = free.get(shard.getProductId());
+            if (product == null) {
+                continue;
+            }
+            if (shard.isHeld()) {
+                held.put(shard.getProductId(), shard.getStock());
+            } else if (shard.getIndex() < product.length) {
+                product[shard.getIndex()] = shard.getStock();
+            }
+        }
+        Map<UUID, ShardedStock> stocks = new HashMap<>();
+        free.forEach((id, product) -> stocks.put(id, new ShardedStock(product, held.getOrDefault(id, 0))));
+        return stocks;
+    }
+
+    /**
+     * Takes {@code quantity} units off a shard, only if it still holds that many.
+     */
+    static TransactWriteItem take(UUID id, int index, int quantity) {
+        return update(StockShard.shardId(id, index), "SET #stock = #stock - :quantity", "#stock >= :quantity",
+            quantity);
+    }
+
+    /**
+     * The same as {@link #take}, as a request of its own: a single reduction of a sharded
+     * product, which neither reads nor writes any other item.
+     */
+    static UpdateItemRequest takeRequest(UUID id, int index, int quantity) {
+        Update take = take(id, index, quantity).update();
+        return UpdateItemRequest.builder()
+            .tableName(take.tableName())
+            .key(take.key())
+            .updateExpression(take.updateExpression())
+            .conditionExpression(take.conditionExpression())
+            .expressionAttributeNames(take.expressionAttributeNames())
+            .expressionAttributeValues(take.expressionAttributeValues())
+            .build();
+    }
+
+    /**
+     * Adds {@code quantity} units to a shard, only if the shard still exists.
+     */
+    static TransactWriteItem add(UUID id, int index, int quantity) {
+        return update(StockShard.shardId(id, index), "SET #stock = #stock + :quantity", "attribute_exists(#stock)",
+            quantity);
+    }
+
+    /**
+     * Adds {@code quantity} units to the held units of a product, creating their item on the
+     * first hold. Always written with the takes off the shards the units came from.
+     */
+    static TransactWriteItem hold(UUID id, int quantity) {
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(SHARD_ID, AttributeValue.fromS(StockShard.heldId(id))))
+                .updateExpression("SET #productId = :productId ADD #stock :quantity")
+                .expressionAttributeNames(Map.of("#productId", PRODUCT_ID, "#stock", STOCK))
+                .expressionAttributeValues(Map.of(
+                    ":productId", AttributeValue.fromS(id.toString()),
+                    ":quantity", AttributeValue.fromN(Integer.toString(quantity))))
+                .build())
+            .build();
+    }
+
+    /**
+     * Takes {@code quantity} units off the held units of a product, only if that many are held.
+     */
+    static TransactWriteItem unhold(UUID id, int quantity) {
+        return update(StockShard.heldId(id), "SET #stock = #stock - :quantity", "#stock >= :quantity", quantity);
+    }
+
+    /**
+     * Sets a shard's stock outright, either creating it or replacing the value {@code expected}
+     * read before.
+     */
+    static TransactWriteItem replace(UUID id, int index, int stock, @Nullable Integer expected) {
+        Put.Builder put = Put.builder()
+            .tableName(TABLE_NAME)
+            .item(Map.of(
+                SHARD_ID, AttributeValue.fromS(StockShard.shardId(id, index)),
+                PRODUCT_ID, AttributeValue.fromS(id.toString()),
+                STOCK, AttributeValue.fromN(Integer.toString(stock))));
+        if (expected == null) {
+            put.conditionExpression("attribute_not_exists(#shardId)")
+                .expressionAttributeNames(Map.of("#shardId", SHARD_ID));
+        } else {
+            put.conditionExpression("#stock = :expected")
+                .expressionAttributeNames(Map.of("#stock", STOCK))
+                .expressionAttributeValues(Map.of(":expected", AttributeValue.fromN(Integer.toString(expected))));
+        }
+        return TransactWriteItem.builder().put(put.build()).build();
+    }
+
+    /**
+     * Removes a shard, only if it still holds the stock {@code expected} read before.
+     */
+    static TransactWriteItem remove(UUID id, int index, int expected) {
+        return TransactWriteItem.builder()
+            .delete(Delete.builder()
+                .tableName(TABLE_NAME)
+                .key(keyOf(id, index))
+                .conditionExpression("#stock = :expected")
+                .expressionAttributeNames(Map.of("#stock", STOCK))
+                .expressionAttributeValues(Map.of(":expected", AttributeValue.fromN(Integer.toString(expected))))
+                .build())
+            .build();
+    }
+
+    /**
+     * Sets the held units of a product outright, replacing the value {@code expected} read
+     * before, which is 0 when their item does not exist.
+     */
+    static TransactWriteItem replaceHeld(UUID id, int held, int expected) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(TABLE_NAME)
+                .item(Map.of(
+                    SHARD_ID, AttributeValue.fromS(StockShard.heldId(id)),
+                    PRODUCT_ID, AttributeValue.fromS(id.toString()),
+                    STOCK, AttributeValue.fromN(Integer.toString(held))))
+                .conditionExpression(heldCondition(expected))
+                .expressionAttributeNames(Map.of("#shardId", SHARD_ID, "#stock", STOCK))
+                .expressionAttributeValues(Map.of(":expected", AttributeValue.fromN(Integer.toString(expected))))
+                .build())
+            .build();
+    }
+
+    /**
+     * Removes the held units of a product whose stock goes back onto the product, only if they
+     * are still the {@code expected} read before.
+     */
+    static TransactWriteItem removeHeld(UUID id, int expected) {
+        return TransactWriteItem.builder()
+            .delete(Delete.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(SHARD_ID, AttributeValue.fromS(StockShard.heldId(id))))
+                .conditionExpression(heldCondition(expected))
+                .expressionAttributeNames(Map.of("#shardId", SHARD_ID, "#stock", STOCK))
+                .expressionAttributeValues(Map.of(":expected", AttributeValue.fromN(Integer.toString(expected))))
+                .build())
+            .build();
+    }
+
+    private static String heldCondition(int expected) {
+        // The item only exists once something was held
+        return expected == 0 ? "attribute_not_exists(#shardId) OR #stock = :expected" : "#stock = :expected";
+    }
+
+    private static TransactWriteItem update(String shardId, String expression, String condition, int quantity) {
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(SHARD_ID, AttributeValue.fromS(shardId)))
+                .updateExpression(expression)
+                .conditionExpression(condition)
+                .expressionAttributeNames(Map.of("#stock", STOCK))
+                .expressionAttributeValues(Map.of(":quantity", AttributeValue.fromN(Integer.toString(quantity))))
+                .build())
+            .build();
+    }
+
+    private static Key key(UUID id, int index) {
+        return Key.builder().partitionValue(StockShard.shardId(id, index)).build();
+    }
+
+    private static Key heldKey(UUID id) {
+        return Key.builder().partitionValue(StockShard.heldId(id)).build();
+    }
+
+    private static Map<String, AttributeValue> keyOf(UUID id, int index) {
+        return Map.of(SHARD_ID, AttributeValue.fromS(StockShard.shardId(id, index)));
+    }
+}
@@ -0,0 +1,348 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.StockTransactionCancelledException;
+import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.exception.WriteConflictException;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ReduceStockResult;
+
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+/**
+ * One attempt at applying stock deltas to products just read, as a single TransactWriteItems
+ * that can also carry the outbox record describing the change. Shared by the blocking and
+ * the async repository.
+ */
+final class StockTransaction {
+
+    private static final String CONCURRENT_CHANGE = "Stock changed concurrently, try again.";
+
+    private static final String TOO_MANY_SHARDS = "Stock is spread over too many shards for one transaction, try again.";
+
+    private final List<UUID> ids;
+
+    private final Map<UUID, StockDelta> deltas;
+
+    private final List<StockChange> changes = new ArrayList<>();
+
+    private final List<TransactWriteItem> writes = new ArrayList<>();
+
+    /** Product each of {@link #writes} belongs to, to map cancellation reasons back. */
+    private final List<UUID> owners = new ArrayList<>();
+
+    private int receiptIndex = -1;
+
+    StockTransaction(Map<UUID, StockDelta> deltas, Map<UUID, Product> current, Instant now) {
+        this(deltas, current, Map.of(), now, ProductFormat.LEGACY);
+    }
+
+    /**
+     * @param deltas  change per product, in the order results are reported
+     * @param current the products as just read; missing products are absent
+     * @param shards  stock of the products in {@code current} that are sharded, as read from
+     *                their shards
+     * @param format  format product attributes are written in
+     * @throws StockTransactionCancelledException if a product is missing or short of stock,
+     *         without anything having been written
+     */
+    StockTransaction(Map<UUID, StockDelta> deltas, Map<UUID, Product> current, Map<UUID, ShardedStock> shards,
+            Instant now, ProductFormat format) {
+        this.ids = new ArrayList<>(deltas.keySet());
+        this.deltas = deltas;
+
+        List<ReduceStockResult> rejected = new ArrayList<>();
+        boolean valid = true;
+        for (UUID id : ids) {
+            Product product = current.get(id);
+            StockDelta delta = deltas.get(id);
+            int quantity = delta.getQuantity();
+            if (product == null) {
+                rejected.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.NOT_FOUND, null, null));
+                valid = false;
+            } else if (delta.getAvailableDelta() < 0
+                    && available(product, shards) + delta.getAvailableDelta() < 0) {
+                // Units held by reservations cannot be taken by anyone else
+                rejected.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.INSUFFICIENT_STOCK,
+                    available(product, shards), null));
+                valid = false;
+            } else {
+                rejected.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.ROLLED_BACK, null, null));
+            }
+        }
+        if (!valid) {
+            throw new StockTransactionCancelledException(rejected);
+        }
+
+        Instant updatedAt = now.truncatedTo(ChronoUnit.SECONDS);
+        for (UUID id : ids) {
+            Product product = current.get(id);
+            StockDelta delta = deltas.get(id);
+            int previousStock = stock(product, shards);
+
+            Product updated = product.copy();
+            updated.setStock(previousStock + delta.getDelta());
+            updated.setHeld(held(product, shards) + delta.getHeldDelta());
+            updated.setUpdatedAt(updatedAt);
+            if (delta.getExpiryDate() != null) {
+                updated.setExpiryDate(delta.getExpiryDate().truncatedTo(ChronoUnit.SECONDS));
+            }
+
+            if (product.getStockShards() == null) {
+                updated.setVersion(StockUpdate.nextVersion(product.getVersion()));
+                add(id, StockUpdate.of(product, delta, now, format).toTransactWriteItem(id));
+            } else {
+                // Free units move on the shards and held ones on their own item, each write
+                // conditional on what it takes, so the product item is only written for the expiry
+                if (delta.getAvailableDelta() != 0) {
+                    addShardWrites(id, shardsOf(product, shards).getShards(), delta.getAvailableDelta());
+                }
+                if (delta.getHeldDelta() > 0) {
+                    add(id, StockShardRepository.hold(id, delta.getHeldDelta()));
+                } else if (delta.getHeldDelta() < 0) {
+                    add(id, StockShardRepository.unhold(id, -delta.getHeldDelta()));
+                }
+                if (delta.getExpiryDate() != null) {
+                    updated.setVersion(StockUpdate.nextVersion(product.getVersion()));
+                    add(id, StockUpdate.of(product, new StockDelta(0, delta.getExpiryDate()), now, format)
+                        .toTransactWriteItem(id));
+                }
+            }
+            changes.add(new StockChange(updated, previousStock));
+        }
+
+        // Leave room for the outbox record and the idempotency receipt
+        if (writes.size() > ProductRepository.MAX_BATCH_PRODUCTS) {
+            throw new StockTransactionCancelledException(ids.stream()
+                .map(id -> new ReduceStockResult(id, deltas.get(id).getQuantity(),
+                    ReduceStockResult.Status.FAILED, null, TOO_MANY_SHARDS))
+                .toList());
+        }
+    }
+
+    private void add(UUID id, TransactWriteItem write) {
+        writes.add(write);
+        owners.add(id);
+    }
+
+    /**
+     * Takes a decrement from one shard picked at random, falling back to the next shards when
+     * it holds too little, and puts an increment on the emptiest shard.
+     */
+    private void addShardWrites(UUID id, int[] stocks, int delta) {
+        int start = ThreadLocalRandom.current().nextInt(stocks.length);
+        if (delta >= 0) {
+            add(id, StockShardRepository.add(id, emptiestShard(stocks, start), delta));
+            return;
+        }
+        for (int[] take : shardTakes(stocks, -delta, start)) {
+            add(id, StockShardRepository.take(id, take[0], take[1]));
+        }
+    }
+
+    /**
+     * Shards to take {@code quantity} units from, as {@code [index, units]} pairs: the first
+     * shard from {@code start} on that holds enough, or else as many as it takes in turn.
+     */
+    static List<int[]> shardTakes(int[] stocks, int quantity, int start) {
+        for (int i = 0; i < stocks.length; i++) {
+            int index = (start + i) % stocks.length;
+            if (stocks[index] >= quantity) {
+                return List.of(new int[] { index, quantity });
+            }
+        }
+        List<int[]> takes = new ArrayList<>();
+        int remaining = quantity;
+        for (int i = 0; i < stocks.length && remaining > 0; i++) {
+            int index = (start + i) % stocks.length;
+            int units = Math.min(stocks[index], remaining);
+            if (units > 0) {
+                takes.add(new int[] { index, units });
+                remaining -= units;
+            }
+        }
+        return takes;
+    }
+
+    static int emptiestShard(int[] stocks, int start) {
+        int emptiest = start;
+        for (int i = 1; i < stocks.length; i++) {
+            int index = (start + i) % stocks.length;
+            if (stocks[index] < stocks[emptiest]) {
+                emptiest = index;
+            }
+        }
+        return emptiest;
+    }
+
+    private static int available(Product product, Map<UUID, ShardedStock> shards) {
+        return stock(product, shards) - held(product, shards);
+    }
+
+    private static int stock(Product product, Map<UUID, ShardedStock> shards) {
+        if (product.getStockShards() == null) {
+            return product.getStock();
+        }
+        return shardsOf(product, shards).total();
+    }
+
+    private static int held(Product product, Map<UUID, ShardedStock> shards) {
+        if (product.getStockShards() == null) {
+            return product.getHeld();
+        }
+        return shardsOf(product, shards).getHeld();
+    }
+
+    private static ShardedStock shardsOf(Product product, Map<UUID, ShardedStock> shards) {
+        // Shards that were not read count as empty; writes to them fail and are retried
+        return shards.getOrDefault(product.getProductID(),
+            new ShardedStock(new int[product.getStockShards()], 0));
+    }
+
+    /**
+     * The changes this transaction makes once committed, in the order of the deltas.
+     */
+    List<StockChange> getChanges() {
+        return changes;
+    }
+
+    List<Product> getUpdatedProducts() {
+        return changes.stream().map(StockChange::getProduct).toList();
+    }
+
+    TransactWriteItemsRequest toRequest(Optional<TransactWriteItem> outboxRecord, Optional<TransactWriteItem> receipt) {
+        return toRequest(List.of(), outboxRecord, receipt);
+    }
+
+    /**
+     * @param others writes on other tables that must commit with the stock change, such as a
+     *               reservation
+     */
+    TransactWriteItemsRequest toRequest(List<TransactWriteItem> others, Optional<TransactWriteItem> outboxRecord,
+            Optional<TransactWriteItem> receipt) {
+        List<TransactWriteItem> items = new ArrayList<>(writes);
+        items.addAll(others);
+        outboxRecord.ifPresent(items::add);
+        receiptIndex = receipt.isPresent() ? items.size() : -1;
+        receipt.ifPresent(items::add);
+        return TransactWriteItemsRequest.builder().transactItems(items).build();
+    }
+
+    /**
+     * True when the transaction was cancelled because its idempotency key had already been
+     * stored by a request that committed first.
+     */
+    boolean isDuplicate(TransactionCanceledException e) {
+        return receiptIndex >= 0 && e.hasCancellationReasons() && e.cancellationReasons().size() > receiptIndex
+            && "ConditionalCheckFailed".equals(e.cancellationReasons().get(receiptIndex).code());
+    }
+
+    /**
+     * True when DynamoDB cancelled the transaction only because products changed since they were
+     * read, so that a fresh attempt can succeed.
+     */
+    boolean isConflict(TransactionCanceledException e) {
+        return isConflictOnly(e);
+    }
+
+    /**
+     * True when every failed item of a cancelled transaction failed only because it changed
+     * since it was read.
+     */
+    static boolean isConflictOnly(TransactionCanceledException e) {
+        if (!e.hasCancellationReasons()) {
+            return false;
+        }
+        boolean conflict = false;
+        for (CancellationReason reason : e.cancellationReasons()) {
+            String code = reason.code();
+            if (isConflict(code)) {
+                conflict = true;
+            } else if (!"None".equals(code)) {
+                return false;
+            }
+        }
+        return conflict;
+    }
+
+    private static boolean isConflict(String code) {
+        return "ConditionalCheckFailed".equals(code) || "TransactionConflict".equals(code);
+    }
+
+    /**
+     * Products whose write failed because another writer got to them first.
+     */
+    List<UUID> conflicted(TransactionCanceledException e) {
+        List<CancellationReason> reasons = e.hasCancellationReasons() ? e.cancellationReasons() : List.of();
+        Set<UUID> conflicted = new LinkedHashSet<>();
+        for (int i = 0; i < owners.size() && i < reasons.size(); i++) {
+            if (isConflict(reasons.get(i).code())) {
+                conflicted.add(owners.get(i));
+            }
+        }
+        return new ArrayList<>(conflicted);
+    }
+
+    List<ReduceStockResult> cancellationResults(TransactionCanceledException e) {
+        List<CancellationReason> reasons = e.hasCancellationReasons() ? e.cancellationReasons() : List.of();
+        List<ReduceStockResult> results = new ArrayList<>();
+
+        for (UUID id : ids) {
+            int quantity = deltas.get(id).getQuantity();
+            // A product can own several writes when its stock is sharded; its worst reason counts
+            CancellationReason failure = null;
+            boolean unknown = false;
+            for (int i = 0; i < owners.size(); i++) {
+                if (!owners.get(i).equals(id)) {
+                    continue;
+                }
+                CancellationReason reason = i < reasons.size() ? reasons.get(i) : null;
+                if (reason == null) {
+                    unknown = true;
+                } else if (!"None".equals(reason.code()) && (failure == null || isConflict(failure.code()))) {
+                    failure = reason;
+                }
+            }
+
+            if (failure != null && isConflict(failure.code())) {
+                results.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.FAILED, null,
+                    CONCURRENT_CHANGE));
+            } else if (failure != null) {
+                results.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.FAILED, null,
+                    failure.code() + ": " + failure.message()));
+            } else if (unknown) {
+                results.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.FAILED, null, e.getMessage()));
+            } else {
+                results.add(new ReduceStockResult(id, quantity, ReduceStockResult.Status.ROLLED_BACK, null, null));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Turns the cancellation of a single-product change into the exception callers expect.
+     */
+    static RuntimeException singleProductFailure(UUID id, StockTransactionCancelledException e) {
+        ReduceStockResult result = e.getResults().get(0);
+        return switch (result.getStatus()) {
+            case NOT_FOUND -> new UUIDNotFoundException(id);
+            case INSUFFICIENT_STOCK -> new InsufficientStockException(id, result.getQuantity(), result.getStock());
+            case FAILED -> CONCURRENT_CHANGE.equals(result.getReason()) ? new WriteConflictException(id) : e;
+            default -> e;
+        };
+    }
+}
@@ -0,0 +1,159 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.dondondevops.inventory.model.InstantZConverter;
+import com.dondondevops.inventory.model.Product;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+/**
+ * Update of one product's stock from a value read just before. The write is conditioned on the
+ * product's version still being the one read and moves it on, so the new stock, whether the
+ * sparse low-stock attribute is set and whether the threshold was crossed are known exactly, and
+ * a whole-item write from a stale copy fails afterwards.
+ */
+final class StockUpdate {
+
+    private static final InstantZConverter INSTANT_CONVERTER = new InstantZConverter();
+
+    private final String expression;
+
+    private final String condition;
+
+    private final Map<String, String> names = new HashMap<>();
+
+    private final Map<String, AttributeValue> values = new HashMap<>();
+
+    private StockUpdate(Product expected, StockDelta delta, Instant now, ProductFormat format,
+            Optional<Integer> stockShards) {
+        int newStock = expected.getStock() + delta.getDelta();
+        Long version = expected.getVersion();
+
+        List<String> sets = new ArrayList<>(List.of(
+            "#stock = :stock", "#version = :nextVersion", "#updatedAt = :now"));
+        // An attribute set under one format's name is removed under the other's
+        List<String> removes = new ArrayList<>(List.of("#otherUpdatedAt"));
+        names.put("#stock", ProductRepository.STOCK);
+        names.put("#version", ProductRepository.VERSION);
+        names.put("#updatedAt", format.updatedAt);
+        names.put("#otherUpdatedAt", format.other().updatedAt);
+        names.put("#lowStock", ProductRepository.LOW_STOCK);
+        values.put(":stock", AttributeValue.fromN(Integer.toString(newStock)));
+        values.put(":nextVersion", AttributeValue.fromN(Long.toString(nextVersion(version))));
+        values.put(":now", format.timestamp(now));
+
+        condition = versionCondition(version, values);
+
+        if (delta.getHeldDelta() != 0) {
+            sets.add("#held = :held");
+            removes.add("#otherHeld");
+            names.put("#held", format.held);
+            names.put("#otherHeld", format.other().held);
+            values.put(":held", AttributeValue.fromN(Integer.toString(expected.getHeld() + delta.getHeldDelta())));
+        }
+        if (delta.getExpiryDate() != null) {
+            // The expiry index bucket moves with the date
+            sets.add("#expiryDate = :expiryDate");
+            sets.add("#expiryDay = :expiryDay");
+            names.put("#expiryDate", ProductRepository.EXPIRY_DATE);
+            names.put("#expiryDay", ProductRepository.EXPIRY_DAY);
+            values.put(":expiryDate", INSTANT_CONVERTER.transformFrom(delta.getExpiryDate()));
+            values.put(":expiryDay", AttributeValue.fromS(Product.expiryDayOf(delta.getExpiryDate())));
+        }
+        if (newStock < expected.lowStockThresholdOrDefault()) {
+            sets.add("#lowStock = :lowStock");
+            values.put(":lowStock", AttributeValue.fromS(Product.LOW_STOCK_MARKER));
+        } else {
+            removes.add("#lowStock");
+        }
+        stockShards.ifPresent(shards -> {
+            names.put("#stockShards", format.stockShards);
+            names.put("#otherStockShards", format.other().stockShards);
+            removes.add("#otherStockShards");
+            if (shards > 0) {
+                sets.add("#stockShards = :stockShards");
+                values.put(":stockShards", AttributeValue.fromN(Integer.toString(shards)));
+            } else {
+                removes.add("#stockShards");
+            }
+        });
+
+        this.expression = "SET " + String.join(", ", sets)
+            + (removes.isEmpty() ? "" : " REMOVE " + String.join(", ", removes));
+    }
+
+    /**
+     * @param expected the product as read before the write
+     * @param delta    change to apply
+     * @param now      value for {@code updatedAt}
+     * @param format   format product attributes are written in
+     */
+    static StockUpdate of(Product expected, StockDelta delta, Instant now, ProductFormat format) {
+        return new StockUpdate(expected, delta, now, format, Optional.empty());
+    }
+
+    /**
+     * Update that moves a product's stock to {@code stockShards} shards, or back onto the
+     * product when it is 0, setting the stock to the {@code total} it had and the units held on
+     * the product to {@code held}: none while it is sharded, since its shards keep them apart.
+     */
+    static StockUpdate resharded(Product expected, int total, int held, int stockShards, Instant now,
+            ProductFormat format) {
+        return new StockUpdate(expected, new StockDelta(total - expected.getStock(), null, held - expected.getHeld()),
+            now, format, Optional.of(stockShards));
+    }
+
+    private static String versionCondition(Long version, Map<String, AttributeValue> values) {
+        if (version == null) {
+            // Written before products were versioned; the first versioned write starts at 1
+            return "attribute_not_exists(#version)";
+        }
+        values.put(":version", AttributeValue.fromN(Long.toString(version)));
+        return "#version = :version";
+    }
+
+    /**
+     * Version a product read at {@code version} has once written, as the enhanced client numbers them.
+     */
+    static long nextVersion(Long version) {
+        return version == null ? 1 : version + 1;
+    }
+
+    TransactWriteItem toTransactWriteItem(UUID id) {
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(ProductRepository.TABLE_NAME)
+                .key(ProductRepository.keyOf(id))
+                .updateExpression(expression)
+                .conditionExpression(condition)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build())
+            .build();
+    }
+
+    String getExpression() {
+        return expression;
+    }
+
+    String getCondition() {
+        return condition;
+    }
+
+    Map<String, String> getNames() {
+        return names;
+    }
+
+    Map<String, AttributeValue> getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,75 @@
+package com.dondondevops.inventory.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
+
+/**
+ * Creates the tables of the repositories on first start. A table that cannot be created is
+ * logged and fails the creation of the repository bean, and with it the application start.
+ */
+final class TableBootstrap {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TableBootstrap.class);
+
+    private TableBootstrap() {}
+
+    /**
+     * Creates {@code table} with the defaults of its schema unless it exists.
+     *
+     * @return true if the table was created, false if it already existed
+     * @throws IllegalStateException if the table could not be created
+     */
+    static boolean createIfMissing(DynamoDbClient client, DynamoDbTable<?> table) {
+        return createIfMissing(client, table, null);
+    }
+
+    /**
+     * Creates {@code table} with {@code request}, such as its secondary indexes, unless it
+     * exists, and waits until it is active.
+     *
+     * @return true if the table was created, false if it already existed
+     * @throws IllegalStateException if the table could not be created
+     */
+    static boolean createIfMissing(DynamoDbClient client, DynamoDbTable<?> table, CreateTableEnhancedRequest request) {
+        String tableName = table.tableName();
+        if (client.listTables().tableNames().contains(tableName)) {
+            return false;
+        }
+
+        try {
+            if (request == null) {
+                table.createTable();
+            } else {
+                table.createTable(request);
+            }
+            try (DynamoDbWaiter waiter = DynamoDbWaiter.builder().client(client).build()) {
+                waiter.waitUntilTableExists(b -> b.tableName(tableName)).matched().response()
+                    .orElseThrow(() -> new IllegalStateException("Table " + tableName + " did not become active."));
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Could not create table {}", tableName, e);
+            throw new IllegalStateException("Could not create table " + tableName, e);
+        }
+        LOG.info("Created table {}", tableName);
+        return true;
+    }
+
+    /**
+     * Lets DynamoDB delete items once the epoch second in {@code attribute} has passed. Failing
+     * to is logged only: expired items then stay until removed by hand.
+     */
+    static void enableTimeToLive(DynamoDbClient client, String tableName, String attribute) {
+        try {
+            client.updateTimeToLive(b -> b.tableName(tableName)
+                .timeToLiveSpecification(t -> t.attributeName(attribute).enabled(true)));
+        } catch (DynamoDbException e) {
+            LOG.warn("Could not enable time to live on table {}", tableName, e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.dondondevops.inventory.repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+/**
+ * Backoff and metrics for optimistic product writes that lose a race with another writer.
+ *
+ * Between attempts writers wait a random time up to an exponentially growing cap ("full
+ * jitter"), so writers that collided once spread out instead of colliding again in lockstep.
+ * Conflicts are counted as {@code inventory.product.contention} per product, tagged
+ * {@code productId} and {@code operation}. Only the first
+ * {@code inventory.contention.max-tracked-products} products seen get their own tag; later
+ * ones share {@value #OTHER_PRODUCTS}, which keeps the number of series bounded. Writes that
+ * ran out of attempts are counted as {@code inventory.product.contention.exhausted} and the
+ * attempts every write took are recorded as {@code inventory.product.write.attempts}.
+ */
+@Singleton
+public class WriteContention {
+
+    /** Stock changes, conditioned on the product version read just before. */
+    public static final String STOCK = "stock";
+
+    /** Whole-product updates, such as a PATCH. */
+    public static final String UPDATE = "update";
+
+    static final String OTHER_PRODUCTS = "other";
+
+    private final MeterRegistry meterRegistry;
+
+    private final long baseDelayNanos;
+
+    private final long maxDelayNanos;
+
+    private final int maxTrackedProducts;
+
+    private final Set<UUID> tracked = ConcurrentHashMap.newKeySet();
+
+    public WriteContention(MeterRegistry meterRegistry,
+            @Value("${inventory.contention.base-delay:5ms}") Duration baseDelay,
+            @Value("${inventory.contention.max-delay:200ms}") Duration maxDelay,
+            @Value("${inventory.contention.max-tracked-products:1000}") int maxTrackedProducts) {
+        if (baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0) {
+            throw new IllegalArgumentException("inventory.contention.max-delay must be at least base-delay");
+        }
+        this.meterRegistry = meterRegistry;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxTrackedProducts = maxTrackedProducts;
+    }
+
+    /**
+     * Records that attempt {@code attempt} of a write to {@code ids} lost to another writer.
+     *
+     * @return how long to wait before the next attempt
+     */
+    public Duration conflicted(Collection<UUID> ids, String operation, int attempt) {
+        for (UUID id : ids) {
+            meterRegistry.counter("inventory.product.contention",
+                "productId", productTag(id), "operation", operation).increment();
+        }
+        return backoff(attempt);
+    }
+
+    /**
+     * Records that a write to {@code ids} gave up after losing every attempt.
+     */
+    public void exhausted(Collection<UUID> ids, String operation) {
+        for (UUID id : ids) {
+            meterRegistry.counter("inventory.product.contention.exhausted",
+                "productId", productTag(id), "operation", operation).increment();
+        }
+    }
+
+    /**
+     * Records the number of attempts a write took, whether it succeeded or not.
+     */
+    public void attempts(String operation, int attempts) {
+        DistributionSummary.builder("inventory.product.write.attempts")
+            .tag("operation", operation)
+            .register(meterRegistry)
+            .record(attempts);
+    }
+
+    /**
+     * Random delay between zero and {@code base-delay * 2^(attempt - 1)}, capped at {@code max-delay}.
+     */
+    public Duration backoff(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        long cap = baseDelayNanos > maxDelayNanos >> shift ? maxDelayNanos : baseDelayNanos << shift;
+        return Duration.ofNanos(cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    /**
+     * Waits out a backoff on the calling thread, which is a virtual or worker thread for every
+     * blocking write.
+     */
+    static void pause(Duration delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off a conflicting write", e);
+        }
+    }
+
+    private String productTag(UUID id) {
+        if (tracked.contains(id) || (tracked.size() < maxTrackedProducts && tracked.add(id))) {
+            return id.toString();
+        }
+        return OTHER_PRODUCTS;
+    }
+}
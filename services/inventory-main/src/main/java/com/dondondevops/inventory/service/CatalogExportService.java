@@ -0,0 +1,64 @@
+package com.dondondevops.inventory.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.dondondevops.inventory.model.Product;
+
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.serde.ObjectMapper;
+import jakarta.inject.Inject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Streams the catalog as newline-delimited JSON. Products are pulled from the parallel scan
+ * only as fast as the client reads, and are encoded {@value #CHUNK_SIZE} lines at a time,
+ * so heap use does not grow with the size of the catalog.
+ */
+@Bean
+public class CatalogExportService {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final int CHUNK_SIZE = 500;
+
+    @Inject
+    private ProductService productService;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    public Flux<byte[]> exportNdjson(boolean gzip) {
+        Flux<byte[]> chunks = Flux.fromStream(productService::streamAll)
+            .buffer(CHUNK_SIZE)
+            .map(this::encodeChunk)
+            .subscribeOn(Schedulers.boundedElastic());
+
+        if (!gzip) {
+            return chunks;
+        }
+
+        return Flux.using(
+            GzipChunkEncoder::new,
+            encoder -> chunks.map(encoder::encode).concatWith(Mono.fromCallable(encoder::finish)),
+            GzipChunkEncoder::close)
+            .filter(bytes -> bytes.length > 0);
+    }
+
+    private byte[] encodeChunk(List<Product> products) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (Product product : products) {
+                out.write(objectMapper.writeValueAsBytes(product));
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package com.dondondevops.inventory.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses a stream of chunks into a single gzip member. Every chunk is sync-flushed,
+ * so its compressed bytes can be written to the client before the next chunk exists.
+ */
+class GzipChunkEncoder implements AutoCloseable {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    private final GZIPOutputStream gzip;
+
+    GzipChunkEncoder() {
+        try {
+            this.gzip = new GZIPOutputStream(buffer, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    byte[] encode(byte[] chunk) {
+        try {
+            gzip.write(chunk);
+            gzip.flush();
+            return drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    byte[] finish() {
+        try {
+            gzip.finish();
+            return drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] drain() {
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            gzip.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.dondondevops.inventory.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.dondondevops.inventory.exception.IdempotencyKeyReusedException;
+import com.dondondevops.inventory.exception.InvalidRequestException;
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.repository.IdempotencyRepository;
+import com.dondondevops.inventory.repository.StockChange;
+import com.dondondevops.inventory.repository.StockReceipt;
+
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.type.Argument;
+import io.micronaut.serde.ObjectMapper;
+import jakarta.inject.Inject;
+
+/**
+ * Makes stock writes safe to retry. A request sent with an {@code Idempotency-Key} stores its
+ * response in the same transaction as its stock change; a retry with the same key finds that
+ * response and returns it without touching the product again.
+ */
+@Bean
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    /**
+     * A key scoped to one endpoint, with the fingerprint of the request it was sent with.
+     */
+    public record Request(String key, String fingerprint) {
+
+        /**
+         * The key of one part of a request applied in several transactions.
+         */
+        Request part(int index) {
+            return new Request(key + "#" + index, fingerprint);
+        }
+    }
+
+    @Inject
+    private IdempotencyRepository repository;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    /**
+     * @param scope   the endpoint, so that one key used on two endpoints does not collide
+     * @param key     the header value, or null when the client sent none
+     * @param request everything that identifies the request: body and path variables
+     * @return null when there is no key
+     */
+    @Nullable
+    public Request of(String scope, @Nullable String key, Object... request) {
+        if (key == null) {
+            return null;
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException(
+                HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters.");
+        }
+        return new Request(scope + "#" + key, fingerprint(request));
+    }
+
+    /**
+     * Returns the response stored for the key, if a request with it was already applied.
+     *
+     * @throws IdempotencyKeyReusedException if the key was used with a different request
+     */
+    public <T> Optional<T> replay(@Nullable Request request, Argument<T> type) {
+        if (request == null) {
+            return Optional.empty();
+        }
+        return repository.find(request.key()).map(record -> {
+            if (!record.getFingerprint().equals(request.fingerprint())) {
+                throw new IdempotencyKeyReusedException(request.key());
+            }
+            return read(record.getBody(), type);
+        });
+    }
+
+    public <T> Optional<T> replay(@Nullable Request request, Class<T> type) {
+        return replay(request, Argument.of(type));
+    }
+
+    /**
+     * The receipt storing the response {@code response} builds from the committed changes,
+     * or null when there is no key.
+     */
+    @Nullable
+    public StockReceipt receipt(@Nullable Request request, Function<List<StockChange>, ?> response) {
+        if (request == null) {
+            return null;
+        }
+        return changes -> new IdempotencyRecord(request.key(), request.fingerprint(), write(response.apply(changes)));
+    }
+
+    private String fingerprint(Object... request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : request) {
+                digest.update(write(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T read(String body, Argument<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
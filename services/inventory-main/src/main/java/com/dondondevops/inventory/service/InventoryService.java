@@ -1,96 +1,547 @@
 package com.dondondevops.inventory.service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.dondondevops.inventory.event.dto.LowStockEvent;
 import com.dondondevops.inventory.event.dto.RestockedEvent;
 import com.dondondevops.inventory.event.dto.RestockedItem;
-import com.dondondevops.inventory.event.publisher.InventoryEventPublisher;
-import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.outbox.OutboxMessages;
+import com.dondondevops.inventory.exception.IdempotencyKeyReusedException;
+import com.dondondevops.inventory.exception.InvalidRequestException;
+import com.dondondevops.inventory.exception.RequestAlreadyAppliedException;
+import com.dondondevops.inventory.exception.ReservationNotHeldException;
+import com.dondondevops.inventory.exception.StockTransactionCancelledException;
+import com.dondondevops.inventory.model.BatchReduceStockRequest;
+import com.dondondevops.inventory.model.BatchReduceStockResponse;
+import com.dondondevops.inventory.model.BulkRestockRequest;
 import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.model.ReduceStockItem;
 import com.dondondevops.inventory.model.ReduceStockRequest;
+import com.dondondevops.inventory.model.ReduceStockResult;
+import com.dondondevops.inventory.model.Reservation;
+import com.dondondevops.inventory.model.ReserveStockRequest;
 import com.dondondevops.inventory.model.RestockRequest;
+import com.dondondevops.inventory.model.RestockResult;
+import com.dondondevops.inventory.repository.AsyncProductRepository;
 import com.dondondevops.inventory.repository.ProductRepository;
+import com.dondondevops.inventory.repository.StockChange;
+import com.dondondevops.inventory.repository.StockDelta;
+import com.dondondevops.inventory.repository.StockReceipt;
 
 import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.type.Argument;
 import jakarta.inject.Inject;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Bean
 public class InventoryService {
 
     private static final Logger LOG = LoggerFactory.getLogger(InventoryService.class);
-    private static final int LOW_STOCK_THRESHOLD = 10;
+    private static final int MAX_BULK_RESTOCK_ITEMS = 1000;
+    private static final int MAX_EXPIRY_RANGE_DAYS = 366;
 
     @Inject
     private ProductRepository repository;
 
     @Inject
-    private InventoryEventPublisher eventPublisher;
+    @Nullable
+    private AsyncProductRepository asyncRepository;
+
+    @Inject
+    private OutboxMessages outboxMessages;
+
+    @Inject
+    private IdempotencyService idempotency;
+
+    private int restockParallelism;
+
+    private int restockEventBatchSize;
+
+    @Value("${inventory.reservations.hold:15m}")
+    private Duration defaultHold;
+
+    @Value("${inventory.reservations.max-hold:2h}")
+    private Duration maxHold;
+
+    @Inject
+    void setRestockLimits(@Value("${inventory.restock.parallelism:16}") int parallelism,
+            @Value("${inventory.restock.event-batch-size:100}") int eventBatchSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                "inventory.restock.parallelism must be at least 1, was " + parallelism);
+        }
+        if (eventBatchSize < 1) {
+            throw new IllegalArgumentException(
+                "inventory.restock.event-batch-size must be at least 1, was " + eventBatchSize);
+        }
+        this.restockParallelism = parallelism;
+        this.restockEventBatchSize = eventBatchSize;
+    }
 
     public Product restock(RestockRequest request) {
-        /**
-         * If any one of the RestockRequest fails, we return the error immediately.
-         * Consider changing it to transactional or return a list of errors instead.
-         */
-        Product product = repository.getById(request.getProductId())
-            .orElseThrow(() -> new UUIDNotFoundException(request.getProductId()));
-
-            product.setStock(product.getStock() + request.getQuantity());
-            product.setExpiryDate(request.getExpiryDate());
-            product.setUpdatedAt(Instant.now());
-
-            Product updatedProduct = repository.update(product);
-
-            // Collect restocked items for event
-            RestockedItem restockedItem = new RestockedItem(
-                updatedProduct.getProductID(),
-                request.getQuantity(),
-                updatedProduct.getStock()
-            );
-
-        // Publish inventory.restocked event
-        try {
-            RestockedEvent event = new RestockedEvent(restockedItem);
-            LOG.info("Attempting to publish inventory.restocked event for {}", restockedItem.toString());
-            eventPublisher.publishRestocked(event);
-            LOG.info("Successfully published inventory.restocked event for {}", restockedItem.toString());
-        } catch (Exception e) {
-            LOG.error("Failed to publish inventory.restocked event", e);
+        return repository.incrementStock(
+            request.getProductId(), request.getQuantity(), request.getExpiryDate(), this::restockedMessages, null)
+            .getProduct();
+    }
+
+    public Mono<Product> restockAsync(RestockRequest request) {
+        return restockAsync(request, null);
+    }
+
+    /**
+     * Same as {@link #restock(RestockRequest)} without blocking the calling thread. With an
+     * idempotency key, a repeated request returns the product as the first one left it.
+     */
+    public Mono<Product> restockAsync(RestockRequest request, @Nullable String idempotencyKey) {
+        return Mono.defer(() -> {
+            IdempotencyService.Request key = idempotency.of("restock", idempotencyKey, request);
+            StockReceipt receipt = idempotency.receipt(key, InventoryService::singleProduct);
+            return idempotent(key, Product.class, () -> offload(
+                () -> asyncRepository.incrementStock(request.getProductId(), request.getQuantity(),
+                    request.getExpiryDate(), this::restockedMessages, receipt),
+                () -> repository.incrementStock(request.getProductId(), request.getQuantity(),
+                    request.getExpiryDate(), this::restockedMessages, receipt))
+                .map(StockChange::getProduct));
+        });
+    }
+
+    public List<RestockResult> restockBulk(BulkRestockRequest request) {
+        return restockBulk(request, null);
+    }
+
+    /**
+     * Applies a whole delivery of restocks. Lines are grouped into transactions of up to
+     * {@code inventory.restock.event-batch-size} distinct products, run
+     * {@code inventory.restock.parallelism} at a time, and each transaction writes one
+     * RestockedEvent for all its products to the outbox. A failing line does not stop the others.
+     * With an idempotency key each transaction also stores its results, so a repeated request
+     * replays the transactions that committed and applies only the ones that did not.
+     */
+    public List<RestockResult> restockBulk(BulkRestockRequest request, @Nullable String idempotencyKey) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new InvalidRequestException("At least one item is required.");
+        }
+        if (request.getItems().size() > MAX_BULK_RESTOCK_ITEMS) {
+            throw new InvalidRequestException(
+                "A bulk restock can contain at most " + MAX_BULK_RESTOCK_ITEMS + " items.");
+        }
+
+        IdempotencyService.Request key = idempotency.of("restock-bulk", idempotencyKey, request);
+        List<RestockRequest> items = request.getItems();
+        RestockResult[] results = new RestockResult[items.size()];
+        int chunkSize = Math.min(restockEventBatchSize, ProductRepository.MAX_BATCH_PRODUCTS);
+
+        List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> chunk = new ArrayList<>();
+        Set<UUID> chunkProducts = new HashSet<>();
+        for (int line = 0; line < items.size(); line++) {
+            RestockRequest item = items.get(line);
+            if (item.getProductId() == null || item.getQuantity() <= 0) {
+                results[line] = new RestockResult(item.getProductId(), item.getQuantity(), RestockResult.Status.FAILED,
+                    null, "A productId and a positive quantity are required.");
+                continue;
+            }
+            // A transaction may touch each product once, so a repeated product starts the next one
+            if (chunk.size() == chunkSize || chunkProducts.contains(item.getProductId())) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkProducts.clear();
+            }
+            chunk.add(line);
+            chunkProducts.add(item.getProductId());
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
         }
 
-        return updatedProduct;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int start = 0; start < chunks.size(); start += restockParallelism) {
+                List<Future<?>> wave = new ArrayList<>();
+                for (int index = start; index < Math.min(start + restockParallelism, chunks.size()); index++) {
+                    List<Integer> lines = chunks.get(index);
+                    IdempotencyService.Request part = key == null ? null : key.part(index);
+                    wave.add(executor.submit(() -> restockChunk(items, lines, results, part)));
+                }
+                for (Future<?> future : wave) {
+                    await(future);
+                }
+            }
+        }
+
+        return List.of(results);
     }
 
-    public Product reduce(Product product, ReduceStockRequest request) {
-        int previousStock = product.getStock();
-        product.setStock(product.getStock() - request.getQuantity());
-        product.setUpdatedAt(Instant.now());
+    /**
+     * Restocks the given lines in one transaction. When the transaction is cancelled, lines
+     * that failed on their own are reported and the rest are tried again without them.
+     */
+    private void restockChunk(List<RestockRequest> items, List<Integer> lines, RestockResult[] results,
+            @Nullable IdempotencyService.Request key) {
+        Optional<List<RestockResult>> replayed = idempotency.replay(key, Argument.listOf(RestockResult.class));
+        if (replayed.isPresent()) {
+            fill(lines, results, replayed.get());
+            return;
+        }
 
-        Product updatedProduct = repository.update(product);
+        List<Integer> pending = lines;
+        while (!pending.isEmpty()) {
+            Map<UUID, StockDelta> deltas = new LinkedHashMap<>();
+            for (int line : pending) {
+                RestockRequest item = items.get(line);
+                deltas.put(item.getProductId(), new StockDelta(item.getQuantity(), item.getExpiryDate()));
+            }
 
-        // Publish inventory.low_stock event if stock falls below threshold
-        if (updatedProduct.getStock() < LOW_STOCK_THRESHOLD && previousStock >= LOW_STOCK_THRESHOLD) {
+            List<Integer> attempt = pending;
             try {
-                LowStockEvent event = new LowStockEvent(
-                    updatedProduct.getProductID(),
-                    updatedProduct.getStock(),
-                    LOW_STOCK_THRESHOLD
-                );
-                LOG.info("Attempting to publish inventory.low_stock event for product {} - stock: {}, threshold: {}",
-                    updatedProduct.getProductID(), updatedProduct.getStock(), LOW_STOCK_THRESHOLD);
-                eventPublisher.publishLowStock(event);
-                LOG.info("Successfully published inventory.low_stock event for product {}",
-                    updatedProduct.getProductID());
+                List<StockChange> changes = repository.changeStock(deltas, this::restockedMessages,
+                    idempotency.receipt(key, committed -> chunkResults(items, lines, attempt, committed, results)));
+                fill(lines, results, chunkResults(items, lines, attempt, changes, results));
+                return;
+            } catch (RequestAlreadyAppliedException e) {
+                fill(lines, results, idempotency.replay(key, Argument.listOf(RestockResult.class)).orElseThrow());
+                return;
+            } catch (StockTransactionCancelledException e) {
+                List<Integer> retry = new ArrayList<>();
+                for (int i = 0; i < pending.size(); i++) {
+                    RestockRequest item = items.get(pending.get(i));
+                    ReduceStockResult result = e.getResults().get(i);
+                    switch (result.getStatus()) {
+                        case ROLLED_BACK -> retry.add(pending.get(i));
+                        case NOT_FOUND -> results[pending.get(i)] = new RestockResult(item.getProductId(),
+                            item.getQuantity(), RestockResult.Status.NOT_FOUND, null,
+                            "ID: " + item.getProductId() + " could not be found.");
+                        default -> results[pending.get(i)] = new RestockResult(item.getProductId(),
+                            item.getQuantity(), RestockResult.Status.FAILED, null, result.getReason());
+                    }
+                }
+                if (retry.size() == pending.size()) {
+                    failAll(items, pending, results, "The restock transaction was cancelled.");
+                    return;
+                }
+                pending = retry;
             } catch (Exception e) {
-                LOG.error("Failed to publish inventory.low_stock event for product {}",
-                    updatedProduct.getProductID(), e);
-                // Don't fail the reduce operation if event publishing fails
+                LOG.error("Failed to restock {} products", pending.size(), e);
+                failAll(items, pending, results, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Results of all lines of a chunk once {@code committed} lines have been restocked; the
+     * others were settled by earlier attempts.
+     */
+    private static List<RestockResult> chunkResults(List<RestockRequest> items, List<Integer> lines,
+            List<Integer> committed, List<StockChange> changes, RestockResult[] results) {
+        List<RestockResult> chunk = new ArrayList<>(lines.size());
+        for (int line : lines) {
+            int index = committed.indexOf(line);
+            if (index < 0) {
+                chunk.add(results[line]);
+            } else {
+                RestockRequest item = items.get(line);
+                chunk.add(new RestockResult(item.getProductId(), item.getQuantity(), RestockResult.Status.RESTOCKED,
+                    changes.get(index).getProduct().getStock(), null));
+            }
+        }
+        return chunk;
+    }
+
+    private static void fill(List<Integer> lines, RestockResult[] results, List<RestockResult> chunk) {
+        for (int i = 0; i < lines.size(); i++) {
+            results[lines.get(i)] = chunk.get(i);
+        }
+    }
+
+    private static void failAll(List<RestockRequest> items, List<Integer> lines, RestockResult[] results,
+            String reason) {
+        for (int line : lines) {
+            RestockRequest item = items.get(line);
+            results[line] = new RestockResult(item.getProductId(), item.getQuantity(), RestockResult.Status.FAILED,
+                null, reason);
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while restocking", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IdempotencyKeyReusedException reused) {
+                throw reused;
+            }
+            throw new IllegalStateException("Restock failed unexpectedly", e.getCause());
+        }
+    }
+
+    /**
+     * The RestockedEvent for a committed restock, with one item per product.
+     */
+    private List<OutboxMessage> restockedMessages(List<StockChange> changes) {
+        List<RestockedItem> items = new ArrayList<>();
+        for (StockChange change : changes) {
+            Product product = change.getProduct();
+            items.add(new RestockedItem(product.getProductID(), product.getStock() - change.getPreviousStock(),
+                product.getStock()));
+        }
+        return List.of(outboxMessages.restocked(new RestockedEvent(items)));
+    }
+
+    public Product reduce(UUID id, ReduceStockRequest request) {
+        validateReduction(request);
+        return repository.decrementStock(id, request.getQuantity(), null).getProduct();
+    }
+
+    public Mono<Product> reduceAsync(UUID id, ReduceStockRequest request) {
+        return reduceAsync(id, request, null);
+    }
+
+    /**
+     * Same as {@link #reduce(UUID, ReduceStockRequest)} without blocking the calling thread. With an
+     * idempotency key, a repeated request returns the product as the first one left it.
+     */
+    public Mono<Product> reduceAsync(UUID id, ReduceStockRequest request, @Nullable String idempotencyKey) {
+        return Mono.defer(() -> {
+            validateReduction(request);
+            IdempotencyService.Request key = idempotency.of("reduce-stock", idempotencyKey, id, request);
+            StockReceipt receipt = idempotency.receipt(key, InventoryService::singleProduct);
+            return idempotent(key, Product.class, () -> offload(
+                () -> asyncRepository.decrementStock(id, request.getQuantity(), receipt),
+                () -> repository.decrementStock(id, request.getQuantity(), receipt))
+                .map(StockChange::getProduct));
+        });
+    }
+
+    private static Product singleProduct(List<StockChange> changes) {
+        return changes.get(0).getProduct();
+    }
+
+    /**
+     * Returns the stored response when the request was already applied, and otherwise applies it.
+     * A concurrent duplicate that commits first is answered with its response as well.
+     */
+    private <T> Mono<T> idempotent(@Nullable IdempotencyService.Request key, Class<T> type, Supplier<Mono<T>> apply) {
+        Optional<T> replayed = idempotency.replay(key, type);
+        if (replayed.isPresent()) {
+            return Mono.just(replayed.get());
+        }
+        return apply.get().onErrorResume(RequestAlreadyAppliedException.class,
+            e -> Mono.fromCallable(() -> idempotency.replay(key, type).orElseThrow())
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private static void validateReduction(ReduceStockRequest request) {
+        if (request.getQuantity() <= 0) {
+            throw new InvalidRequestException("Quantity to reduce must be positive.");
+        }
+    }
+
+    /**
+     * Runs a repository call on the async repository when {@code inventory.dynamodb.async} is set,
+     * and otherwise runs the blocking call on a worker thread, off the Netty event loop.
+     */
+    private <T> Mono<T> offload(Supplier<CompletableFuture<T>> async, Callable<T> blocking) {
+        if (asyncRepository != null) {
+            return Mono.fromFuture(async);
+        }
+        return Mono.fromCallable(blocking).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Reduces stock for every item of a basket in a single DynamoDB transaction.
+     * Quantities for the same product are summed, since a transaction may touch each item once.
+     * Low-stock events are raised from the product stream, one for each product the committed
+     * batch took below its threshold; a cancelled batch writes nothing, so it raises none.
+     */
+    public BatchReduceStockResponse reduceBatch(BatchReduceStockRequest request) {
+        return reduceBatch(request, null);
+    }
+
+    /**
+     * Same as {@link #reduceBatch(BatchReduceStockRequest)}; with an idempotency key, a repeated
+     * request for a batch that committed returns the first response. A cancelled batch changed
+     * nothing, so its repeat runs again.
+     */
+    public BatchReduceStockResponse reduceBatch(BatchReduceStockRequest request, @Nullable String idempotencyKey) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new InvalidRequestException("At least one item is required.");
+        }
+
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        for (ReduceStockItem item : request.getItems()) {
+            if (item.getProductId() == null || item.getQuantity() <= 0) {
+                throw new InvalidRequestException("Every item needs a productId and a positive quantity.");
             }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        if (quantities.size() > ProductRepository.MAX_BATCH_PRODUCTS) {
+            throw new InvalidRequestException(
+                "A batch can reduce at most " + ProductRepository.MAX_BATCH_PRODUCTS + " products.");
         }
 
-        return updatedProduct;
+        IdempotencyService.Request key = idempotency.of("reduce-stock-batch", idempotencyKey, request);
+        Optional<BatchReduceStockResponse> replayed = idempotency.replay(key, BatchReduceStockResponse.class);
+        if (replayed.isPresent()) {
+            return replayed.get();
+        }
+
+        List<StockChange> changes;
+        try {
+            changes = repository.decrementStock(quantities,
+                idempotency.receipt(key, committed -> batchReduced(quantities, committed)));
+        } catch (RequestAlreadyAppliedException e) {
+            return idempotency.replay(key, BatchReduceStockResponse.class).orElseThrow();
+        } catch (StockTransactionCancelledException e) {
+            LOG.info("Batch stock reduction for {} products was cancelled", quantities.size());
+            return new BatchReduceStockResponse(false, e.getResults());
+        }
+
+        return batchReduced(quantities, changes);
+    }
+
+    private static BatchReduceStockResponse batchReduced(Map<UUID, Integer> quantities, List<StockChange> changes) {
+        List<ReduceStockResult> results = new ArrayList<>();
+        for (StockChange change : changes) {
+            Product product = change.getProduct();
+            results.add(new ReduceStockResult(
+                product.getProductID(),
+                quantities.get(product.getProductID()),
+                ReduceStockResult.Status.REDUCED,
+                product.getStock(),
+                null));
+        }
+
+        return new BatchReduceStockResponse(true, results);
+    }
+
+    /**
+     * Holds units of a product for a pending checkout. Held units stay in stock but can be
+     * neither reduced nor reserved again until the reservation is committed, released or
+     * expires.
+     */
+    public Reservation reserve(ReserveStockRequest request) {
+        if (request.getProductId() == null || request.getQuantity() <= 0) {
+            throw new InvalidRequestException("A productId and a positive quantity are required.");
+        }
+        Duration hold = defaultHold;
+        if (request.getHoldSeconds() != null) {
+            if (request.getHoldSeconds() <= 0 || request.getHoldSeconds() > maxHold.toSeconds()) {
+                throw new InvalidRequestException(
+                    "holdSeconds must be between 1 and " + maxHold.toSeconds() + ".");
+            }
+            hold = Duration.ofSeconds(request.getHoldSeconds());
+        }
+        return repository.reserve(request.getProductId(), request.getQuantity(), hold);
+    }
+
+    /**
+     * Takes the held units off the stock. The product stream raises the low-stock event if
+     * the stock crossed the threshold.
+     */
+    public Product commitReservation(UUID id) {
+        return repository.commitReservation(id).getProduct();
+    }
+
+    public Reservation releaseReservation(UUID id) {
+        return repository.releaseReservation(id, Reservation.Status.RELEASED);
+    }
+
+    /**
+     * Expires up to {@code batchSize} lapsed holds, oldest first. The holds of each product are
+     * released in one transaction; when that fails, they are released one by one, so that one
+     * hold settled in the meantime does not keep the others held.
+     *
+     * @return the number of holds expired
+     */
+    public int releaseLapsedReservations(int batchSize) {
+        Map<UUID, List<Reservation>> byProduct = new LinkedHashMap<>();
+        for (Reservation reservation : repository.lapsedReservations(Instant.now(), batchSize)) {
+            byProduct.computeIfAbsent(reservation.getProductId(), id -> new ArrayList<>()).add(reservation);
+        }
+
+        int expired = 0;
+        for (Map.Entry<UUID, List<Reservation>> product : byProduct.entrySet()) {
+            try {
+                repository.releaseLapsed(product.getKey(), product.getValue());
+                expired += product.getValue().size();
+                continue;
+            } catch (RuntimeException e) {
+                LOG.debug("Releasing {} lapsed holds on product {} together failed, releasing them one by one",
+                    product.getValue().size(), product.getKey(), e);
+            }
+            for (Reservation reservation : product.getValue()) {
+                try {
+                    repository.releaseReservation(reservation.getReservationId(), Reservation.Status.EXPIRED);
+                    expired++;
+                } catch (ReservationNotHeldException e) {
+                    // Committed or released since it was read
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not expire reservation {}", reservation.getReservationId(), e);
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns one page of the products currently below the low-stock threshold, lowest stock first.
+     * Only low products are in the index, so each page costs the same however large the catalog is.
+     */
+    public ProductPage getLowStock(Integer limit, String cursor) {
+        return repository.queryIndex(Product.LOW_STOCK_INDEX, Product.LOW_STOCK_MARKER,
+            ProductService.pageSize(limit), cursor, List.of());
+    }
+
+    /**
+     * Returns one page of the products expiring between {@code from} and {@code to}, inclusive,
+     * soonest first.
+     */
+    public ProductPage getExpiring(Instant from, Instant to, Integer limit, String cursor) {
+        if (from == null || to == null) {
+            throw new InvalidRequestException("Both from and to are required.");
+        }
+        if (to.isBefore(from)) {
+            throw new InvalidRequestException("to must not be before from.");
+        }
+        if (Duration.between(from, to).toDays() >= MAX_EXPIRY_RANGE_DAYS) {
+            throw new InvalidRequestException("The range can span at most " + MAX_EXPIRY_RANGE_DAYS + " days.");
+        }
+        return repository.getExpiring(from, to, ProductService.pageSize(limit), cursor);
+    }
+
+    /**
+     * Folds the shards of a sharded product into the stock stored on it. The product stream
+     * raises the low-stock event if the folded stock crossed the threshold.
+     *
+     * @return true if the stock on the product moved
+     */
+    public boolean foldShards(UUID id) {
+        return repository.foldShards(id).isPresent();
     }
 }
@@ -0,0 +1,94 @@
+package com.dondondevops.inventory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.repository.ProductRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.env.Environment;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Online rewrite of the product table into the format {@code inventory.products.compact-writes}
+ * selects. Every {@code inventory.products.migration.interval} it scans the next
+ * {@code inventory.products.migration.batch-size} items and rewrites those still holding
+ * attributes in the other format, each with a versioned write, so it runs alongside normal
+ * traffic. A pass in which some rewrites failed is followed by another one.
+ *
+ * Enable compact writes only once every instance runs a version that reads both formats, then
+ * enable the migration on one instance.
+ */
+@Requires(notEnv = Environment.TEST)
+@Requires(beans = ProductRepository.class)
+@Requires(property = "inventory.products.migration.enabled", value = "true")
+@Singleton
+public class ProductFormatMigration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductFormatMigration.class);
+
+    private final ProductRepository repository;
+
+    private final int batchSize;
+
+    private final Counter migrated;
+
+    private final Counter failures;
+
+    private String cursor;
+
+    private int passFailures;
+
+    private boolean done;
+
+    @Inject
+    public ProductFormatMigration(ProductRepository repository, MeterRegistry meterRegistry,
+            @Value("${inventory.products.migration.batch-size:100}") int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.migrated = meterRegistry.counter("inventory.products.migration.migrated");
+        this.failures = meterRegistry.counter("inventory.products.migration.failures");
+    }
+
+    @Scheduled(fixedDelay = "${inventory.products.migration.interval:1s}", initialDelay = "30s")
+    void migrateBatch() {
+        if (done) {
+            return;
+        }
+        try {
+            ProductPage page = repository.unmigratedPage(batchSize, cursor);
+            for (Product product : page.getItems()) {
+                try {
+                    repository.migrate(product.getProductID());
+                    migrated.increment();
+                } catch (UUIDNotFoundException e) {
+                    // Deleted since the scan
+                } catch (RuntimeException e) {
+                    passFailures++;
+                    failures.increment();
+                    LOG.warn("Could not migrate product {}", product.getProductID(), e);
+                }
+            }
+            cursor = page.getNextCursor();
+            if (cursor == null) {
+                if (passFailures == 0) {
+                    done = true;
+                    LOG.info("Product format migration finished");
+                } else {
+                    LOG.info("Product format migration pass left {} products, starting another", passFailures);
+                    passFailures = 0;
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Product format migration batch failed", e);
+        }
+    }
+}
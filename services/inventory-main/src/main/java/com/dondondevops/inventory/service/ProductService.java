@@ -1,43 +1,169 @@
 package com.dondondevops.inventory.service;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import com.dondondevops.inventory.config.ProductProjectionConfiguration;
+import com.dondondevops.inventory.exception.InvalidRequestException;
 import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.exception.WriteConflictException;
 import com.dondondevops.inventory.model.CreateProductRequest;
 import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.model.ProductProjection;
 import com.dondondevops.inventory.model.UpdateProductRequest;
+import com.dondondevops.inventory.repository.AsyncProductRepository;
 import com.dondondevops.inventory.repository.ProductRepository;
 
 import io.micronaut.context.annotation.Bean;
+import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Inject;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Bean
 public class ProductService {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
     
     @Inject
     private ProductRepository repository;
 
+    @Inject
+    @Nullable
+    private AsyncProductRepository asyncRepository;
+
+    @Inject
+    private List<ProductProjectionConfiguration> projections;
+
     public List<Product> getAll() {
         return repository.getAll();
     }
 
+    /**
+     * Streams the whole catalog; the caller must close the stream.
+     */
+    public Stream<Product> streamAll() {
+        return repository.streamAll();
+    }
+
+    /**
+     * Returns one page of the catalog.
+     *
+     * @param limit  page size, {@value #DEFAULT_PAGE_SIZE} when not given
+     * @param cursor cursor from the previous page, or null for the first page
+     * @param projection fields to read, or null for whole products
+     */
+    public ProductPage getPage(Integer limit, String cursor, ProductProjection projection) {
+        return repository.getPage(pageSize(limit), cursor, attributes(projection));
+    }
+
+    /**
+     * Returns one page of the products in a category, ordered by name.
+     */
+    public ProductPage getPageByCategory(String category, Integer limit, String cursor, ProductProjection projection) {
+        return repository.queryIndex(Product.CATEGORY_INDEX, category, pageSize(limit), cursor, attributes(projection));
+    }
+
+    /**
+     * Returns one page of the products of a brand, ordered by name.
+     */
+    public ProductPage getPageByBrand(String brand, Integer limit, String cursor, ProductProjection projection) {
+        return repository.queryIndex(Product.BRAND_INDEX, brand, pageSize(limit), cursor, attributes(projection));
+    }
+
+    /**
+     * Resolves a {@code fields} parameter: a comma-separated list of product fields and names of
+     * the projections configured under {@code inventory.products.projections}.
+     *
+     * @return the projection, or null for whole products when {@code fields} is not given
+     */
+    public ProductProjection projection(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+
+        List<String> selected = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Optional<ProductProjectionConfiguration> named = projections.stream()
+                .filter(projection -> projection.getName().equals(name))
+                .findFirst();
+            if (named.isPresent()) {
+                selected.addAll(named.get().getFields());
+            } else if (ProductProjection.isField(name)) {
+                selected.add(name);
+            } else {
+                throw new InvalidRequestException("Unknown field: " + name);
+            }
+        }
+        return new ProductProjection(selected);
+    }
+
+    /**
+     * Token that changes whenever any product may have changed. Take it before reading the
+     * catalog, so that a change made during the read moves it on past the one returned.
+     */
+    public String catalogVersion() {
+        return repository.catalogVersion();
+    }
+
     public Product get(UUID id) {
         return repository.getById(id).orElseThrow(() -> new UUIDNotFoundException(id));
     }
 
+    /**
+     * Same as {@link #get(UUID)} without blocking the calling thread: on the async repository
+     * when {@code inventory.dynamodb.async} is set, otherwise on a worker thread.
+     */
+    public Mono<Product> getAsync(UUID id) {
+        Mono<Optional<Product>> product = asyncRepository != null
+            ? Mono.fromFuture(() -> asyncRepository.getById(id))
+            : Mono.fromCallable(() -> repository.getById(id)).subscribeOn(Schedulers.boundedElastic());
+        return product.map(found -> found.orElseThrow(() -> new UUIDNotFoundException(id)));
+    }
+
+    /**
+     * Reads the current product straight from DynamoDB, for callers that write it back.
+     */
+    public Product getForUpdate(UUID id) {
+        return repository.getById(id, true).orElseThrow(() -> new UUIDNotFoundException(id));
+    }
+
     public Product createProduct(CreateProductRequest request) {
         Product product = Product.builder().fromRequest(request).build();
         return repository.save(product);
     }
 
     public void delete(UUID id) {
-        Product toDelete = get(id);
+        Product toDelete = getForUpdate(id);
         repository.delete(toDelete);
     }
 
-    public Product update(Product product, UpdateProductRequest request) {
+    /**
+     * Applies a PATCH to the current product. The request is applied to a fresh consistent read
+     * on every attempt, so it is never written over a concurrent change.
+     *
+     * @throws WriteConflictException if the product kept changing until the write gave up
+     */
+    public Product update(UUID id, UpdateProductRequest request) {
+        Product updated = repository.update(id, product -> apply(product, request));
+        if (request.getStockShards() != null) {
+            // Moves the stock between the product and its shards in a transaction of its own
+            updated = repository.reshardStock(id, request.getStockShards());
+        }
+        return updated;
+    }
+
+    private static void apply(Product product, UpdateProductRequest request) {
         
         if(request.getName() != null) {
             product.setName(request.getName());
@@ -48,12 +174,30 @@ public class ProductService {
         }
 
         if(request.getBrand() != null) {
-            product.setCategory(request.getBrand());
+            product.setBrand(request.getBrand());
         }
-        
-        product.setPriceInSGD(request.getPrice());
+
+        if(request.getPrice() != null) {
+            product.setPriceInSGD(request.getPrice());
+        }
+
+        if(request.getLowStockThreshold() != null) {
+            // The low-stock index entry is recomputed from the new threshold when the item is written
+            product.setLowStockThreshold(request.getLowStockThreshold());
+        }
+
         product.setUpdatedAt(Instant.now());
+    }
+
+    static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        return pageSize;
+    }
 
-        return repository.update(product);
+    private static List<String> attributes(ProductProjection projection) {
+        return projection == null ? List.of() : projection.attributes();
     }
 }
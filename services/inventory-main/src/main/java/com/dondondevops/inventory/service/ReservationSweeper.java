@@ -0,0 +1,61 @@
+package com.dondondevops.inventory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.repository.ProductRepository;
+import com.dondondevops.inventory.repository.ReservationRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.env.Environment;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Every {@code inventory.reservations.sweep-interval}, gives the units of lapsed holds back to
+ * their products, {@code inventory.reservations.sweep-batch-size} holds at a time, until no
+ * full batch is left. Lapsed holds stay unavailable until swept, but cannot be committed.
+ */
+@Requires(notEnv = Environment.TEST)
+@Requires(beans = ReservationRepository.class)
+@Singleton
+public class ReservationSweeper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReservationSweeper.class);
+
+    private final InventoryService inventoryService;
+
+    private final int batchSize;
+
+    private final Counter expired;
+
+    @Inject
+    public ReservationSweeper(InventoryService inventoryService, MeterRegistry meterRegistry,
+            @Value("${inventory.reservations.sweep-batch-size:25}") int batchSize) {
+        // The holds of one product are settled in the transaction that releases their units
+        if (batchSize < 1 || batchSize > ProductRepository.MAX_BATCH_PRODUCTS) {
+            throw new IllegalArgumentException("inventory.reservations.sweep-batch-size must be between 1 and "
+                + ProductRepository.MAX_BATCH_PRODUCTS + ", was " + batchSize);
+        }
+        this.inventoryService = inventoryService;
+        this.batchSize = batchSize;
+        this.expired = meterRegistry.counter("inventory.reservations.expired");
+    }
+
+    @Scheduled(fixedDelay = "${inventory.reservations.sweep-interval:5s}", initialDelay = "5s")
+    void sweep() {
+        try {
+            int swept;
+            do {
+                swept = inventoryService.releaseLapsedReservations(batchSize);
+                expired.increment(swept);
+            } while (swept == batchSize);
+        } catch (Exception e) {
+            LOG.warn("Reservation sweep failed", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.dondondevops.inventory.service;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dondondevops.inventory.repository.LeaseRepository;
+import com.dondondevops.inventory.repository.StockShardRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.env.Environment;
+import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+/**
+ * Every {@code inventory.stock-shards.rebalance-interval}, folds the shards of every sharded
+ * product into the stock stored on the product and evens out shards that ran low. Reads and
+ * catalog exports sum a product's shards themselves; until its next fold, the low-stock index
+ * shows the stock as of the last one. A reduction that takes a product below its threshold
+ * folds it at once, so the marker and the low-stock event only wait for this pass when that
+ * fold lost a race.
+ *
+ * Only the instance holding the {@value #LEASE} lease folds, so the product items are written
+ * once per change rather than once per instance.
+ */
+@Requires(notEnv = Environment.TEST)
+@Requires(beans = { StockShardRepository.class, LeaseRepository.class })
+@Singleton
+public class StockShardRebalancer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StockShardRebalancer.class);
+
+    static final String LEASE = "shard-fold";
+
+    private final StockShardRepository shards;
+
+    private final InventoryService inventoryService;
+
+    private final LeaseRepository leases;
+
+    private final Duration leaseDuration;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final Counter folded;
+
+    private final Counter failures;
+
+    @Inject
+    public StockShardRebalancer(StockShardRepository shards, InventoryService inventoryService,
+            LeaseRepository leases, MeterRegistry meterRegistry,
+            @Value("${inventory.stock-shards.lease:30s}") Duration leaseDuration) {
+        this.shards = shards;
+        this.inventoryService = inventoryService;
+        this.leases = leases;
+        this.leaseDuration = leaseDuration;
+        this.folded = meterRegistry.counter("inventory.stock.shards.folded");
+        this.failures = meterRegistry.counter("inventory.stock.shards.fold.failures");
+    }
+
+    @Scheduled(fixedDelay = "${inventory.stock-shards.rebalance-interval:1s}", initialDelay = "5s")
+    void rebalance() {
+        try {
+            if (!leases.acquire(LEASE, owner, leaseDuration)) {
+                return;
+            }
+            for (UUID id : shards.shardedProducts()) {
+                try {
+                    if (inventoryService.foldShards(id)) {
+                        folded.increment();
+                    }
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    LOG.warn("Could not fold the stock shards of product {}", id, e);
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Stock shard rebalance pass failed", e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        leases.release(LEASE, owner);
+    }
+}
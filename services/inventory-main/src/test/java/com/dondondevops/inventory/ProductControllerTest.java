@@ -1,11 +1,14 @@
 package com.dondondevops.inventory;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
@@ -13,13 +16,21 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 
+import com.dondondevops.inventory.controller.ProductController;
+import com.dondondevops.inventory.exception.WriteConflictException;
 import com.dondondevops.inventory.model.CreateProductRequest;
 import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.model.ProductProjection;
+import com.dondondevops.inventory.model.UpdateProductRequest;
 import com.dondondevops.inventory.service.ProductService;
 
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
@@ -29,6 +40,7 @@ import io.micronaut.http.client.exceptions.HttpClientResponseException;
 import io.micronaut.test.annotation.MockBean;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
+import reactor.core.publisher.Mono;
 
 @MicronautTest
 public class ProductControllerTest {
@@ -50,6 +62,197 @@ public class ProductControllerTest {
         assertEquals(HttpStatus.OK, response.getStatus());
     }
 
+    @Test
+    void testGetPageReturnsNextCursorHeader() throws Exception {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setName("Panadol");
+
+        when(service.getPage(2, null, null))
+            .thenReturn(new ProductPage(List.of(product), "next-page"));
+
+        HttpResponse<List<Product>> response = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product?limit=2"), Argument.listOf(Product.class));
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals("next-page", response.header(ProductController.NEXT_CURSOR_HEADER));
+        assertEquals(1, response.body().size());
+    }
+
+    @Test
+    void testGetByCategoryQueriesIndex() throws Exception {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setName("Panadol");
+        product.setCategory("Medicine");
+
+        when(service.getPageByCategory("Medicine", null, null, null))
+            .thenReturn(new ProductPage(List.of(product), null));
+
+        HttpResponse<List<Product>> response = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product?category=Medicine"), Argument.listOf(Product.class));
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals(null, response.header(ProductController.NEXT_CURSOR_HEADER));
+        assertEquals("Medicine", response.body().get(0).getCategory());
+    }
+
+    @Test
+    void testGetPageWithFieldsReturnsOnlyThoseFields() throws Exception {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setName("Panadol");
+        product.setCategory("Medicine");
+        product.setStock(5);
+        ProductProjection tile = new ProductProjection(List.of("name", "stock"));
+
+        when(service.projection("tile")).thenReturn(tile);
+        when(service.getPage(null, null, tile))
+            .thenReturn(new ProductPage(List.of(product), null));
+
+        String body = client.toBlocking().retrieve("/api/product?fields=tile");
+
+        assertTrue(body.contains("\"productID\":\"" + product.getProductID() + "\""));
+        assertTrue(body.contains("\"name\":\"Panadol\""));
+        assertTrue(body.contains("\"stock\":5"));
+        assertFalse(body.contains("category"));
+        assertFalse(body.contains("createdAt"));
+    }
+
+    @Test
+    void testGetByIdWithFieldsReturnsOnlyThoseFields() throws Exception {
+        UUID id = UUID.randomUUID();
+        Product product = new Product();
+        product.setProductID(id);
+        product.setName("Panadol");
+        product.setStock(5);
+        product.setHeld(2);
+
+        when(service.projection("available")).thenReturn(new ProductProjection(List.of("available")));
+        when(service.getAsync(id)).thenReturn(Mono.just(product));
+
+        String body = client.toBlocking().retrieve("/api/product/" + id + "?fields=available");
+
+        assertTrue(body.contains("\"available\":3"));
+        assertFalse(body.contains("name"));
+    }
+
+    @Test
+    void testGetByIdReturnsNotModifiedForCurrentETag() throws Exception {
+        UUID id = UUID.randomUUID();
+        Product product = new Product();
+        product.setProductID(id);
+        product.setName("Panadol");
+        product.setStock(5);
+        product.setVersion(7L);
+
+        when(service.getAsync(id)).thenReturn(Mono.just(product));
+
+        HttpResponse<String> first = client.toBlocking().exchange(HttpRequest.GET("/api/product/" + id), String.class);
+        String etag = first.header(HttpHeaders.ETAG);
+        assertEquals(HttpStatus.OK, first.getStatus());
+        assertNotNull(etag);
+
+        HttpResponse<String> second = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product/" + id).header(HttpHeaders.IF_NONE_MATCH, etag), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getStatus());
+        assertEquals(etag, second.header(HttpHeaders.ETAG));
+
+        product.setStock(4);
+        HttpResponse<String> changed = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product/" + id).header(HttpHeaders.IF_NONE_MATCH, etag), String.class);
+        assertEquals(HttpStatus.OK, changed.getStatus());
+    }
+
+    @Test
+    void testGetAllReturnsNotModifiedWithoutReadingForCurrentCatalogVersion() throws Exception {
+        when(service.catalogVersion()).thenReturn("instance-3-0");
+
+        HttpResponse<String> response = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product").header(HttpHeaders.IF_NONE_MATCH, "\"instance-3-0\""), String.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatus());
+        assertEquals("\"instance-3-0\"", response.header(HttpHeaders.ETAG));
+        verify(service, never()).getAll();
+
+        when(service.catalogVersion()).thenReturn("instance-4-0");
+        when(service.getAll()).thenReturn(new ArrayList<Product>());
+        response = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product").header(HttpHeaders.IF_NONE_MATCH, "\"instance-3-0\""), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        assertEquals("\"instance-4-0\"", response.header(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testGetPageTagsEachQueryOfTheSameCatalogVersionApart() throws Exception {
+        when(service.catalogVersion()).thenReturn("7");
+        when(service.getAll()).thenReturn(new ArrayList<Product>());
+        when(service.getPage(2, null, null)).thenReturn(new ProductPage(List.of(), null));
+        when(service.getPage(3, null, null)).thenReturn(new ProductPage(List.of(), null));
+
+        String whole = client.toBlocking().exchange(HttpRequest.GET("/api/product"), String.class)
+            .header(HttpHeaders.ETAG);
+        String firstPage = client.toBlocking().exchange(HttpRequest.GET("/api/product?limit=2"), String.class)
+            .header(HttpHeaders.ETAG);
+        String otherPage = client.toBlocking().exchange(HttpRequest.GET("/api/product?limit=3"), String.class)
+            .header(HttpHeaders.ETAG);
+
+        assertEquals("\"7\"", whole);
+        assertFalse(whole.equals(firstPage));
+        assertFalse(firstPage.equals(otherPage));
+
+        // The tag of the whole catalog does not confirm a page of it
+        HttpResponse<String> page = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product?limit=2").header(HttpHeaders.IF_NONE_MATCH, whole), String.class);
+        assertEquals(HttpStatus.OK, page.getStatus());
+        HttpResponse<String> samePage = client.toBlocking()
+            .exchange(HttpRequest.GET("/api/product?limit=2").header(HttpHeaders.IF_NONE_MATCH, firstPage), String.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, samePage.getStatus());
+    }
+
+    @Test
+    void testGetByCategoryAndBrandReturnsBadRequest() throws Exception {
+        HttpClientResponseException exception = assertThrows(HttpClientResponseException.class,
+            () -> client.toBlocking().retrieve("/api/product?category=Medicine&brand=Panadol"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
+
+    @Test
+    void testUpdateReturnsConflictWhenWritesKeepLosing() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(service.update(any(UUID.class), any(UpdateProductRequest.class)))
+            .thenThrow(new WriteConflictException(id));
+
+        HttpClientResponseException exception = assertThrows(HttpClientResponseException.class,
+            () -> client.toBlocking().exchange(HttpRequest.PATCH("/api/product/" + id,
+                new UpdateProductRequest("Panadol Extra", null, null, null, null, null))));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        assertTrue(exception.getResponse().getBody(String.class).orElse("").contains(id.toString()));
+    }
+
+    @Test
+    void testExportStreamsOneJsonLinePerProduct() throws Exception {
+        Product first = new Product();
+        first.setProductID(UUID.randomUUID());
+        first.setName("Panadol");
+        Product second = new Product();
+        second.setProductID(UUID.randomUUID());
+        second.setName("Zyrtec");
+
+        when(service.streamAll())
+            .thenAnswer(invocation -> Stream.of(first, second));
+
+        String body = client.toBlocking().retrieve("/api/product/export");
+        String[] lines = body.split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("Panadol"));
+        assertTrue(lines[1].contains("Zyrtec"));
+    }
+
     @Test
     void testCreateProductReturnsOk() throws Exception {
         // Arrange
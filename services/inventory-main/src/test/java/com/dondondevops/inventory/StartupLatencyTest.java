@@ -0,0 +1,104 @@
+package com.dondondevops.inventory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Starts the native executable and the JVM jar against the DynamoDB and RabbitMQ of
+ * compose.yaml, and measures the time from launch until the health endpoint answers, then the
+ * latency of the first product read. Run with {@code ./gradlew startupTest}.
+ */
+@Tag("startup")
+@EnabledIfSystemProperty(named = "inventory.startup.native", matches = ".+")
+class StartupLatencyTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    record Startup(Duration ready, Duration firstRequest) {}
+
+    @Test
+    @DisplayName("Should serve from the native executable within the startup budget, ahead of the JVM jar")
+    void testNativeStartup(@TempDir Path journals, TestReporter reporter) throws Exception {
+        Duration budget = Duration.ofMillis(Long.getLong("inventory.startup.budget-ms", 500));
+
+        Startup nativeImage = start(List.of(System.getProperty("inventory.startup.native")),
+            journals.resolve("native.journal"));
+        Startup jvm = start(List.of(ProcessHandle.current().info().command().orElse("java"),
+            "-jar", System.getProperty("inventory.startup.jar")), journals.resolve("jvm.journal"));
+
+        reporter.publishEntry("native", nativeImage.ready().toMillis() + " ms to ready, first request "
+            + nativeImage.firstRequest().toMillis() + " ms");
+        reporter.publishEntry("jvm", jvm.ready().toMillis() + " ms to ready, first request "
+            + jvm.firstRequest().toMillis() + " ms");
+
+        assertTrue(nativeImage.ready().compareTo(budget) <= 0,
+            "native image took " + nativeImage.ready().toMillis() + " ms to serve, budget " + budget.toMillis() + " ms");
+        assertTrue(nativeImage.ready().compareTo(jvm.ready()) < 0);
+    }
+
+    private Startup start(List<String> command, Path journal) throws Exception {
+        int port = freePort();
+        ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        builder.environment().put("MICRONAUT_SERVER_PORT", Integer.toString(port));
+        builder.environment().put("MICRONAUT_ENVIRONMENTS", "dev");
+        // Keeps the spill journals of the launched processes out of the working directory
+        builder.environment().put("INVENTORY_EVENT_JOURNAL", journal.toString());
+
+        long launched = System.nanoTime();
+        Process process = builder.start();
+        try {
+            URI health = URI.create("http://localhost:" + port + "/api/health");
+            while (!answers(health)) {
+                if (!process.isAlive() || System.nanoTime() - launched > TIMEOUT.toNanos()) {
+                    throw new IllegalStateException(command.get(0) + " did not start serving");
+                }
+                Thread.sleep(5);
+            }
+            Duration ready = Duration.ofNanos(System.nanoTime() - launched);
+
+            long sent = System.nanoTime();
+            HttpResponse<Void> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/product?limit=1")).build(),
+                HttpResponse.BodyHandlers.discarding());
+            assertEquals(200, response.statusCode());
+            return new Startup(ready, Duration.ofNanos(System.nanoTime() - sent));
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private boolean answers(URI uri) throws InterruptedException {
+        try {
+            return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.dondondevops.inventory.concurrency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Bulkhead bulkhead(int maxConcurrent, int maxQueued, Duration maxWait) {
+        ConcurrencyLimitConfiguration configuration = new ConcurrencyLimitConfiguration("test");
+        configuration.setMaxConcurrent(maxConcurrent);
+        configuration.setMaxQueued(maxQueued);
+        configuration.setMaxWait(maxWait);
+        return new Bulkhead(configuration, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should shed a call once the limit and the queue are full")
+    void testShedsWhenQueueFull() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 0, Duration.ofSeconds(1));
+
+        assertTrue(bulkhead.acquire());
+        assertFalse(bulkhead.acquire());
+
+        assertEquals(1.0, meterRegistry.get("inventory.http.in_flight").tag("endpoint", "test").gauge().value());
+        assertEquals(1.0, meterRegistry.get("inventory.http.rejected").tag("endpoint", "test").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should let a queued call through when a permit is released")
+    void testQueuedCallProceedsAfterRelease() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 1, Duration.ofSeconds(5));
+        assertTrue(bulkhead.acquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkhead.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (meterRegistry.get("inventory.http.queued").tag("endpoint", "test").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+        bulkhead.release();
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, meterRegistry.get("inventory.http.queue_wait").tag("endpoint", "test").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should shed a queued call when the wait runs out")
+    void testShedsAfterMaxWait() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 1, Duration.ofMillis(10));
+
+        assertTrue(bulkhead.acquire());
+        assertFalse(bulkhead.acquire());
+    }
+}
@@ -0,0 +1,164 @@
+package com.dondondevops.inventory.event.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.publisher.InventoryEventPublisher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EventPipelineTest {
+
+    private static final Duration RETRY_INTERVAL = Duration.ofMillis(50);
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final InventoryEventPublisher eventPublisher = mock(InventoryEventPublisher.class);
+
+    private EventPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws IOException, InterruptedException {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    private EventPipeline pipeline(int bufferSize, int batchSize, Duration confirmTimeout) throws IOException {
+        pipeline = new EventPipeline(eventPublisher, meterRegistry, bufferSize, batchSize, confirmTimeout,
+            RETRY_INTERVAL, directory.resolve("events.journal").toString(), 4096);
+        return pipeline;
+    }
+
+    private static OutboxMessage message(String routingKey, int n) {
+        return new OutboxMessage(routingKey, "{\"n\":" + n + "}");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    @Test
+    @DisplayName("Should journal an unconfirmed message and only complete it once its replay is confirmed")
+    void testUnconfirmedMessageCompletesOnReplay() throws Exception {
+        // Arrange
+        AtomicBoolean brokerUp = new AtomicBoolean();
+        when(eventPublisher.publish(anyString(), any(byte[].class))).thenAnswer(invocation -> brokerUp.get()
+            ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.failedFuture(new IOException("nack")));
+        pipeline(16, 10, Duration.ofMillis(200));
+
+        // Act
+        CompletableFuture<Void> done = pipeline.submit(List.of(message(InventoryEventPublisher.LOW_STOCK, 1)));
+        await(() -> counter("inventory.events.spilled") == 1.0);
+
+        // Assert - journaled is not delivered
+        Thread.sleep(RETRY_INTERVAL.multipliedBy(3).toMillis());
+        assertFalse(done.isDone());
+        assertTrue(gauge("inventory.events.journal.bytes") > 0);
+
+        brokerUp.set(true);
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, counter("inventory.events.replayed"));
+        await(() -> gauge("inventory.events.journal.bytes") == 0);
+    }
+
+    @Test
+    @DisplayName("Should keep new messages behind the journal until it is replayed")
+    void testNewMessagesWaitBehindJournal() throws Exception {
+        // Arrange - the broker refuses low stock events only, until released
+        AtomicBoolean blocked = new AtomicBoolean(true);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        when(eventPublisher.publish(anyString(), any(byte[].class))).thenAnswer(invocation -> {
+            String routingKey = invocation.getArgument(0);
+            if (blocked.get() && routingKey.equals(InventoryEventPublisher.LOW_STOCK)) {
+                return CompletableFuture.failedFuture(new IOException("nack"));
+            }
+            delivered.add(new String((byte[]) invocation.getArgument(1), StandardCharsets.UTF_8));
+            return CompletableFuture.completedFuture(null);
+        });
+        pipeline(16, 10, Duration.ofMillis(200));
+
+        CompletableFuture<Void> first = pipeline.submit(List.of(message(InventoryEventPublisher.LOW_STOCK, 1)));
+        await(() -> counter("inventory.events.spilled") == 1.0);
+
+        // Act - the broker would take this one, but it must not overtake the journaled one
+        CompletableFuture<Void> second = pipeline.submit(List.of(message(InventoryEventPublisher.RESTOCKED, 2)));
+        await(() -> counter("inventory.events.spilled") == 2.0);
+
+        // Assert
+        assertFalse(second.isDone());
+        assertTrue(delivered.isEmpty());
+
+        blocked.set(false);
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("{\"n\":1}", "{\"n\":2}"), delivered);
+    }
+
+    @Test
+    @DisplayName("Should reject a submit that does not fit in the buffer without queueing any of it")
+    void testSubmitRejectedWhole() throws Exception {
+        // Arrange - the sender takes one message and then waits on a confirm that never comes
+        CountDownLatch sending = new CountDownLatch(1);
+        when(eventPublisher.publish(anyString(), any(byte[].class))).thenAnswer(invocation -> {
+            sending.countDown();
+            return new CompletableFuture<Void>();
+        });
+        pipeline(2, 1, Duration.ofSeconds(2));
+        pipeline.submit(List.of(message(InventoryEventPublisher.LOW_STOCK, 1)));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> queued = pipeline.submit(List.of(message(InventoryEventPublisher.LOW_STOCK, 2)));
+
+        // Act - needs two slots, one is left
+        CompletableFuture<Void> rejected = pipeline.submit(List.of(
+            message(InventoryEventPublisher.LOW_STOCK, 3), message(InventoryEventPublisher.LOW_STOCK, 4)));
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertFalse(queued.isDone());
+        assertEquals(1.0, gauge("inventory.events.buffer.size"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.dondondevops.inventory.event.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+
+class SpillJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should replay journaled messages in order and only drop them once advanced")
+    void testReadAdvance() throws IOException {
+        try (SpillJournal journal = new SpillJournal(directory.resolve("events.journal"), 4096)) {
+            journal.append(List.of(
+                new OutboxMessage("inventory.low_stock", "{\"n\":1}"),
+                new OutboxMessage("inventory.restocked", "{\"n\":2}")));
+            journal.append(List.of(new OutboxMessage("inventory.low_stock", "{\"n\":3}")));
+
+            SpillJournal.Batch first = journal.read(2);
+            assertEquals(List.of("{\"n\":1}", "{\"n\":2}"),
+                first.messages().stream().map(OutboxMessage::getPayload).toList());
+            assertEquals("inventory.restocked", first.messages().get(1).getRoutingKey());
+
+            // Reading again without advancing returns the same messages
+            assertEquals(2, journal.read(2).messages().size());
+
+            journal.advance(first.end());
+            SpillJournal.Batch second = journal.read(2);
+            assertEquals(List.of("{\"n\":3}"), second.messages().stream().map(OutboxMessage::getPayload).toList());
+
+            journal.advance(second.end());
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep undrained messages across a restart")
+    void testReopen() throws IOException {
+        Path path = directory.resolve("events.journal");
+        try (SpillJournal journal = new SpillJournal(path, 4096)) {
+            journal.append(List.of(new OutboxMessage("inventory.low_stock", "{\"n\":1}")));
+            journal.append(List.of(new OutboxMessage("inventory.low_stock", "{\"n\":2}")));
+            journal.advance(journal.read(1).end());
+        }
+
+        try (SpillJournal journal = new SpillJournal(path, 4096)) {
+            assertEquals(List.of("{\"n\":2}"),
+                journal.read(10).messages().stream().map(OutboxMessage::getPayload).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Should refuse an append that does not fit instead of writing part of it")
+    void testFull() throws IOException {
+        try (SpillJournal journal = new SpillJournal(directory.resolve("events.journal"), 64)) {
+            assertThrows(IOException.class, () -> journal.append(List.of(
+                new OutboxMessage("inventory.low_stock", "x".repeat(20)),
+                new OutboxMessage("inventory.low_stock", "x".repeat(20)))));
+            assertTrue(journal.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should wrap around into drained space when it drains as fast as it fills")
+    void testWrapsAround() throws IOException {
+        // Each entry takes 33 bytes, so a 256 byte journal holding three at a time wraps every few appends
+        try (SpillJournal journal = new SpillJournal(directory.resolve("events.journal"), 256)) {
+            for (int n = 100; n < 200; n++) {
+                journal.append(List.of(new OutboxMessage("inventory.low_stock", "{\"n\":" + n + "}")));
+                if (n >= 102) {
+                    SpillJournal.Batch batch = journal.read(1);
+                    assertEquals(List.of("{\"n\":" + (n - 2) + "}"),
+                        batch.messages().stream().map(OutboxMessage::getPayload).toList());
+                    journal.advance(batch.end());
+                }
+            }
+
+            assertEquals(List.of("{\"n\":198}", "{\"n\":199}"),
+                journal.read(10).messages().stream().map(OutboxMessage::getPayload).toList());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.dondondevops.inventory.event.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.dondondevops.inventory.event.dto.LowStockEvent;
+import com.dondondevops.inventory.event.dto.ProductChangedEvent;
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.outbox.OutboxMessages;
+import com.dondondevops.inventory.event.publisher.InventoryEventPublisher;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.repository.LeaseRepository;
+import com.dondondevops.inventory.repository.OutboxRepository;
+import com.dondondevops.inventory.repository.ProductCache;
+import com.dondondevops.inventory.repository.ProductRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DescribeStreamResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetRecordsResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetShardIteratorResponse;
+import software.amazon.awssdk.services.dynamodb.model.OperationType;
+import software.amazon.awssdk.services.dynamodb.model.Record;
+import software.amazon.awssdk.services.dynamodb.model.Shard;
+import software.amazon.awssdk.services.dynamodb.streams.DynamoDbStreamsClient;
+
+/**
+ * Low-stock events derived from product stream records, against mocked tables.
+ */
+class ProductStreamConsumerTest {
+
+    private static final String SHARD = "shardId-0001";
+
+    private final DynamoDbStreamsClient streams = mock(DynamoDbStreamsClient.class);
+
+    private final LeaseRepository leases = mock(LeaseRepository.class);
+
+    private final ProductRepository products = mock(ProductRepository.class);
+
+    private final OutboxRepository outbox = mock(OutboxRepository.class);
+
+    private final OutboxMessages outboxMessages = mock(OutboxMessages.class);
+
+    private final ProductCache cache = mock(ProductCache.class);
+
+    private ProductStreamConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(leases.acquire(eq(ProductStreamConsumer.LEASE), anyString(), any())).thenReturn(true);
+        when(leases.progress(ProductStreamConsumer.LEASE)).thenReturn(Map.of());
+        when(leases.saveProgress(eq(ProductStreamConsumer.LEASE), anyString(), anyString(), anyString()))
+            .thenReturn(true);
+        when(leases.saveProgress(eq(ProductStreamConsumer.LEASE), anyString(), anyMap())).thenReturn(true);
+        when(products.streamArn()).thenReturn(Optional.of("arn:stream"));
+        when(products.fromImage(any())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        when(outboxMessages.lowStock(any(LowStockEvent.class))).thenAnswer(invocation -> new OutboxMessage(
+            InventoryEventPublisher.LOW_STOCK, ((LowStockEvent) invocation.getArgument(0)).getProductId().toString()));
+        when(outboxMessages.productChanged(any(ProductChangedEvent.class))).thenAnswer(invocation -> new OutboxMessage(
+            InventoryEventPublisher.PRODUCT_CHANGED, invocation.getArgument(0).toString()));
+        when(streams.describeStream(any(Consumer.class))).thenReturn(DescribeStreamResponse.builder()
+            .streamDescription(d -> d.shards(Shard.builder().shardId(SHARD).build()))
+            .build());
+        when(streams.getShardIterator(any(Consumer.class)))
+            .thenReturn(GetShardIteratorResponse.builder().shardIterator("iterator-0").build());
+
+        consumer = new ProductStreamConsumer(streams, leases, products, outbox, outboxMessages, cache,
+            new SimpleMeterRegistry(), Duration.ofSeconds(30));
+    }
+
+    private static Map<String, AttributeValue> image(UUID id, int stock, long version, boolean marked) {
+        Map<String, AttributeValue> image = new HashMap<>();
+        image.put("productID", AttributeValue.fromS(id.toString()));
+        image.put("stock", AttributeValue.fromN(Integer.toString(stock)));
+        image.put("version", AttributeValue.fromN(Long.toString(version)));
+        if (marked) {
+            image.put("lowStock", AttributeValue.fromS(Product.LOW_STOCK_MARKER));
+        }
+        return image;
+    }
+
+    private static Product product(Map<String, AttributeValue> image) {
+        Product product = new Product();
+        product.setProductID(UUID.fromString(image.get("productID").s()));
+        product.setStock(Integer.parseInt(image.get("stock").n()));
+        product.setVersion(Long.parseLong(image.get("version").n()));
+        return product;
+    }
+
+    private static Record modified(String sequence, Map<String, AttributeValue> before, Map<String, AttributeValue> after) {
+        return Record.builder()
+            .eventName(OperationType.MODIFY)
+            .dynamodb(r -> r.sequenceNumber(sequence)
+                .keys(Map.of("productID", after.get("productID")))
+                .oldImage(before)
+                .newImage(after))
+            .build();
+    }
+
+    private static Product productWithStock(int stock, Integer threshold) {
+        Product product = new Product();
+        product.setStock(stock);
+        product.setLowStockThreshold(threshold);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should count a crossing only when a write takes the stock from the threshold to below it")
+    void testCrossedThreshold() {
+        assertTrue(ProductStreamConsumer.crossedThreshold(productWithStock(13, null), productWithStock(8, null)));
+        assertTrue(ProductStreamConsumer.crossedThreshold(productWithStock(22, 20), productWithStock(18, 20)));
+        assertFalse(ProductStreamConsumer.crossedThreshold(productWithStock(5, null), productWithStock(3, null)));
+        assertFalse(ProductStreamConsumer.crossedThreshold(productWithStock(12, null), productWithStock(11, null)));
+        // A raised threshold is not a reduction
+        assertFalse(ProductStreamConsumer.crossedThreshold(productWithStock(15, 10), productWithStock(15, 20)));
+    }
+
+    @Test
+    @DisplayName("Should outbox one event per crossing and the changed products, and store the position and catalog version")
+    @SuppressWarnings("unchecked")
+    void testPollRaisesLowStockFromStream() {
+        // Arrange
+        UUID crossing = UUID.randomUUID();
+        UUID alreadyLow = UUID.randomUUID();
+        when(leases.progress(ProductStreamConsumer.LEASE)).thenReturn(Map.of(ProductStreamConsumer.CATALOG_VERSION, "6"));
+        when(streams.getRecords(any(Consumer.class)))
+            .thenReturn(GetRecordsResponse.builder()
+                .records(
+                    modified("100", image(crossing, 13, 3, false), image(crossing, 8, 4, false)),
+                    modified("101", image(alreadyLow, 5, 7, true), image(alreadyLow, 3, 8, true)))
+                .nextShardIterator("iterator-1")
+                .build())
+            .thenReturn(GetRecordsResponse.builder().nextShardIterator("iterator-2").build());
+
+        // Act
+        consumer.poll();
+
+        // Assert
+        ArgumentCaptor<List<OutboxMessage>> messages = ArgumentCaptor.forClass(List.class);
+        verify(outbox).add(messages.capture());
+        assertEquals(2, messages.getValue().size());
+        assertEquals(crossing.toString(), messages.getValue().get(0).getPayload());
+        assertEquals(InventoryEventPublisher.PRODUCT_CHANGED, messages.getValue().get(1).getRoutingKey());
+        String changed = messages.getValue().get(1).getPayload();
+        assertTrue(changed.contains("productIds=" + List.of(crossing, alreadyLow)));
+        assertTrue(changed.contains("catalogVersion=7"));
+        verify(leases).saveProgress(eq(ProductStreamConsumer.LEASE), anyString(),
+            eq(Map.of(SHARD, "101", ProductStreamConsumer.CATALOG_VERSION, "7")));
+        // The catalog version is left out of the pruned shards
+        verify(leases).removeProgress(eq(ProductStreamConsumer.LEASE), anyString(), eq(List.of()));
+    }
+
+    @Test
+    @DisplayName("Should store a closed shard as read to its end and not read it again")
+    @SuppressWarnings("unchecked")
+    void testPollEndsClosedShard() {
+        // Arrange
+        when(streams.getRecords(any(Consumer.class))).thenReturn(GetRecordsResponse.builder().build());
+
+        // Act
+        consumer.poll();
+        when(leases.progress(ProductStreamConsumer.LEASE)).thenReturn(Map.of(SHARD, ProductStreamConsumer.END));
+        consumer.poll();
+
+        // Assert
+        verify(leases).saveProgress(eq(ProductStreamConsumer.LEASE), anyString(), eq(SHARD),
+            eq(ProductStreamConsumer.END));
+        verify(streams).getRecords(any(Consumer.class));
+        verify(outbox, never()).add(any());
+    }
+
+    @Test
+    @DisplayName("Should catch the cache up with the catalog version stored on the lease")
+    void testRefreshCatalogVersion() {
+        when(leases.progress(ProductStreamConsumer.LEASE)).thenReturn(Map.of(ProductStreamConsumer.CATALOG_VERSION, "12"));
+
+        consumer.refreshCatalogVersion();
+
+        verify(cache).advanceCatalogVersion(12L);
+    }
+
+    @Test
+    @DisplayName("Should leave the catalog version unknown while the stream has not stored one")
+    void testRefreshCatalogVersionBeforeFirstRead() {
+        when(leases.progress(ProductStreamConsumer.LEASE)).thenReturn(Map.of());
+
+        consumer.refreshCatalogVersion();
+
+        verify(cache, never()).advanceCatalogVersion(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should not read the stream without the lease")
+    @SuppressWarnings("unchecked")
+    void testPollWithoutLease() {
+        when(leases.acquire(eq(ProductStreamConsumer.LEASE), anyString(), any())).thenReturn(false);
+
+        consumer.poll();
+
+        verify(streams, never()).getRecords(any(Consumer.class));
+        verify(outbox, never()).add(any());
+    }
+}
@@ -0,0 +1,165 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.exception.RequestAlreadyAppliedException;
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.model.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+/**
+ * The non-blocking stock reductions of {@link AsyncProductRepository}, against mocked clients.
+ */
+class AsyncProductRepositoryTest {
+
+    private static final TableSchema<Product> SCHEMA = ProductTableSchema.create(ProductFormat.LEGACY);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DynamoDbAsyncClient client = mock(DynamoDbAsyncClient.class);
+
+    private final DynamoDbEnhancedAsyncClient enhancedClient = mock(DynamoDbEnhancedAsyncClient.class);
+
+    @SuppressWarnings("unchecked")
+    private final DynamoDbAsyncTable<Product> table = mock(DynamoDbAsyncTable.class);
+
+    private final IdempotencyRepository idempotency = mock(IdempotencyRepository.class);
+
+    private final ProductCache cache = mock(ProductCache.class);
+
+    private AsyncProductRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        ProductRepository products = mock(ProductRepository.class);
+        doReturn(SCHEMA).when(products).tableSchema();
+        when(products.format()).thenReturn(ProductFormat.LEGACY);
+        doReturn(table).when(enhancedClient).table(eq(ProductRepository.TABLE_NAME), any(TableSchema.class));
+        when(table.tableSchema()).thenReturn(SCHEMA);
+        when(idempotency.put(any(IdempotencyRecord.class))).thenReturn(TransactWriteItem.builder().build());
+
+        // No backoff, so the retries run back to back
+        WriteContention contention = new WriteContention(meterRegistry, Duration.ZERO, Duration.ZERO, 100);
+        repository = new AsyncProductRepository(client, enhancedClient, products, mock(OutboxRepository.class),
+            idempotency, cache, contention);
+    }
+
+    private static Product product(UUID id, int stock, long version) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setName("Panadol");
+        product.setStock(stock);
+        product.setVersion(version);
+        return product;
+    }
+
+    private static TransactionCanceledException cancelled(String productReason, String receiptReason) {
+        return TransactionCanceledException.builder()
+            .cancellationReasons(
+                CancellationReason.builder().code(productReason).build(),
+                CancellationReason.builder().code(receiptReason).build())
+            .build();
+    }
+
+    private static StockReceipt receipt() {
+        return changes -> new IdempotencyRecord("reduce-stock#order-42", "f1", "{}");
+    }
+
+    @Test
+    @DisplayName("Should reduce stock in one conditional update and cache the product it returns")
+    void testDecrementStockSucceeds() throws Exception {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(CompletableFuture.completedFuture(
+            UpdateItemResponse.builder().attributes(SCHEMA.itemToMap(product(productId, 7, 2), true)).build()));
+
+        // Act
+        StockChange change = repository.decrementStock(productId, 3, null).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(7, change.getProduct().getStock());
+        assertEquals(10, change.getPreviousStock());
+        verify(table, never()).getItem(any(GetItemEnhancedRequest.class));
+        verify(cache).written(change.getProduct());
+    }
+
+    @Test
+    @DisplayName("Should read again and retry a keyed reduction that lost a race to another writer")
+    void testDecrementStockRetriesOnConflict() throws Exception {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(table.getItem(any(GetItemEnhancedRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(product(productId, 10, 1)))
+            .thenReturn(CompletableFuture.completedFuture(product(productId, 9, 2)));
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(cancelled("ConditionalCheckFailed", "None")))
+            .thenReturn(CompletableFuture.completedFuture(TransactWriteItemsResponse.builder().build()));
+
+        // Act
+        StockChange change = repository.decrementStock(productId, 3, receipt()).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(6, change.getProduct().getStock());
+        assertEquals(9, change.getPreviousStock());
+        verify(table, times(2)).getItem(any(GetItemEnhancedRequest.class));
+        verify(client, times(2)).transactWriteItems(any(TransactWriteItemsRequest.class));
+        verify(cache).written(any(Collection.class));
+        assertEquals(1.0, meterRegistry.get("inventory.product.contention")
+            .tag("productId", productId.toString()).tag("operation", WriteContention.STOCK).counter().count());
+    }
+
+    @Test
+    @DisplayName("Should report a keyed reduction already applied by an earlier request without retrying")
+    void testDecrementStockDuplicate() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(table.getItem(any(GetItemEnhancedRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(product(productId, 10, 1)));
+        when(client.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(cancelled("None", "ConditionalCheckFailed")));
+
+        // Act
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> repository.decrementStock(productId, 3, receipt()).get(5, TimeUnit.SECONDS));
+
+        // Assert
+        RequestAlreadyAppliedException duplicate = assertInstanceOf(RequestAlreadyAppliedException.class, e.getCause());
+        assertEquals("reduce-stock#order-42", duplicate.getKey());
+        verify(client, times(1)).transactWriteItems(any(TransactWriteItemsRequest.class));
+        verify(cache, never()).written(any(Collection.class));
+    }
+}
@@ -0,0 +1,44 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.exception.InvalidRequestException;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class PageCursorTest {
+
+    @Test
+    @DisplayName("Should round-trip a LastEvaluatedKey through an opaque cursor")
+    void testRoundTrip() {
+        Map<String, AttributeValue> key = Map.of(
+            "productID", AttributeValue.fromS("d9daebef-6c0b-44c9-b6bc-19847dde432d"),
+            "name", AttributeValue.fromS("Milo & Co = 100%"),
+            "stock", AttributeValue.fromN("7"));
+
+        String cursor = PageCursor.encode(key);
+
+        assertEquals(key, PageCursor.decode(cursor));
+    }
+
+    @Test
+    @DisplayName("Should return no cursor for the last page")
+    void testLastPageHasNoCursor() {
+        assertNull(PageCursor.encode(null));
+        assertNull(PageCursor.encode(Map.of()));
+        assertNull(PageCursor.decode(null));
+    }
+
+    @Test
+    @DisplayName("Should reject a tampered cursor")
+    void testInvalidCursor() {
+        assertThrows(InvalidRequestException.class, () -> PageCursor.decode("not-a-cursor"));
+    }
+}
@@ -0,0 +1,136 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ProductCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ProductJsonCache jsonCache = mock(ProductJsonCache.class);
+
+    private final ProductCache cache = new ProductCache(meterRegistry, jsonCache, 100, Duration.ofMinutes(1));
+
+    private static Product product(int stock) {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setStock(stock);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should load a product once and serve later reads from the cache")
+    void testReadThrough() {
+        Product product = product(5);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Optional<Product> cached = cache.get(product.getProductID(), id -> {
+                loads.incrementAndGet();
+                return Optional.of(product);
+            });
+            assertEquals(5, cached.get().getStock());
+            assertNotSame(product, cached.get());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "product").tag("result", "hit")
+            .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should keep the cached product when an older version is stored after it")
+    void testStoreKeepsNewerVersion() {
+        Product product = product(5);
+        product.setVersion(3L);
+        cache.written(product);
+
+        Product stale = product.copy();
+        stale.setVersion(2L);
+        stale.setStock(9);
+        cache.store(stale);
+
+        Product next = product.copy();
+        next.setVersion(4L);
+        next.setStock(1);
+        cache.store(next);
+
+        Optional<Product> cached = cache.peek(product.getProductID());
+        assertEquals(Long.valueOf(4), cached.get().getVersion());
+        assertEquals(1, cached.get().getStock());
+    }
+
+    @Test
+    @DisplayName("Should replace the cached product on a local write")
+    void testWrittenReplaces() {
+        Product product = product(5);
+        cache.store(product);
+
+        Product updated = product.copy();
+        updated.setStock(2);
+        cache.written(updated);
+
+        Optional<Product> cached = cache.get(product.getProductID(), id -> Optional.empty());
+        assertEquals(2, cached.get().getStock());
+        verify(jsonCache).invalidate(product.getProductID());
+    }
+
+    @Test
+    @DisplayName("Should reload a product evicted by another instance")
+    void testEvict() {
+        Product product = product(5);
+        cache.store(product);
+
+        cache.evict(List.of(product.getProductID()));
+
+        assertTrue(cache.get(product.getProductID(), id -> Optional.empty()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should hand out the latest shared catalog version heard of, moved on by local writes until the next")
+    void testCatalogVersion() {
+        Product product = product(5);
+        assertNull(cache.catalogVersion());
+
+        cache.advanceCatalogVersion(3);
+        assertEquals("3", cache.catalogVersion());
+
+        // A version heard of late does not move it back
+        cache.advanceCatalogVersion(2);
+        assertEquals("3", cache.catalogVersion());
+
+        // Announced changes are already counted in the shared version
+        cache.evict(List.of(product.getProductID()));
+        assertEquals("3", cache.catalogVersion());
+
+        cache.written(product);
+        assertEquals("3.1", cache.catalogVersion());
+        cache.removed(product.getProductID());
+        assertEquals("3.2", cache.catalogVersion());
+
+        // Once the stream announces them, the local writes are part of the shared version
+        cache.advanceCatalogVersion(4);
+        assertEquals("4", cache.catalogVersion());
+        // Each change still dropped the product's encoded JSON
+        verify(jsonCache, times(2)).invalidate(product.getProductID());
+        verify(jsonCache).invalidateAll(List.of(product.getProductID()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.serde.ObjectMapper;
+
+class ProductJsonCacheTest {
+
+    private final ObjectMapper objectMapper = mock(ObjectMapper.class);
+
+    private static Product product() {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setName("Panadol");
+        return product;
+    }
+
+    private ProductJsonCache cache(long maximumSize) throws Exception {
+        when(objectMapper.writeValueAsBytes(any())).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            return ("{\"productID\":\"" + product.getProductID() + "\"}").getBytes(StandardCharsets.UTF_8);
+        });
+        return new ProductJsonCache(objectMapper, new SimpleMeterRegistry(), maximumSize);
+    }
+
+    @Test
+    @DisplayName("Should encode a product once per entity tag")
+    void testEncodesOncePerTag() throws Exception {
+        ProductJsonCache cache = cache(1 << 20);
+        Product product = product();
+
+        byte[] first = cache.encoded(product, "\"1.5.0\"");
+        assertArrayEquals(first, cache.encoded(product, "\"1.5.0\""));
+        verify(objectMapper, times(1)).writeValueAsBytes(product);
+
+        cache.encoded(product, "\"2.4.0\"");
+        verify(objectMapper, times(2)).writeValueAsBytes(product);
+    }
+
+    @Test
+    @DisplayName("Should encode a product again once it was invalidated")
+    void testInvalidate() throws Exception {
+        ProductJsonCache cache = cache(1 << 20);
+        Product product = product();
+
+        cache.encoded(product, "\"1.5.0\"");
+        cache.invalidate(product.getProductID());
+        cache.encoded(product, "\"1.5.0\"");
+
+        verify(objectMapper, times(2)).writeValueAsBytes(product);
+    }
+
+    @Test
+    @DisplayName("Should keep the bytes held within the configured size")
+    void testBoundedByBytes() throws Exception {
+        long maximumSize = 4096;
+        ProductJsonCache cache = cache(maximumSize);
+
+        for (int i = 0; i < 200; i++) {
+            cache.encoded(product(), "\"1.5.0\"");
+        }
+
+        assertTrue(cache.weightedSize() <= maximumSize);
+    }
+}
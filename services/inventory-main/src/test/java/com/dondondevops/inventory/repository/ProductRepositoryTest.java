@@ -0,0 +1,400 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.exception.WriteConflictException;
+import com.dondondevops.inventory.model.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
+import software.amazon.awssdk.services.dynamodb.model.IndexStatus;
+import software.amazon.awssdk.services.dynamodb.model.ListTablesResponse;
+import software.amazon.awssdk.services.dynamodb.model.StreamViewType;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+/**
+ * The optimistic write loop of {@link ProductRepository#update}, the single-call stock
+ * reduction and shard aggregation on read, against a mocked table.
+ */
+class ProductRepositoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DynamoDbClient client = mock(DynamoDbClient.class);
+
+    private final DynamoDbEnhancedClient enhancedClient = mock(DynamoDbEnhancedClient.class);
+
+    @SuppressWarnings("unchecked")
+    private final DynamoDbTable<Product> table = mock(DynamoDbTable.class);
+
+    private final ProductCache cache = mock(ProductCache.class);
+
+    private final StockShardRepository shards = mock(StockShardRepository.class);
+
+    private ProductRepository repository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(client.listTables()).thenReturn(ListTablesResponse.builder().tableNames(ProductRepository.TABLE_NAME).build());
+        when(client.describeTable(any(Consumer.class))).thenReturn(DescribeTableResponse.builder()
+            .table(t -> t.tableName(ProductRepository.TABLE_NAME)
+                .globalSecondaryIndexes(
+                    List.of(Product.CATEGORY_INDEX, Product.BRAND_INDEX, Product.LOW_STOCK_INDEX, Product.EXPIRY_INDEX)
+                        .stream()
+                        .map(name -> GlobalSecondaryIndexDescription.builder()
+                            .indexName(name).indexStatus(IndexStatus.ACTIVE).build())
+                        .toList())
+                .streamSpecification(spec -> spec.streamEnabled(true).streamViewType(StreamViewType.NEW_AND_OLD_IMAGES)))
+            .build());
+        doReturn(table).when(enhancedClient).table(eq(ProductRepository.TABLE_NAME), any(TableSchema.class));
+        when(table.tableName()).thenReturn(ProductRepository.TABLE_NAME);
+        when(table.tableSchema()).thenReturn(ProductTableSchema.create(ProductFormat.LEGACY));
+
+        // No backoff, so the retries run back to back
+        WriteContention contention = new WriteContention(meterRegistry, Duration.ZERO, Duration.ZERO, 100);
+        repository = new ProductRepository(client, enhancedClient, meterRegistry, cache,
+            mock(OutboxRepository.class), mock(IdempotencyRepository.class), contention,
+            shards, mock(ReservationRepository.class), 4, false);
+    }
+
+    private static Product product(UUID id, long version) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setName("Panadol");
+        product.setStock(10);
+        product.setVersion(version);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should read again and reapply the change after losing a write to another writer")
+    void testUpdateRetriesOnConflict() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        AtomicInteger reads = new AtomicInteger();
+        when(table.getItem(any(GetItemEnhancedRequest.class)))
+            .thenAnswer(invocation -> product(productId, reads.incrementAndGet()));
+        when(table.updateItem(any(Product.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("version changed").build())
+            .thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger applied = new AtomicInteger();
+
+        // Act
+        Product updated = repository.update(productId, product -> {
+            applied.incrementAndGet();
+            product.setName("Panadol Extra");
+        });
+
+        // Assert
+        assertEquals("Panadol Extra", updated.getName());
+        assertEquals(Long.valueOf(2), updated.getVersion());
+        assertEquals(2, applied.get());
+        verify(table, times(2)).updateItem(any(Product.class));
+        verify(cache).written(updated);
+        assertEquals(1.0, meterRegistry.get("inventory.product.contention")
+            .tag("productId", productId.toString()).tag("operation", WriteContention.UPDATE).counter().count());
+    }
+
+    @Test
+    @DisplayName("Should give up with a write conflict after the last attempt loses")
+    void testUpdateGivesUpAfterMaxAttempts() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(table.getItem(any(GetItemEnhancedRequest.class))).thenAnswer(invocation -> product(productId, 1));
+        when(table.updateItem(any(Product.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().message("version changed").build());
+
+        // Act & Assert
+        assertThrows(WriteConflictException.class, () -> repository.update(productId, product -> {}));
+        verify(table, times(ProductRepository.MAX_WRITE_ATTEMPTS)).updateItem(any(Product.class));
+        verify(cache, never()).written(any(Product.class));
+        assertEquals(1.0, meterRegistry.get("inventory.product.contention.exhausted")
+            .tag("productId", productId.toString()).tag("operation", WriteContention.UPDATE).counter().count());
+    }
+
+    @Test
+    @DisplayName("Should not write a product that does not exist")
+    void testUpdateMissingProduct() {
+        UUID productId = UUID.randomUUID();
+        when(table.getItem(any(GetItemEnhancedRequest.class))).thenReturn(null);
+
+        assertThrows(UUIDNotFoundException.class, () -> repository.update(productId, product -> {}));
+        verify(table, never()).updateItem(any(Product.class));
+    }
+
+    @Test
+    @DisplayName("Should reduce stock in one conditional update without reading the product first")
+    void testDecrementStockSingleCall() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        Product written = product(productId, 4);
+        written.setStock(7);
+        when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+            .attributes(ProductTableSchema.create(ProductFormat.LEGACY).itemToMap(written, true))
+            .build());
+
+        // Act
+        StockChange change = repository.decrementStock(productId, 3, null);
+
+        // Assert
+        assertEquals(7, change.getProduct().getStock());
+        assertEquals(10, change.getPreviousStock());
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client).updateItem(request.capture());
+        assertEquals("-3", request.getValue().expressionAttributeValues().get(":negQuantity").n());
+        verify(table, never()).getItem(any(GetItemEnhancedRequest.class));
+        verify(cache).written(change.getProduct());
+    }
+
+    @Test
+    @DisplayName("Should set the low-stock marker in the reduction that takes a cached product below its threshold")
+    void testDecrementStockMarksLowStock() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        Product cached = product(productId, 4);
+        cached.setLowStockThreshold(8);
+        when(cache.peek(productId)).thenReturn(Optional.of(cached));
+        Product written = product(productId, 5);
+        written.setStock(7);
+        written.setLowStockThreshold(8);
+        when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+            .attributes(ProductTableSchema.create(ProductFormat.LEGACY).itemToMap(written, true))
+            .build());
+
+        // Act
+        repository.decrementStock(productId, 3, null);
+
+        // Assert
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client).updateItem(request.capture());
+        assertTrue(request.getValue().updateExpression().contains("#lowStock = :lowStock"));
+        assertTrue(request.getValue().conditionExpression().endsWith("#stock < :boundary"));
+        assertEquals("11", request.getValue().expressionAttributeValues().get(":boundary").n());
+        assertEquals("8", request.getValue().expressionAttributeValues().get(":threshold").n());
+    }
+
+    @Test
+    @DisplayName("Should build the reduction again from the returned item when it expected the wrong threshold")
+    void testDecrementStockRetriesWithReturnedThreshold() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        Product current = product(productId, 4);
+        current.setLowStockThreshold(12);
+        Product written = product(productId, 5);
+        written.setStock(7);
+        written.setLowStockThreshold(12);
+        when(client.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder()
+                .item(ProductTableSchema.create(ProductFormat.LEGACY).itemToMap(current, true))
+                .build())
+            .thenReturn(UpdateItemResponse.builder()
+                .attributes(ProductTableSchema.create(ProductFormat.LEGACY).itemToMap(written, true))
+                .build());
+
+        // Act
+        StockChange change = repository.decrementStock(productId, 3, null);
+
+        // Assert
+        assertEquals(7, change.getProduct().getStock());
+        ArgumentCaptor<UpdateItemRequest> requests = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client, times(2)).updateItem(requests.capture());
+        // Nothing cached, so the first request expected the default threshold and no crossing
+        assertFalse(requests.getAllValues().get(0).updateExpression().contains("#lowStock"));
+        assertTrue(requests.getAllValues().get(1).updateExpression().contains("#lowStock = :lowStock"));
+        assertEquals("12", requests.getAllValues().get(1).expressionAttributeValues().get(":threshold").n());
+        verify(table, never()).getItem(any(GetItemEnhancedRequest.class));
+    }
+
+    @Test
+    @DisplayName("Should report the stock left when the single-call reduction is refused")
+    void testDecrementStockInsufficient() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(client.updateItem(any(UpdateItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder()
+            .item(Map.of(
+                ProductRepository.PRODUCT_ID, AttributeValue.fromS(productId.toString()),
+                ProductRepository.STOCK, AttributeValue.fromN("2")))
+            .build());
+
+        // Act & Assert
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+            () -> repository.decrementStock(productId, 3, null));
+        assertEquals(2, e.getAvailable());
+        verify(table, never()).getItem(any(GetItemEnhancedRequest.class));
+    }
+
+    @Test
+    @DisplayName("Should report a missing product when the refused reduction returns no item")
+    void testDecrementStockMissingProduct() {
+        UUID productId = UUID.randomUUID();
+        when(client.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().build());
+
+        assertThrows(UUIDNotFoundException.class, () -> repository.decrementStock(productId, 3, null));
+    }
+
+    @Test
+    @DisplayName("Should reduce a sharded product on one shard, moving on to the next when it holds too little")
+    void testDecrementStockOnShards() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        Product sharded = product(productId, 4);
+        sharded.setStockShards(2);
+        when(cache.peek(productId)).thenReturn(Optional.of(sharded));
+        when(client.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().build())
+            .thenReturn(UpdateItemResponse.builder().build());
+        when(shards.read(Map.of(productId, 2), true))
+            .thenReturn(Map.of(productId, new ShardedStock(new int[] { 3, 0 }, 1)));
+
+        // Act
+        StockChange change = repository.decrementStock(productId, 3, null);
+
+        // Assert
+        assertEquals(4, change.getProduct().getStock());
+        assertEquals(7, change.getPreviousStock());
+        ArgumentCaptor<UpdateItemRequest> requests = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client, times(2)).updateItem(requests.capture());
+        // One shard each, and never the product item
+        List<UpdateItemRequest> sent = requests.getAllValues();
+        sent.forEach(request -> assertEquals(StockShardRepository.TABLE_NAME, request.tableName()));
+        assertFalse(sent.get(0).key().equals(sent.get(1).key()));
+        verify(table, never()).getItem(any(GetItemEnhancedRequest.class));
+        verify(client, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("Should fold the shards at once when a shard reduction takes the stock below the threshold")
+    void testDecrementStockOnShardsFoldsCrossing() {
+        // Arrange: the stored item still has the stock of the last fold
+        UUID productId = UUID.randomUUID();
+        Product sharded = product(productId, 4);
+        sharded.setStockShards(2);
+        sharded.setLowStockThreshold(5);
+        when(cache.peek(productId)).thenReturn(Optional.of(sharded));
+        when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder().build());
+        ShardedStock stock = new ShardedStock(new int[] { 3, 0 }, 1);
+        when(shards.read(Map.of(productId, 2), true)).thenReturn(Map.of(productId, stock));
+        when(table.getItem(any(GetItemEnhancedRequest.class))).thenReturn(sharded.copy());
+        when(shards.snapshot(productId, 2)).thenReturn(stock);
+
+        // Act
+        StockChange change = repository.decrementStock(productId, 3, null);
+
+        // Assert
+        assertEquals(4, change.getProduct().getStock());
+        ArgumentCaptor<Consumer<TransactWriteItemsRequest.Builder>> fold = ArgumentCaptor.forClass(Consumer.class);
+        verify(client).transactWriteItems(fold.capture());
+        TransactWriteItemsRequest.Builder request = TransactWriteItemsRequest.builder();
+        fold.getValue().accept(request);
+        // The folded write on the product item sets the marker, which the stream turns into the event
+        assertTrue(request.build().transactItems().stream()
+            .filter(item -> item.update() != null && ProductRepository.TABLE_NAME.equals(item.update().tableName()))
+            .anyMatch(item -> item.update().updateExpression().contains("#lowStock = :lowStock")
+                && "4".equals(item.update().expressionAttributeValues().get(":stock").n())));
+    }
+
+    @Test
+    @DisplayName("Should sum the stock of a sharded product from its shards on every read")
+    void testGetByIdSumsShards() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        Product sharded = product(productId, 1);
+        sharded.setStockShards(3);
+        when(cache.get(eq(productId), any())).thenAnswer(invocation -> Optional.of(sharded.copy()));
+        when(shards.read(Map.of(productId, 3), false))
+            .thenReturn(Map.of(productId, new ShardedStock(new int[] { 4, 0, 2 }, 1)));
+
+        // Act
+        Product read = repository.getById(productId).orElseThrow();
+
+        // Assert
+        assertEquals(7, read.getStock());
+        assertEquals(1, read.getHeld());
+        verify(shards).read(Map.of(productId, 3), false);
+    }
+
+    @Test
+    @DisplayName("Should sum the stock of sharded products while streaming the whole table")
+    void testGetAllSumsShards() {
+        // Arrange: one segment holds a sharded and an unsharded product, the others nothing
+        UUID shardedId = UUID.randomUUID();
+        Product sharded = product(shardedId, 1);
+        sharded.setStockShards(2);
+        Product plain = product(UUID.randomUUID(), 1);
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> {
+            ScanEnhancedRequest request = invocation.getArgument(0);
+            List<Page<Product>> pages = request.segment() == 0
+                ? List.of(Page.create(List.of(sharded, plain)))
+                : List.of();
+            return PageIterable.create(pages::iterator);
+        });
+        when(shards.read(Map.of(shardedId, 2), false))
+            .thenReturn(Map.of(shardedId, new ShardedStock(new int[] { 3, 1 }, 0)));
+
+        // Act
+        List<Product> all = repository.getAll();
+
+        // Assert
+        assertEquals(2, all.size());
+        Map<UUID, Integer> stocks = new HashMap<>();
+        all.forEach(product -> stocks.put(product.getProductID(), product.getStock()));
+        assertEquals(4, stocks.get(shardedId));
+        assertEquals(10, stocks.get(plain.getProductID()));
+        verify(shards).read(Map.of(shardedId, 2), false);
+    }
+
+    @Test
+    @DisplayName("Should not read shards for a product that has none")
+    void testGetByIdUnsharded() {
+        UUID productId = UUID.randomUUID();
+        when(cache.get(eq(productId), any())).thenReturn(Optional.of(product(productId, 1)));
+
+        assertEquals(10, repository.getById(productId).orElseThrow().getStock());
+        verify(shards, never()).read(anyMap(), anyBoolean());
+    }
+}
@@ -0,0 +1,135 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class ProductTableSchemaTest {
+
+    private static final TableSchema<Product> BEAN_SCHEMA = TableSchema.fromBean(Product.class);
+
+    private static final TableSchema<Product> LEGACY = ProductTableSchema.create(ProductFormat.LEGACY);
+
+    private static final TableSchema<Product> COMPACT = ProductTableSchema.create(ProductFormat.COMPACT);
+
+    private static Product fullProduct() {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        product.setName("Paracetamol 500mg");
+        product.setCategory("Medicine");
+        product.setBrand("Panadol");
+        product.setStock(7);
+        product.setHeld(2);
+        product.setPriceInSGD(4.95);
+        product.setLowStockThreshold(12);
+        product.setStockShards(4);
+        product.setExpiryDate(Instant.parse("2026-03-04T10:15:30Z"));
+        product.setCreatedAt(Instant.parse("2025-01-01T00:00:00Z"));
+        product.setUpdatedAt(Instant.parse("2025-02-01T00:00:00Z"));
+        product.setVersion(3L);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should write the same item as the schema derived from the bean annotations in the legacy format")
+    void testItemToMap() {
+        Product product = fullProduct();
+
+        assertEquals(BEAN_SCHEMA.itemToMap(product, true), LEGACY.itemToMap(product, true));
+        Product sparse = new Product();
+        sparse.setProductID(product.getProductID());
+        assertEquals(BEAN_SCHEMA.itemToMap(sparse, true), LEGACY.itemToMap(sparse, true));
+    }
+
+    @Test
+    @DisplayName("Should write the compact names and map the legacy ones to null so a whole-item write removes them")
+    void testCompactItemToMap() {
+        Map<String, AttributeValue> item = COMPACT.itemToMap(fullProduct(), false);
+
+        assertEquals("2", item.get("h").n());
+        assertEquals(Long.toString(Instant.parse("2025-02-01T00:00:00Z").getEpochSecond()), item.get("u").n());
+        for (String legacy : List.of("held", "priceInSGD", "lowStockThreshold", "stockShards", "createdAt", "updatedAt")) {
+            assertTrue(item.get(legacy).nul(), legacy);
+        }
+        assertFalse(COMPACT.itemToMap(fullProduct(), true).containsKey("updatedAt"));
+        // Keys, index keys and the version keep their names
+        assertEquals(item.get(ProductRepository.PRODUCT_ID), LEGACY.itemToMap(fullProduct(), false).get(ProductRepository.PRODUCT_ID));
+        assertTrue(item.containsKey(ProductRepository.VERSION));
+    }
+
+    @Test
+    @DisplayName("Should read items written in either format back into the same product")
+    void testMapToItem() {
+        Product product = fullProduct();
+        Map<String, AttributeValue> legacyItem = BEAN_SCHEMA.itemToMap(product, true);
+        Map<String, AttributeValue> compactItem = COMPACT.itemToMap(product, true);
+        String expected = BEAN_SCHEMA.mapToItem(legacyItem).toString();
+
+        for (TableSchema<Product> schema : List.of(LEGACY, COMPACT)) {
+            assertEquals(expected, schema.mapToItem(legacyItem).toString());
+            assertEquals(expected, schema.mapToItem(compactItem).toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Should store a smaller item in the compact format")
+    void testCompactItemSize() {
+        Product product = fullProduct();
+
+        assertTrue(size(COMPACT.itemToMap(product, true)) < size(LEGACY.itemToMap(product, true)));
+    }
+
+    @Test
+    @DisplayName("Should declare the same keys and secondary indexes as the bean annotations")
+    void testTableMetadata() {
+        TableMetadata bean = BEAN_SCHEMA.tableMetadata();
+
+        assertEquals(Set.copyOf(BEAN_SCHEMA.attributeNames()), Set.copyOf(ProductTableSchema.FIELDS));
+        for (TableSchema<Product> schema : List.of(LEGACY, COMPACT)) {
+            TableMetadata generated = schema.tableMetadata();
+            assertTrue(schema.attributeNames().containsAll(BEAN_SCHEMA.attributeNames()));
+            assertEquals(bean.primaryPartitionKey(), generated.primaryPartitionKey());
+            assertEquals(indexNames(bean), indexNames(generated));
+            for (String index : indexNames(bean)) {
+                assertEquals(bean.indexPartitionKey(index), generated.indexPartitionKey(index));
+                assertEquals(bean.indexSortKey(index), generated.indexSortKey(index));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should project both stored names of a field whose name depends on the format")
+    void testStoredNames() {
+        assertEquals(List.of(ProductRepository.PRODUCT_ID, "updatedAt", "u", "name"),
+            ProductTableSchema.storedNames(List.of(ProductRepository.PRODUCT_ID, "updatedAt", "name")));
+        assertEquals(new HashSet<>(LEGACY.attributeNames()), Set.copyOf(ProductTableSchema.storedNames(ProductTableSchema.FIELDS)));
+    }
+
+    /** Item size as DynamoDB counts it for these types: names plus values as UTF-8. */
+    private static int size(Map<String, AttributeValue> item) {
+        return item.entrySet().stream()
+            .mapToInt(e -> e.getKey().length() + (e.getValue().s() != null ? e.getValue().s() : e.getValue().n()).length())
+            .sum();
+    }
+
+    private static Set<String> indexNames(TableMetadata metadata) {
+        return metadata.indices().stream().map(index -> index.name()).collect(Collectors.toSet());
+    }
+}
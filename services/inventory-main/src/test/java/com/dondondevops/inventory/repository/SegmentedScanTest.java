@@ -0,0 +1,91 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+
+class SegmentedScanTest {
+
+    private static Product product() {
+        Product product = new Product();
+        product.setProductID(UUID.randomUUID());
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should merge the pages of every segment and record per-segment metrics")
+    @SuppressWarnings("unchecked")
+    void testMergesAllSegments() {
+        // Arrange: each segment returns two pages of two products
+        DynamoDbTable<Product> table = mock(DynamoDbTable.class);
+        Set<UUID> expected = new HashSet<>();
+        List<List<Page<Product>>> segments = new ArrayList<>();
+        for (int segment = 0; segment < 3; segment++) {
+            List<Page<Product>> pages = new ArrayList<>();
+            for (int page = 0; page < 2; page++) {
+                Product first = product();
+                Product second = product();
+                expected.add(first.getProductID());
+                expected.add(second.getProductID());
+                pages.add(Page.create(List.of(first, second)));
+            }
+            segments.add(pages);
+        }
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> {
+            ScanEnhancedRequest request = invocation.getArgument(0);
+            assertEquals(3, request.totalSegments());
+            return PageIterable.create(() -> segments.get(request.segment()).iterator());
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        // Act: a buffer smaller than the table forces segments to wait for the consumer
+        Set<UUID> scanned = new HashSet<>();
+        try (SegmentedScan scan = new SegmentedScan(table, 3, 2, meterRegistry)) {
+            scan.forEachRemaining(product -> scanned.add(product.getProductID()));
+        }
+
+        // Assert
+        assertEquals(expected, scanned);
+        assertEquals(4.0, meterRegistry.get("inventory.scan.segment.items").tag("segment", "1").counter().count());
+        assertEquals(2.0, meterRegistry.get("inventory.scan.segment.pages").tag("segment", "2").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should fail the whole scan when one segment fails")
+    @SuppressWarnings("unchecked")
+    void testSegmentFailureIsPropagated() {
+        // Arrange
+        DynamoDbTable<Product> table = mock(DynamoDbTable.class);
+        when(table.scan(any(ScanEnhancedRequest.class))).thenAnswer(invocation -> {
+            ScanEnhancedRequest request = invocation.getArgument(0);
+            if (request.segment() == 1) {
+                throw new IllegalStateException("throttled");
+            }
+            return PageIterable.create(() -> List.of(Page.create(List.of(product()))).iterator());
+        });
+
+        // Act & Assert
+        try (SegmentedScan scan = new SegmentedScan(table, 2, 10, new SimpleMeterRegistry())) {
+            assertThrows(IllegalStateException.class, () -> scan.forEachRemaining(product -> { }));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.outbox.OutboxRecord;
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.model.Lease;
+import com.dondondevops.inventory.model.Reservation;
+import com.dondondevops.inventory.model.StockShard;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+/**
+ * The static schemas of the smaller tables must write the same items as the schemas derived
+ * from their bean annotations.
+ */
+class StaticTableSchemasTest {
+
+    private static <T> void assertSameMapping(Class<T> type, TableSchema<T> schema, T item) {
+        TableSchema<T> bean = TableSchema.fromBean(type);
+        assertEquals(bean.itemToMap(item, true), schema.itemToMap(item, true));
+        assertEquals(Set.copyOf(bean.attributeNames()), Set.copyOf(schema.attributeNames()));
+        assertEquals(bean.tableMetadata().primaryPartitionKey(), schema.tableMetadata().primaryPartitionKey());
+    }
+
+    @Test
+    @DisplayName("Should map outbox records, with their nested messages, like the bean schema")
+    void testOutboxRecord() {
+        OutboxRecord record = new OutboxRecord(List.of(new OutboxMessage("inventory.low-stock", "{}")));
+        record.setClaimedUntil(1L);
+
+        assertSameMapping(OutboxRecord.class, OutboxRepository.TABLE_SCHEMA, record);
+        assertEquals(record.getMessages().get(0).getPayload(), OutboxRepository.TABLE_SCHEMA
+            .mapToItem(OutboxRepository.TABLE_SCHEMA.itemToMap(record, true)).getMessages().get(0).getPayload());
+    }
+
+    @Test
+    @DisplayName("Should map idempotency records, stock shards, reservations and leases like the bean schema")
+    void testOtherTables() {
+        IdempotencyRecord record = new IdempotencyRecord("reduce-stock:abc", "f1", "{}");
+        record.setExpiresAt(Instant.now().getEpochSecond());
+        assertSameMapping(IdempotencyRecord.class, IdempotencyRepository.TABLE_SCHEMA, record);
+
+        StockShard shard = new StockShard();
+        shard.setShardId(StockShard.shardId(UUID.randomUUID(), 2));
+        shard.setProductId(UUID.randomUUID());
+        shard.setStock(9);
+        assertSameMapping(StockShard.class, StockShardRepository.TABLE_SCHEMA, shard);
+
+        assertSameMapping(Reservation.class, ReservationRepository.TABLE_SCHEMA,
+            new Reservation(UUID.randomUUID(), 3, Duration.ofMinutes(15)));
+
+        Lease lease = new Lease();
+        lease.setName("product-stream");
+        lease.setOwner(UUID.randomUUID().toString());
+        lease.setExpiresAt(System.currentTimeMillis());
+        lease.setProgress(Map.of("shardId-0001", "END"));
+        assertSameMapping(Lease.class, LeaseRepository.TABLE_SCHEMA, lease);
+    }
+}
@@ -0,0 +1,241 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.StockTransactionCancelledException;
+import com.dondondevops.inventory.exception.UUIDNotFoundException;
+import com.dondondevops.inventory.exception.WriteConflictException;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ReduceStockResult;
+
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+class StockTransactionTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static Product productWithStock(UUID id, int stock) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setStock(stock);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should compute the exact changes and append the outbox record to the writes")
+    void testChangesAndRequest() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Map<UUID, StockDelta> deltas = new LinkedHashMap<>();
+        deltas.put(first, new StockDelta(-3, null));
+        deltas.put(second, new StockDelta(-1, null));
+
+        StockTransaction transaction = new StockTransaction(deltas,
+            Map.of(first, productWithStock(first, 12), second, productWithStock(second, 41)), NOW);
+
+        assertEquals(9, transaction.getChanges().get(0).getProduct().getStock());
+        assertEquals(12, transaction.getChanges().get(0).getPreviousStock());
+        assertEquals(40, transaction.getChanges().get(1).getProduct().getStock());
+        assertEquals(1L, transaction.getChanges().get(0).getProduct().getVersion());
+
+        TransactWriteItem outbox = TransactWriteItem.builder().put(Put.builder().tableName("InventoryOutbox").build()).build();
+        assertEquals(3, transaction.toRequest(Optional.of(outbox), Optional.empty()).transactItems().size());
+        assertEquals(2, transaction.toRequest(Optional.empty(), Optional.empty()).transactItems().size());
+    }
+
+    @Test
+    @DisplayName("Should reject missing products and short stock before writing anything")
+    void testPreconditions() {
+        UUID missing = UUID.randomUUID();
+        UUID low = UUID.randomUUID();
+        UUID fine = UUID.randomUUID();
+        Map<UUID, StockDelta> deltas = new LinkedHashMap<>();
+        deltas.put(missing, new StockDelta(-1, null));
+        deltas.put(low, new StockDelta(-5, null));
+        deltas.put(fine, new StockDelta(-1, null));
+
+        StockTransactionCancelledException e = assertThrows(StockTransactionCancelledException.class,
+            () -> new StockTransaction(deltas, Map.of(low, productWithStock(low, 2), fine, productWithStock(fine, 20)), NOW));
+
+        List<ReduceStockResult> results = e.getResults();
+        assertEquals(ReduceStockResult.Status.NOT_FOUND, results.get(0).getStatus());
+        assertEquals(ReduceStockResult.Status.INSUFFICIENT_STOCK, results.get(1).getStatus());
+        assertEquals(2, results.get(1).getStock());
+        assertEquals(ReduceStockResult.Status.ROLLED_BACK, results.get(2).getStatus());
+
+        assertInstanceOf(UUIDNotFoundException.class,
+            StockTransaction.singleProductFailure(missing, new StockTransactionCancelledException(results.subList(0, 1))));
+        assertInstanceOf(InsufficientStockException.class,
+            StockTransaction.singleProductFailure(low, new StockTransactionCancelledException(results.subList(1, 2))));
+    }
+
+    @Test
+    @DisplayName("Should retry only when the product changed since it was read")
+    void testIsConflict() {
+        UUID id = UUID.randomUUID();
+        Product product = productWithStock(id, 5);
+        product.setVersion(7L);
+        StockTransaction transaction = new StockTransaction(Map.of(id, new StockDelta(-1, null)),
+            Map.of(id, product), NOW);
+
+        assertEquals(8L, transaction.getChanges().get(0).getProduct().getVersion());
+        assertEquals(List.of(id), transaction.conflicted(cancelled("ConditionalCheckFailed", "None")));
+        assertEquals(List.of(), transaction.conflicted(cancelled("None", "ConditionalCheckFailed")));
+
+        assertTrue(transaction.isConflict(cancelled("ConditionalCheckFailed", "None")));
+        assertTrue(transaction.isConflict(cancelled("TransactionConflict", "None")));
+        assertFalse(transaction.isConflict(cancelled("ValidationError", "None")));
+        List<ReduceStockResult> results = transaction.cancellationResults(cancelled("ConditionalCheckFailed", "None"));
+        assertEquals(ReduceStockResult.Status.FAILED, results.get(0).getStatus());
+        assertInstanceOf(WriteConflictException.class,
+            StockTransaction.singleProductFailure(id, new StockTransactionCancelledException(results)));
+    }
+
+    @Test
+    @DisplayName("Should take from one shard holding enough, else spread the take over several")
+    void testShardTakes() {
+        List<int[]> single = StockTransaction.shardTakes(new int[] { 0, 2, 9 }, 5, 0);
+        assertEquals(1, single.size());
+        assertArrayEquals(new int[] { 2, 5 }, single.get(0));
+
+        List<int[]> spread = StockTransaction.shardTakes(new int[] { 3, 0, 4 }, 6, 2);
+        assertEquals(2, spread.size());
+        assertArrayEquals(new int[] { 2, 4 }, spread.get(0));
+        assertArrayEquals(new int[] { 0, 2 }, spread.get(1));
+
+        assertEquals(1, StockTransaction.emptiestShard(new int[] { 5, 1, 1 }, 0));
+        assertEquals(2, StockTransaction.emptiestShard(new int[] { 5, 1, 1 }, 2));
+    }
+
+    @Test
+    @DisplayName("Should check and report the stock of a sharded product as the sum of its shards and held units")
+    void testShardedProduct() {
+        UUID id = UUID.randomUUID();
+        Product product = productWithStock(id, 0);
+        product.setStockShards(3);
+        product.setVersion(4L);
+        Map<UUID, ShardedStock> shards = Map.of(id, new ShardedStock(new int[] { 2, 2, 6 }, 3));
+
+        StockTransaction transaction = new StockTransaction(Map.of(id, new StockDelta(-5, null)),
+            Map.of(id, product), shards, NOW, ProductFormat.LEGACY);
+
+        StockChange change = transaction.getChanges().get(0);
+        assertEquals(13, change.getPreviousStock());
+        assertEquals(8, change.getProduct().getStock());
+        assertEquals(3, change.getProduct().getHeld());
+        // Only a shard is written, so the product keeps its version
+        assertEquals(4L, change.getProduct().getVersion());
+        List<TransactWriteItem> items = transaction.toRequest(Optional.empty(), Optional.empty()).transactItems();
+        assertEquals(1, items.size());
+        TransactWriteItem write = items.get(0);
+        assertEquals(StockShardRepository.TABLE_NAME, write.update().tableName());
+        assertEquals(id + "#2", write.update().key().get("shardId").s());
+        assertEquals("#stock >= :quantity", write.update().conditionExpression());
+
+        // The held units are not on the shards, so they cannot be taken
+        StockTransactionCancelledException e = assertThrows(StockTransactionCancelledException.class,
+            () -> new StockTransaction(Map.of(id, new StockDelta(-11, null)), Map.of(id, product), shards, NOW,
+                ProductFormat.LEGACY));
+        assertEquals(10, e.getResults().get(0).getStock());
+    }
+
+    @Test
+    @DisplayName("Should move held units of a sharded product between its shards and its held item only")
+    void testShardedHolds() {
+        UUID id = UUID.randomUUID();
+        Product product = productWithStock(id, 0);
+        product.setStockShards(2);
+        Map<UUID, ShardedStock> shards = Map.of(id, new ShardedStock(new int[] { 5, 5 }, 2));
+
+        StockTransaction reserve = new StockTransaction(Map.of(id, new StockDelta(0, null, 4)),
+            Map.of(id, product), shards, NOW, ProductFormat.LEGACY);
+        List<TransactWriteItem> reserveItems = reserve.toRequest(Optional.empty(), Optional.empty()).transactItems();
+        assertEquals(2, reserveItems.size());
+        assertEquals("SET #stock = #stock - :quantity", reserveItems.get(0).update().updateExpression());
+        assertEquals(id + "#held", reserveItems.get(1).update().key().get("shardId").s());
+        assertEquals("4", reserveItems.get(1).update().expressionAttributeValues().get(":quantity").n());
+        assertEquals(12, reserve.getChanges().get(0).getProduct().getStock());
+        assertEquals(6, reserve.getChanges().get(0).getProduct().getHeld());
+
+        // Committing only takes the units off the held item
+        StockTransaction commit = new StockTransaction(Map.of(id, new StockDelta(-2, null, -2)),
+            Map.of(id, product), shards, NOW, ProductFormat.LEGACY);
+        List<TransactWriteItem> commitItems = commit.toRequest(Optional.empty(), Optional.empty()).transactItems();
+        assertEquals(1, commitItems.size());
+        assertEquals(id + "#held", commitItems.get(0).update().key().get("shardId").s());
+        assertEquals("#stock >= :quantity", commitItems.get(0).update().conditionExpression());
+        assertEquals(10, commit.getChanges().get(0).getProduct().getStock());
+        assertEquals(0, commit.getChanges().get(0).getProduct().getHeld());
+    }
+
+    @Test
+    @DisplayName("Should only let reservations and reductions take units not already held")
+    void testHeldUnits() {
+        UUID id = UUID.randomUUID();
+        Product product = productWithStock(id, 10);
+        product.setHeld(7);
+
+        StockTransactionCancelledException e = assertThrows(StockTransactionCancelledException.class,
+            () -> new StockTransaction(Map.of(id, new StockDelta(0, null, 4)), Map.of(id, product), NOW));
+        assertEquals(ReduceStockResult.Status.INSUFFICIENT_STOCK, e.getResults().get(0).getStatus());
+        assertEquals(3, e.getResults().get(0).getStock());
+        assertThrows(StockTransactionCancelledException.class,
+            () -> new StockTransaction(Map.of(id, new StockDelta(-4, null)), Map.of(id, product), NOW));
+
+        Product reserved = new StockTransaction(Map.of(id, new StockDelta(0, null, 3)), Map.of(id, product), NOW)
+            .getChanges().get(0).getProduct();
+        assertEquals(10, reserved.getStock());
+        assertEquals(10, reserved.getHeld());
+        assertEquals(0, reserved.getAvailable());
+
+        // Committing takes held units off the stock, even with nothing else available
+        Product committed = new StockTransaction(Map.of(id, new StockDelta(-7, null, -7)), Map.of(id, reserved), NOW)
+            .getChanges().get(0).getProduct();
+        assertEquals(3, committed.getStock());
+        assertEquals(3, committed.getHeld());
+    }
+
+    @Test
+    @DisplayName("Should commit writes on other tables between the stock writes and the outbox record")
+    void testOtherWrites() {
+        UUID id = UUID.randomUUID();
+        StockTransaction transaction = new StockTransaction(Map.of(id, new StockDelta(0, null, 1)),
+            Map.of(id, productWithStock(id, 5)), NOW);
+        TransactWriteItem reservation = TransactWriteItem.builder().put(Put.builder().tableName("InventoryReservation").build()).build();
+        TransactWriteItem outbox = TransactWriteItem.builder().put(Put.builder().tableName("InventoryOutbox").build()).build();
+
+        List<TransactWriteItem> items = transaction.toRequest(List.of(reservation), Optional.of(outbox), Optional.empty())
+            .transactItems();
+        assertEquals(3, items.size());
+        assertEquals("InventoryReservation", items.get(1).put().tableName());
+        assertEquals("InventoryOutbox", items.get(2).put().tableName());
+    }
+
+    private static TransactionCanceledException cancelled(String... codes) {
+        return TransactionCanceledException.builder()
+            .cancellationReasons(Arrays.stream(codes)
+                .map(code -> CancellationReason.builder().code(code).build())
+                .toList())
+            .build();
+    }
+}
@@ -0,0 +1,129 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+
+class StockUpdateTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static Product productWithStock(int stock, Integer threshold) {
+        Product product = new Product();
+        product.setStock(stock);
+        product.setLowStockThreshold(threshold);
+        return product;
+    }
+
+    @Test
+    @DisplayName("Should set the low-stock marker when a reduction takes the product below threshold")
+    void testReductionIntoLowStock() {
+        StockUpdate update = StockUpdate.of(productWithStock(12, null), new StockDelta(-3, null), NOW, ProductFormat.LEGACY);
+
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now, #lowStock = :lowStock"
+            + " REMOVE #otherUpdatedAt", update.getExpression());
+        assertEquals("attribute_not_exists(#version)", update.getCondition());
+        assertEquals("1", update.getValues().get(":nextVersion").n());
+        assertEquals("9", update.getValues().get(":stock").n());
+        assertEquals(Product.LOW_STOCK_MARKER, update.getValues().get(":lowStock").s());
+    }
+
+    @Test
+    @DisplayName("Should remove the low-stock marker when a restock leaves the product above threshold")
+    void testRestockOutOfLowStock() {
+        StockUpdate update = StockUpdate.of(productWithStock(5, null), new StockDelta(20, null), NOW, ProductFormat.LEGACY);
+
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now REMOVE #otherUpdatedAt, #lowStock",
+            update.getExpression());
+        assertEquals("25", update.getValues().get(":stock").n());
+        assertFalse(update.getValues().containsKey(":lowStock"));
+    }
+
+    @Test
+    @DisplayName("Should move the product to the new expiry day bucket when the expiry date changes")
+    void testRestockWithExpiryDate() {
+        Instant expiry = Instant.parse("2025-03-04T10:15:30Z");
+        StockUpdate update = StockUpdate.of(productWithStock(20, null), new StockDelta(10, expiry), NOW, ProductFormat.LEGACY);
+
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now, #expiryDate = :expiryDate, #expiryDay = :expiryDay"
+            + " REMOVE #otherUpdatedAt, #lowStock", update.getExpression());
+        assertEquals("2025-03-04T10:15:30Z", update.getValues().get(":expiryDate").s());
+        assertEquals("2025-03-04", update.getValues().get(":expiryDay").s());
+    }
+
+    @Test
+    @DisplayName("Should judge low stock by the product's own threshold")
+    void testProductThreshold() {
+        StockUpdate update = StockUpdate.of(productWithStock(30, 25), new StockDelta(-6, null), NOW, ProductFormat.LEGACY);
+
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now, #lowStock = :lowStock"
+            + " REMOVE #otherUpdatedAt", update.getExpression());
+        assertEquals("24", update.getValues().get(":stock").n());
+    }
+
+    @Test
+    @DisplayName("Should require the version read and move it on")
+    void testVersionCondition() {
+        Product product = productWithStock(30, null);
+        product.setVersion(41L);
+        StockUpdate update = StockUpdate.of(product, new StockDelta(-1, null), NOW, ProductFormat.LEGACY);
+
+        assertEquals("#version = :version", update.getCondition());
+        assertEquals("41", update.getValues().get(":version").n());
+        assertEquals("42", update.getValues().get(":nextVersion").n());
+    }
+
+    @Test
+    @DisplayName("Should set the held units when a reservation changes them")
+    void testHeldUnits() {
+        Product product = productWithStock(30, null);
+        product.setHeld(4);
+        StockUpdate update = StockUpdate.of(product, new StockDelta(0, null, 6), NOW, ProductFormat.LEGACY);
+
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now, #held = :held"
+            + " REMOVE #otherUpdatedAt, #otherHeld, #lowStock",
+            update.getExpression());
+        assertEquals("10", update.getValues().get(":held").n());
+        assertEquals("30", update.getValues().get(":stock").n());
+    }
+
+    @Test
+    @DisplayName("Should set the shard count and folded stock when resharding, and remove it when unsharding")
+    void testResharded() {
+        Product product = productWithStock(40, null);
+        StockUpdate sharded = StockUpdate.resharded(product, 4, 0, 8, NOW, ProductFormat.LEGACY);
+
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now, #lowStock = :lowStock,"
+            + " #stockShards = :stockShards REMOVE #otherUpdatedAt, #otherStockShards", sharded.getExpression());
+        assertEquals("4", sharded.getValues().get(":stock").n());
+        assertEquals("8", sharded.getValues().get(":stockShards").n());
+
+        StockUpdate unsharded = StockUpdate.resharded(product, 40, 3, 0, NOW, ProductFormat.LEGACY);
+        assertEquals("SET #stock = :stock, #version = :nextVersion, #updatedAt = :now, #held = :held"
+            + " REMOVE #otherUpdatedAt, #otherHeld, #lowStock, #otherStockShards, #stockShards",
+            unsharded.getExpression());
+        // The held units come back onto the product from their own item
+        assertEquals("3", unsharded.getValues().get(":held").n());
+    }
+
+    @Test
+    @DisplayName("Should write the compact names and an epoch-second timestamp, and remove the legacy ones")
+    void testCompactFormat() {
+        Product product = productWithStock(30, null);
+        product.setHeld(4);
+        StockUpdate update = StockUpdate.of(product, new StockDelta(0, null, 2), NOW, ProductFormat.COMPACT);
+
+        assertEquals("u", update.getNames().get("#updatedAt"));
+        assertEquals("h", update.getNames().get("#held"));
+        assertEquals("updatedAt", update.getNames().get("#otherUpdatedAt"));
+        assertEquals("held", update.getNames().get("#otherHeld"));
+        assertEquals(Long.toString(NOW.getEpochSecond()), update.getValues().get(":now").n());
+        assertEquals("6", update.getValues().get(":held").n());
+    }
+}
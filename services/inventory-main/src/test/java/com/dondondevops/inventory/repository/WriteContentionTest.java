@@ -0,0 +1,79 @@
+package com.dondondevops.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WriteContentionTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WriteContention contention = new WriteContention(meterRegistry, Duration.ofMillis(5),
+        Duration.ofMillis(40), 2);
+
+    @Test
+    @DisplayName("Should keep each backoff under a cap that doubles per attempt up to the max delay")
+    void testBackoffIsCapped() {
+        Duration[] caps = { Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(20),
+            Duration.ofMillis(40), Duration.ofMillis(40), Duration.ofMillis(40) };
+
+        for (int attempt = 1; attempt <= caps.length; attempt++) {
+            Duration longest = Duration.ZERO;
+            for (int i = 0; i < 1000; i++) {
+                Duration delay = contention.backoff(attempt);
+                assertTrue(!delay.isNegative() && delay.compareTo(caps[attempt - 1]) <= 0,
+                    "attempt " + attempt + " waited " + delay);
+                longest = delay.compareTo(longest) > 0 ? delay : longest;
+            }
+            // Full jitter spreads the delays over the whole range, not just near zero
+            assertTrue(longest.compareTo(caps[attempt - 1].dividedBy(2)) > 0);
+        }
+        assertTrue(contention.backoff(Integer.MAX_VALUE).compareTo(Duration.ofMillis(40)) <= 0);
+    }
+
+    @Test
+    @DisplayName("Should not wait at all when the base delay is zero")
+    void testZeroBaseDelay() {
+        WriteContention immediate = new WriteContention(meterRegistry, Duration.ZERO, Duration.ZERO, 10);
+
+        assertEquals(Duration.ZERO, immediate.backoff(1));
+        assertEquals(Duration.ZERO, immediate.backoff(5));
+    }
+
+    @Test
+    @DisplayName("Should reject a max delay below the base delay")
+    void testRejectsInvertedDelays() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new WriteContention(meterRegistry, Duration.ofMillis(10), Duration.ofMillis(5), 10));
+    }
+
+    @Test
+    @DisplayName("Should count conflicts per product and fold products past the tracked limit together")
+    void testConflictsAreTaggedPerProduct() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        contention.conflicted(List.of(first, second), WriteContention.STOCK, 1);
+        contention.conflicted(List.of(first, third), WriteContention.STOCK, 2);
+        contention.exhausted(List.of(third), WriteContention.UPDATE);
+
+        assertEquals(2.0, meterRegistry.get("inventory.product.contention")
+            .tag("productId", first.toString()).tag("operation", WriteContention.STOCK).counter().count());
+        assertEquals(1.0, meterRegistry.get("inventory.product.contention")
+            .tag("productId", WriteContention.OTHER_PRODUCTS).tag("operation", WriteContention.STOCK)
+            .counter().count());
+        assertEquals(1.0, meterRegistry.get("inventory.product.contention.exhausted")
+            .tag("productId", WriteContention.OTHER_PRODUCTS).tag("operation", WriteContention.UPDATE)
+            .counter().count());
+    }
+}
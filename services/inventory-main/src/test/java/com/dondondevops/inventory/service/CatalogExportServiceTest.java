@@ -0,0 +1,105 @@
+package com.dondondevops.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+
+import io.micronaut.serde.ObjectMapper;
+import io.micronaut.test.annotation.MockBean;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+
+@MicronautTest(startApplication = false)
+class CatalogExportServiceTest {
+
+    // More than two chunks, so the gzip member spans several flushed blocks
+    private static final int PRODUCTS = 1201;
+
+    @Inject
+    CatalogExportService exportService;
+
+    @Inject
+    ProductService productService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @MockBean(ProductService.class)
+    ProductService productService() {
+        return mock(ProductService.class);
+    }
+
+    private static List<Product> catalog() {
+        return IntStream.range(0, PRODUCTS).mapToObj(index -> {
+            Product product = new Product();
+            product.setProductID(UUID.randomUUID());
+            product.setName("Product " + index);
+            product.setStock(index);
+            return product;
+        }).toList();
+    }
+
+    @Test
+    @DisplayName("Should gzip the export into one member that inflates to every NDJSON line in order")
+    void testGzipExportInflatesToNdjson() throws IOException {
+        // Arrange
+        List<Product> products = catalog();
+        when(productService.streamAll()).thenAnswer(invocation -> products.stream());
+
+        // Act
+        List<byte[]> chunks = exportService.exportNdjson(true).collectList().block();
+
+        // Assert
+        assertTrue(chunks.size() > 1);
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            assertTrue(chunk.length > 0);
+            concatenated.write(chunk);
+        }
+
+        String[] lines;
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(concatenated.toByteArray()))) {
+            String body = new String(gunzip.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(body.endsWith("\n"));
+            lines = body.split("\n");
+        }
+
+        assertEquals(PRODUCTS, lines.length);
+        for (int index = 0; index < PRODUCTS; index++) {
+            Product line = objectMapper.readValue(lines[index], Product.class);
+            assertEquals(products.get(index).getProductID(), line.getProductID());
+            assertEquals(index, line.getStock());
+        }
+    }
+
+    @Test
+    @DisplayName("Should write the same lines uncompressed when gzip is not asked for")
+    void testPlainExport() {
+        // Arrange
+        List<Product> products = catalog();
+        when(productService.streamAll()).thenAnswer(invocation -> products.stream());
+
+        // Act
+        String body = String.join("", exportService.exportNdjson(false)
+            .map(chunk -> new String(chunk, StandardCharsets.UTF_8))
+            .collectList().block());
+
+        // Assert
+        assertEquals(PRODUCTS, body.split("\n").length);
+    }
+}
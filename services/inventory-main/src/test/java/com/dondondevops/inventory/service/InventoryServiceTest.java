@@ -0,0 +1,302 @@
+package com.dondondevops.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
+
+import com.dondondevops.inventory.event.dto.RestockedEvent;
+import com.dondondevops.inventory.event.outbox.OutboxMessage;
+import com.dondondevops.inventory.event.publisher.InventoryEventPublisher;
+import com.dondondevops.inventory.exception.IdempotencyKeyReusedException;
+import com.dondondevops.inventory.exception.InsufficientStockException;
+import com.dondondevops.inventory.exception.InvalidRequestException;
+import com.dondondevops.inventory.exception.StockTransactionCancelledException;
+import com.dondondevops.inventory.model.BatchReduceStockRequest;
+import com.dondondevops.inventory.model.BatchReduceStockResponse;
+import com.dondondevops.inventory.model.BulkRestockRequest;
+import com.dondondevops.inventory.model.IdempotencyRecord;
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.ProductPage;
+import com.dondondevops.inventory.model.ReduceStockItem;
+import com.dondondevops.inventory.model.ReduceStockRequest;
+import com.dondondevops.inventory.model.ReduceStockResult;
+import com.dondondevops.inventory.model.RestockRequest;
+import com.dondondevops.inventory.model.RestockResult;
+import com.dondondevops.inventory.repository.IdempotencyRepository;
+import com.dondondevops.inventory.repository.ProductRepository;
+import com.dondondevops.inventory.repository.StockChange;
+import com.dondondevops.inventory.repository.StockDelta;
+import com.dondondevops.inventory.repository.StockEvents;
+import com.dondondevops.inventory.repository.StockReceipt;
+
+import io.micronaut.serde.ObjectMapper;
+import io.micronaut.test.annotation.MockBean;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+
+@MicronautTest(startApplication = false)
+class InventoryServiceTest {
+
+    @Inject
+    InventoryService inventoryService;
+
+    @Inject
+    ProductRepository repository;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    private final List<OutboxMessage> outboxed = new CopyOnWriteArrayList<>();
+
+    @Inject
+    IdempotencyRepository idempotencyRepository;
+
+    @MockBean(ProductRepository.class)
+    ProductRepository productRepository() {
+        return mock(ProductRepository.class);
+    }
+
+    @MockBean(IdempotencyRepository.class)
+    IdempotencyRepository idempotencyRepository() {
+        return mock(IdempotencyRepository.class);
+    }
+
+    private static Product productWithStock(UUID id, int stock) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setStock(stock);
+        return product;
+    }
+
+    /**
+     * Commits {@code changes}, recording the outbox messages the service asks to write with them.
+     */
+    private <T> Answer<T> committing(T result, List<StockChange> changes) {
+        return invocation -> {
+            for (Object argument : invocation.getArguments()) {
+                if (argument instanceof StockEvents events) {
+                    outboxed.addAll(events.of(changes));
+                }
+            }
+            return result;
+        };
+    }
+
+    private Answer<StockChange> committing(StockChange change) {
+        return committing(change, List.of(change));
+    }
+
+    private List<OutboxMessage> outboxed(String routingKey) {
+        return outboxed.stream().filter(message -> routingKey.equals(message.getRoutingKey())).toList();
+    }
+
+    private <T> T payload(OutboxMessage message, Class<T> type) throws IOException {
+        return objectMapper.readValue(message.getPayload(), type);
+    }
+
+    @Test
+    @DisplayName("Should reduce in a single call and leave the low stock event to the product stream")
+    void testReduceLeavesLowStockToStream() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(repository.decrementStock(eq(productId), eq(5), any()))
+            .thenAnswer(committing(new StockChange(productWithStock(productId, 8), 13)));
+
+        // Act
+        Product updated = inventoryService.reduce(productId, new ReduceStockRequest(5));
+
+        // Assert
+        assertEquals(8, updated.getStock());
+        verify(repository).decrementStock(productId, 5, null);
+        assertTrue(outboxed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reduce off the calling thread when no async repository is configured")
+    void testReduceAsyncFallsBackToBlockingRepository() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(repository.decrementStock(eq(productId), eq(5), any()))
+            .thenAnswer(committing(new StockChange(productWithStock(productId, 8), 13)));
+
+        // Act
+        Product updated = inventoryService.reduceAsync(productId, new ReduceStockRequest(5)).block();
+
+        // Assert
+        assertEquals(8, updated.getStock());
+        assertThrows(InvalidRequestException.class,
+            () -> inventoryService.reduceAsync(productId, new ReduceStockRequest(0)).block());
+    }
+
+    @Test
+    @DisplayName("Should surface insufficient stock without publishing events")
+    void testReduceInsufficientStock() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        when(repository.decrementStock(eq(productId), eq(50), any()))
+            .thenThrow(new InsufficientStockException(productId, 50, 4));
+
+        // Act & Assert
+        assertThrows(InsufficientStockException.class,
+            () -> inventoryService.reduce(productId, new ReduceStockRequest(50)));
+        assertTrue(outboxed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should merge duplicate products into one batch transaction")
+    void testReduceBatchMergesItems() {
+        // Arrange
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        List<StockChange> changes = List.of(
+            new StockChange(productWithStock(first, 9), 12),
+            new StockChange(productWithStock(second, 40), 41));
+        when(repository.decrementStock(anyMap(), any())).thenAnswer(committing(changes, changes));
+
+        BatchReduceStockRequest request = new BatchReduceStockRequest(List.of(
+            new ReduceStockItem(first, 1),
+            new ReduceStockItem(second, 1),
+            new ReduceStockItem(first, 2)));
+
+        // Act
+        BatchReduceStockResponse response = inventoryService.reduceBatch(request);
+
+        // Assert
+        ArgumentCaptor<Map<UUID, Integer>> quantitiesCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(repository).decrementStock(quantitiesCaptor.capture(), any());
+        assertEquals(Map.of(first, 3, second, 1), quantitiesCaptor.getValue());
+
+        assertTrue(response.isCommitted());
+        assertEquals(2, response.getItems().size());
+        assertEquals(ReduceStockResult.Status.REDUCED, response.getItems().get(0).getStatus());
+        assertTrue(outboxed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should return per-item reasons without writing events when the transaction is cancelled")
+    void testReduceBatchCancelled() {
+        // Arrange
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(repository.decrementStock(anyMap(), any())).thenThrow(new StockTransactionCancelledException(List.of(
+            new ReduceStockResult(first, 1, ReduceStockResult.Status.ROLLED_BACK, null, null),
+            new ReduceStockResult(second, 5, ReduceStockResult.Status.INSUFFICIENT_STOCK, 2, null))));
+
+        BatchReduceStockRequest request = new BatchReduceStockRequest(List.of(
+            new ReduceStockItem(first, 1),
+            new ReduceStockItem(second, 5)));
+
+        // Act
+        BatchReduceStockResponse response = inventoryService.reduceBatch(request);
+
+        // Assert
+        assertFalse(response.isCommitted());
+        assertEquals(ReduceStockResult.Status.INSUFFICIENT_STOCK, response.getItems().get(1).getStatus());
+        assertEquals(2, response.getItems().get(1).getStock());
+        assertTrue(outboxed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should retry a bulk restock without missing products and write one aggregated event")
+    void testRestockBulkAggregatesEvent() throws IOException {
+        // Arrange
+        UUID found = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        when(repository.changeStock(anyMap(), any(), any()))
+            .thenThrow(new StockTransactionCancelledException(List.of(
+                new ReduceStockResult(found, 30, ReduceStockResult.Status.ROLLED_BACK, null, null),
+                new ReduceStockResult(missing, 10, ReduceStockResult.Status.NOT_FOUND, null, null))))
+            .thenAnswer(committing(List.of(new StockChange(productWithStock(found, 45), 15)),
+                List.of(new StockChange(productWithStock(found, 45), 15))));
+
+        BulkRestockRequest request = new BulkRestockRequest(List.of(
+            new RestockRequest(found, 30, null, null),
+            new RestockRequest(missing, 10, null, null),
+            new RestockRequest(null, 5, null, null)));
+
+        // Act
+        List<RestockResult> results = inventoryService.restockBulk(request);
+
+        // Assert
+        assertEquals(RestockResult.Status.RESTOCKED, results.get(0).getStatus());
+        assertEquals(45, results.get(0).getStockAfter());
+        assertEquals(RestockResult.Status.NOT_FOUND, results.get(1).getStatus());
+        assertEquals(RestockResult.Status.FAILED, results.get(2).getStatus());
+
+        ArgumentCaptor<Map<UUID, StockDelta>> deltasCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(repository, times(2)).changeStock(deltasCaptor.capture(), any(), any());
+        assertEquals(List.of(found, missing), List.copyOf(deltasCaptor.getAllValues().get(0).keySet()));
+        assertEquals(List.of(found), List.copyOf(deltasCaptor.getAllValues().get(1).keySet()));
+
+        List<OutboxMessage> messages = outboxed(InventoryEventPublisher.RESTOCKED);
+        assertEquals(1, messages.size());
+        RestockedEvent event = payload(messages.get(0), RestockedEvent.class);
+        assertEquals(1, event.getItems().size());
+        assertEquals(found, event.getItem().getProductId());
+        assertEquals(30, event.getItem().getAdded());
+    }
+
+    @Test
+    @DisplayName("Should store the response with the change and replay it for a repeated key")
+    void testReduceReplaysIdempotentRequest() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        StockChange change = new StockChange(productWithStock(productId, 30), 35);
+        ArgumentCaptor<StockReceipt> receiptCaptor = ArgumentCaptor.forClass(StockReceipt.class);
+        when(repository.decrementStock(eq(productId), eq(5), receiptCaptor.capture()))
+            .thenAnswer(committing(change));
+        when(idempotencyRepository.find("reduce-stock#order-42")).thenReturn(Optional.empty());
+
+        // Act
+        inventoryService.reduceAsync(productId, new ReduceStockRequest(5), "order-42").block();
+        IdempotencyRecord record = receiptCaptor.getValue().of(List.of(change));
+        when(idempotencyRepository.find("reduce-stock#order-42")).thenReturn(Optional.of(record));
+        Product replayed = inventoryService.reduceAsync(productId, new ReduceStockRequest(5), "order-42").block();
+
+        // Assert
+        assertEquals(30, replayed.getStock());
+        verify(repository, times(1)).decrementStock(eq(productId), eq(5), any());
+        assertThrows(IdempotencyKeyReusedException.class,
+            () -> inventoryService.reduceAsync(productId, new ReduceStockRequest(6), "order-42").block());
+    }
+
+    @Test
+    @DisplayName("Should query the expiry index only for a valid range")
+    void testGetExpiringValidatesRange() {
+        Instant from = Instant.parse("2025-01-01T00:00:00Z");
+        Product product = productWithStock(UUID.randomUUID(), 3);
+        when(repository.getExpiring(from, from.plus(7, ChronoUnit.DAYS), 100, null))
+            .thenReturn(new ProductPage(List.of(product), null));
+
+        assertEquals(List.of(product),
+            inventoryService.getExpiring(from, from.plus(7, ChronoUnit.DAYS), null, null).getItems());
+        assertThrows(InvalidRequestException.class,
+            () -> inventoryService.getExpiring(from, from.minusSeconds(1), null, null));
+        assertThrows(InvalidRequestException.class,
+            () -> inventoryService.getExpiring(from, from.plus(400, ChronoUnit.DAYS), null, null));
+        assertThrows(InvalidRequestException.class,
+            () -> inventoryService.getExpiring(from, from.plus(7, ChronoUnit.DAYS), 5000, null));
+    }
+}
@@ -0,0 +1,119 @@
+package com.dondondevops.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dondondevops.inventory.model.Product;
+import com.dondondevops.inventory.model.UpdateProductRequest;
+import com.dondondevops.inventory.repository.ProductRepository;
+
+import io.micronaut.test.annotation.MockBean;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+
+@MicronautTest(startApplication = false)
+class ProductServiceTest {
+
+    @Inject
+    ProductService productService;
+
+    @Inject
+    ProductRepository repository;
+
+    @MockBean(ProductRepository.class)
+    ProductRepository productRepository() {
+        return mock(ProductRepository.class);
+    }
+
+    private static Product panadol(UUID id) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setName("Panadol");
+        product.setCategory("Medicine");
+        product.setBrand("GSK");
+        product.setPriceInSGD(9.9);
+        product.setStock(40);
+        product.setLowStockThreshold(10);
+        return product;
+    }
+
+    /**
+     * Applies the service's change to {@code current} the way the repository does on a fresh read.
+     */
+    @SuppressWarnings("unchecked")
+    private void stubUpdate(UUID id, Product current) {
+        when(repository.update(eq(id), any())).thenAnswer(invocation -> {
+            ((Consumer<Product>) invocation.getArgument(1)).accept(current);
+            return current;
+        });
+    }
+
+    @Test
+    @DisplayName("Should change only the threshold when a PATCH carries nothing else")
+    void testUpdateThresholdKeepsOtherFields() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        stubUpdate(productId, panadol(productId));
+
+        // Act
+        Product updated = productService.update(productId,
+            new UpdateProductRequest(null, null, null, null, 25, null));
+
+        // Assert
+        assertEquals(Integer.valueOf(25), updated.getLowStockThreshold());
+        assertEquals(9.9, updated.getPriceInSGD());
+        assertEquals("Panadol", updated.getName());
+        assertEquals("Medicine", updated.getCategory());
+        assertEquals("GSK", updated.getBrand());
+        verify(repository, never()).reshardStock(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should change the brand and price without touching the category")
+    void testUpdateBrandAndPrice() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        stubUpdate(productId, panadol(productId));
+
+        // Act
+        Product updated = productService.update(productId,
+            new UpdateProductRequest(null, null, "Haleon", 10.5, null, null));
+
+        // Assert
+        assertEquals("Haleon", updated.getBrand());
+        assertEquals("Medicine", updated.getCategory());
+        assertEquals(10.5, updated.getPriceInSGD());
+        assertEquals(Integer.valueOf(10), updated.getLowStockThreshold());
+    }
+
+    @Test
+    @DisplayName("Should keep the price when a PATCH only reshards the stock")
+    void testUpdateStockShardsKeepsPrice() {
+        // Arrange
+        UUID productId = UUID.randomUUID();
+        Product current = panadol(productId);
+        stubUpdate(productId, current);
+        when(repository.reshardStock(productId, 4)).thenAnswer(invocation -> current);
+
+        // Act
+        Product updated = productService.update(productId,
+            new UpdateProductRequest(null, null, null, null, null, 4));
+
+        // Assert
+        assertEquals(9.9, updated.getPriceInSGD());
+        assertEquals(Integer.valueOf(10), updated.getLowStockThreshold());
+        verify(repository).reshardStock(productId, 4);
+    }
+}
@@ -1,6 +1,7 @@
 package org.ddk.promotions.dto;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -8,12 +9,28 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 /**
  * Event published by Inventory service when products are restocked.
  * Promotions service listens to this event and cancels active low-stock promotions.
+ * Bulk restocks carry every product in {@code items}; {@code item} is the first of them.
  */
 public record InventoryRestockedEvent(
     @JsonProperty("eventType") String eventType,
     @JsonProperty("item") RestockItem item,
+    @JsonProperty("items") List<RestockItem> items,
     @JsonProperty("occurredAt") Instant occurredAt
 ) {
+    public InventoryRestockedEvent(String eventType, RestockItem item, Instant occurredAt) {
+        this(eventType, item, null, occurredAt);
+    }
+
+    /**
+     * All restocked items, falling back to {@code item} for single-product events.
+     */
+    public List<RestockItem> restockedItems() {
+        if (items != null && !items.isEmpty()) {
+            return items;
+        }
+        return item == null ? List.of() : List.of(item);
+    }
+
     /**
      * Represents a single restocked item.
      */
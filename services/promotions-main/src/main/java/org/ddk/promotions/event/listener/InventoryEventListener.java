@@ -64,19 +64,21 @@ public class InventoryEventListener {
      */
     @RabbitListener(queues = RabbitMQConfig.RESTOCKED_QUEUE)
     public void handleRestocked(InventoryRestockedEvent event) {
-        log.info("Received inventory.restocked event for {}", event.item());
+        log.info("Received inventory.restocked event for {}", event.restockedItems());
 
         try {
-            InventoryRestockedEvent.RestockItem item = event.item();
-            
-            log.info("Processing restocked item: productId={}, added={}, stockAfter={}",
-                item.productId(), item.added(), item.stockAfter());
+            int numPromotionsCanceled = 0;
 
-            // Cancel low-stock promotions for this product
-            int numPromotionsCanceled = restockPromotionService.cancelLowStockPromotions(
-                item.productId(),
-                item.stockAfter()
-            );
+            for (InventoryRestockedEvent.RestockItem item : event.restockedItems()) {
+                log.info("Processing restocked item: productId={}, added={}, stockAfter={}",
+                    item.productId(), item.added(), item.stockAfter());
+
+                // Cancel low-stock promotions for this product
+                numPromotionsCanceled += restockPromotionService.cancelLowStockPromotions(
+                    item.productId(),
+                    item.stockAfter()
+                );
+            }
 
             log.info("Successfully processed restocked event, canceled {} promotion(s)", numPromotionsCanceled);
         } catch (Exception e) {
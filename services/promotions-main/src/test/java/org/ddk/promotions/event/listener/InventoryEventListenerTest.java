@@ -10,6 +10,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 import org.ddk.promotions.dto.InventoryLowStockEvent;
@@ -163,6 +164,32 @@ class InventoryEventListenerTest {
         verify(restockPromotionService).cancelLowStockPromotions(eq(productId1), eq(100));
     }
 
+    @Test
+    void handleRestocked_withMultipleItems_shouldCancelPromotionsForEachItem() {
+        // Given
+        UUID productId1 = UUID.randomUUID();
+        UUID productId2 = UUID.randomUUID();
+
+        InventoryRestockedEvent.RestockItem item1 =
+            new InventoryRestockedEvent.RestockItem(productId1, 50, 100);
+        InventoryRestockedEvent.RestockItem item2 =
+            new InventoryRestockedEvent.RestockItem(productId2, 20, 35);
+
+        InventoryRestockedEvent event = new InventoryRestockedEvent(
+            "inventory.restocked",
+            item1,
+            List.of(item1, item2),
+            Instant.now()
+        );
+
+        // When
+        listener.handleRestocked(event);
+
+        // Then
+        verify(restockPromotionService).cancelLowStockPromotions(eq(productId1), eq(100));
+        verify(restockPromotionService).cancelLowStockPromotions(eq(productId2), eq(35));
+    }
+
     @Test
     void handleRestocked_whenServiceThrowsException_shouldPropagateException() {
         // Given